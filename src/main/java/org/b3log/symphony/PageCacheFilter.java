@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2012-2015, b3log.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.symphony;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import org.b3log.latke.Keys;
+import org.b3log.latke.ioc.LatkeBeanManager;
+import org.b3log.latke.ioc.Lifecycle;
+import org.b3log.symphony.cache.PageCache;
+import org.b3log.symphony.service.ArticleMgmtService;
+import org.b3log.symphony.util.HttpCaches;
+
+/**
+ * Page cache filter.
+ *
+ * <p>
+ * Answers conditional GET with the {@link PageCache.Validator validators}, serves pages cached in {@link PageCache}
+ * (looked up by {@link SymphonyServletListener#requestInitialized} before a session is created), and caches the pages
+ * rendered for cacheable requests.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.1.0.0, Jun 8, 2015
+ * @since 1.3.0
+ */
+public final class PageCacheFilter implements Filter {
+
+    /**
+     * Article path prefix.
+     */
+    private static final String ARTICLE_PATH_PREFIX = "/article/";
+
+    /**
+     * Page cache.
+     */
+    private PageCache pageCache;
+
+    /**
+     * Article management service.
+     */
+    private ArticleMgmtService articleMgmtService;
+
+    @Override
+    public void init(final FilterConfig filterConfig) throws ServletException {
+        final LatkeBeanManager beanManager = Lifecycle.getBeanManager();
+
+        pageCache = beanManager.getReference(PageCache.class);
+        articleMgmtService = beanManager.getReference(ArticleMgmtService.class);
+    }
+
+    @Override
+    public void doFilter(final ServletRequest req, final ServletResponse resp, final FilterChain chain)
+            throws IOException, ServletException {
+        final HttpServletRequest request = (HttpServletRequest) req;
+        final HttpServletResponse response = (HttpServletResponse) resp;
+
+        final PageCache.Validator validator = pageCache.getValidator(request);
+        if (null == validator) { // Not cacheable
+            chain.doFilter(request, response);
+
+            return;
+        }
+
+        if (HttpCaches.notModified(request, response, validator)) {
+            countArticleView(request);
+
+            return;
+        }
+
+        final PageCache.Page hit = (PageCache.Page) request.getAttribute(PageCache.HIT);
+        if (null != hit) {
+            countArticleView(request);
+
+            response.setContentType(hit.getContentType());
+            response.setContentLength(hit.getContent().length);
+            response.getOutputStream().write(hit.getContent());
+
+            return;
+        }
+
+        final CapturingResponse capturing = new CapturingResponse(response);
+        chain.doFilter(request, capturing);
+        capturing.flushBuffer();
+
+        final String contentType = capturing.getContentType();
+        if (HttpServletResponse.SC_OK == capturing.status && null != contentType && contentType.startsWith("text/html")
+            && PageCache.isAnonymous(request)) {
+            pageCache.put(request, contentType, capturing.captured.toByteArray());
+        }
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+    /**
+     * Counts the article view of the specified request if it is an article request made by a visitor (not a search
+     * engine bot).
+     *
+     * @param request the specified request
+     */
+    private void countArticleView(final HttpServletRequest request) {
+        final String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (path.startsWith(ARTICLE_PATH_PREFIX) && !(Boolean) request.getAttribute(Keys.HttpRequest.IS_SEARCH_ENGINE_BOT)) {
+            articleMgmtService.incArticleViewCount(path.substring(ARTICLE_PATH_PREFIX.length()));
+        }
+    }
+
+    /**
+     * Response which writes through to the wrapped response and captures the written content.
+     *
+     * @author <a href="http://88250.b3log.org">Liang Ding</a>
+     * @version 1.0.0.0, Jun 8, 2015
+     * @since 1.3.0
+     */
+    private static final class CapturingResponse extends HttpServletResponseWrapper {
+
+        /**
+         * Captured content.
+         */
+        private final ByteArrayOutputStream captured = new ByteArrayOutputStream();
+
+        /**
+         * Status code.
+         */
+        private int status = SC_OK;
+
+        /**
+         * Output stream.
+         */
+        private ServletOutputStream outputStream;
+
+        /**
+         * Writer.
+         */
+        private PrintWriter writer;
+
+        /**
+         * Constructs a capturing response with the specified response.
+         *
+         * @param response the specified response
+         */
+        private CapturingResponse(final HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public void setStatus(final int sc) {
+            status = sc;
+            super.setStatus(sc);
+        }
+
+        @Override
+        public void sendError(final int sc) throws IOException {
+            status = sc;
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendError(final int sc, final String msg) throws IOException {
+            status = sc;
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendRedirect(final String location) throws IOException {
+            status = SC_MOVED_TEMPORARILY;
+            super.sendRedirect(location);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (null == outputStream) {
+                final ServletOutputStream wrapped = super.getOutputStream();
+
+                outputStream = new ServletOutputStream() {
+                    @Override
+                    public void write(final int b) throws IOException {
+                        wrapped.write(b);
+                        captured.write(b);
+                    }
+
+                    @Override
+                    public void write(final byte[] b, final int off, final int len) throws IOException {
+                        wrapped.write(b, off, len);
+                        captured.write(b, off, len);
+                    }
+
+                    @Override
+                    public void flush() throws IOException {
+                        wrapped.flush();
+                    }
+                };
+            }
+
+            return outputStream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (null == writer) {
+                writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), getCharacterEncoding()));
+            }
+
+            return writer;
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (null != writer) {
+                writer.flush();
+            } else if (null != outputStream) {
+                outputStream.flush();
+            }
+
+            super.flushBuffer();
+        }
+    }
+}
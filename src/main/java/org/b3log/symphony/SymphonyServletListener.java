@@ -34,13 +34,24 @@ import org.b3log.latke.util.Requests;
 import org.b3log.latke.util.StaticResources;
 import org.b3log.latke.util.Stopwatchs;
 import org.b3log.latke.util.Strings;
+import org.b3log.symphony.cache.PageCache;
+import org.b3log.symphony.cache.RelevantArticleIndex;
+import org.b3log.symphony.cache.RequestUserCache;
+import org.b3log.symphony.event.ArticleCacheCleaner;
+import org.b3log.symphony.event.ArticleCacheUpdater;
 import org.b3log.symphony.event.ArticleNotifier;
+import org.b3log.symphony.event.CommentCacheUpdater;
 import org.b3log.symphony.event.CommentNotifier;
 import org.b3log.symphony.event.solo.ArticleSender;
 import org.b3log.symphony.event.solo.ArticleUpdater;
 import org.b3log.symphony.event.solo.CommentSender;
+import org.b3log.symphony.service.ArticleMgmtService;
+import org.b3log.symphony.service.CommentQueryService;
+import org.b3log.symphony.service.NotificationFanOutService;
+import org.b3log.symphony.service.OptionMgmtService;
 import org.b3log.symphony.service.OptionQueryService;
 import org.b3log.symphony.service.UserMgmtService;
+import org.b3log.symphony.util.HttpCaches;
 import org.b3log.symphony.util.Symphonys;
 import org.json.JSONObject;
 
@@ -48,7 +59,7 @@ import org.json.JSONObject;
  * Symphony servlet listener.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.2.1.2, Apr 3, 2015
+ * @version 1.3.3.0, Jun 8, 2015
  * @since 0.2.0
  */
 public final class SymphonyServletListener extends AbstractServletListener {
@@ -91,6 +102,29 @@ public final class SymphonyServletListener extends AbstractServletListener {
         final ArticleNotifier articleNotifier = beanManager.getReference(ArticleNotifier.class);
         eventManager.registerListener(articleNotifier);
 
+        final ArticleCacheCleaner articleCacheCleaner = beanManager.getReference(ArticleCacheCleaner.class);
+        eventManager.registerListener(articleCacheCleaner);
+
+        final ArticleCacheUpdater articleCacheUpdater = beanManager.getReference(ArticleCacheUpdater.class);
+        eventManager.registerListener(articleCacheUpdater);
+
+        final CommentCacheUpdater commentCacheUpdater = beanManager.getReference(CommentCacheUpdater.class);
+        eventManager.registerListener(commentCacheUpdater);
+
+        // Loads the latest comments
+        final CommentQueryService commentQueryService = beanManager.getReference(CommentQueryService.class);
+        try {
+            commentQueryService.rebuildLatestComments();
+        } catch (final ServiceException e) {
+            LOGGER.log(Level.ERROR, "Loads the latest comments failed", e);
+        }
+
+        // Loads the relevant articles index in background
+        beanManager.getReference(RelevantArticleIndex.class).loadAsync();
+
+        // Starts the notification fan-out worker
+        beanManager.getReference(NotificationFanOutService.class).start();
+
         LOGGER.info("Initialized the context");
 
         Stopwatchs.end();
@@ -100,6 +134,27 @@ public final class SymphonyServletListener extends AbstractServletListener {
 
     @Override
     public void contextDestroyed(final ServletContextEvent servletContextEvent) {
+        final LatkeBeanManager beanManager = Lifecycle.getBeanManager();
+
+        // Runs the queued notification fan-out tasks
+        beanManager.getReference(NotificationFanOutService.class).stop();
+
+        // Drains the buffered article view count
+        final ArticleMgmtService articleMgmtService = beanManager.getReference(ArticleMgmtService.class);
+        try {
+            articleMgmtService.flushArticleViewCount();
+        } catch (final ServiceException e) {
+            LOGGER.log(Level.ERROR, "Flushes article view count failed", e);
+        }
+
+        // Drains the statistic counted in memory
+        final OptionMgmtService optionMgmtService = beanManager.getReference(OptionMgmtService.class);
+        try {
+            optionMgmtService.flushStatistic();
+        } catch (final ServiceException e) {
+            LOGGER.log(Level.ERROR, "Flushes statistic failed", e);
+        }
+
         super.contextDestroyed(servletContextEvent);
 
         LOGGER.info("Destroyed the context");
@@ -135,6 +190,8 @@ public final class SymphonyServletListener extends AbstractServletListener {
         if (Requests.searchEngineBotRequest(httpServletRequest)) {
             LOGGER.log(Level.DEBUG, "Request made from a search engine[User-Agent={0}]", httpServletRequest.getHeader("User-Agent"));
             httpServletRequest.setAttribute(Keys.HttpRequest.IS_SEARCH_ENGINE_BOT, true);
+
+            lookUpPageCache(httpServletRequest);
         } else {
             httpServletRequest.setAttribute(Keys.HttpRequest.IS_SEARCH_ENGINE_BOT, false);
 
@@ -142,19 +199,54 @@ public final class SymphonyServletListener extends AbstractServletListener {
                 return;
             }
 
+            // Online visitor count
+            OptionQueryService.onlineVisitorCount(httpServletRequest);
+
+            if (lookUpPageCache(httpServletRequest)) {
+                return; // Served by PageCacheFilter, no session needed
+            }
+
             // Gets the session of this request
             final HttpSession session = httpServletRequest.getSession();
             LOGGER.log(Level.TRACE, "Gets a session[id={0}, remoteAddr={1}, User-Agent={2}, isNew={3}]",
                        new Object[]{session.getId(), httpServletRequest.getRemoteAddr(), httpServletRequest.getHeader("User-Agent"),
                                     session.isNew()});
-            // Online visitor count
-            OptionQueryService.onlineVisitorCount(httpServletRequest);
         }
     }
 
+    /**
+     * Looks up the page cache for the specified request, the cached page (if found) will be set as an attribute of the
+     * specified request for {@link PageCacheFilter}.
+     *
+     * @param request the specified request
+     * @return {@code true} if the specified request will be answered by {@link PageCacheFilter} (not modified or
+     * cached), returns {@code false} otherwise
+     */
+    private static boolean lookUpPageCache(final HttpServletRequest request) {
+        final PageCache pageCache = Lifecycle.getBeanManager().getReference(PageCache.class);
+        final PageCache.Validator validator = pageCache.getValidator(request);
+        if (null == validator) {
+            return false;
+        }
+
+        if (HttpCaches.isNotModified(request, validator)) {
+            return true;
+        }
+
+        final PageCache.Page page = pageCache.get(request);
+        if (null == page) {
+            return false;
+        }
+
+        request.setAttribute(PageCache.HIT, page);
+
+        return true;
+    }
+
     @Override
     public void requestDestroyed(final ServletRequestEvent servletRequestEvent) {
         super.requestDestroyed(servletRequestEvent);
         Stopwatchs.release();
+        RequestUserCache.release();
     }
 }
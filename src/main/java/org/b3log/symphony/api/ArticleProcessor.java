@@ -30,9 +30,11 @@ import org.b3log.latke.servlet.annotation.RequestProcessing;
 import org.b3log.latke.servlet.annotation.RequestProcessor;
 import org.b3log.latke.servlet.renderer.JSONRenderer;
 import org.b3log.latke.util.Strings;
+import org.b3log.symphony.cache.PageCache;
 import org.b3log.symphony.model.Article;
 import org.b3log.symphony.service.ArticleQueryService;
 import org.b3log.symphony.service.TagQueryService;
+import org.b3log.symphony.util.HttpCaches;
 import org.json.JSONObject;
 
 /**
@@ -43,7 +45,7 @@ import org.json.JSONObject;
  * </ul>
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.0.0.0, Oct 19, 2014
+ * @version 1.1.0.0, Jun 8, 2015
  * @since 0.2.5
  */
 @RequestProcessor
@@ -61,6 +63,12 @@ public class ArticleProcessor {
     @Inject
     private ArticleQueryService articleQueryService;
 
+    /**
+     * Page cache.
+     */
+    @Inject
+    private PageCache pageCache;
+
     /**
      * Gets articles.with the specified tags.
      *
@@ -72,6 +80,10 @@ public class ArticleProcessor {
     @RequestProcessing(value = "/apis/articles", method = HTTPRequestMethod.GET)
     public void getTagsArticles(final HTTPRequestContext context, final HttpServletRequest request, final HttpServletResponse response)
             throws Exception {
+        if (HttpCaches.notModified(request, response, pageCache.getAPIValidator())) {
+            return;
+        }
+
         final JSONRenderer renderer = new JSONRenderer().setJSONP(true);
         context.setRenderer(renderer);
 
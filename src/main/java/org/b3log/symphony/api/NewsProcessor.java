@@ -24,8 +24,10 @@ import org.b3log.latke.servlet.HTTPRequestMethod;
 import org.b3log.latke.servlet.annotation.RequestProcessing;
 import org.b3log.latke.servlet.annotation.RequestProcessor;
 import org.b3log.latke.servlet.renderer.JSONRenderer;
+import org.b3log.symphony.cache.PageCache;
 import org.b3log.symphony.model.Article;
 import org.b3log.symphony.service.ArticleQueryService;
+import org.b3log.symphony.util.HttpCaches;
 import org.json.JSONObject;
 
 /**
@@ -36,7 +38,7 @@ import org.json.JSONObject;
  * </ul>
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.0.0.1, Nov 8, 2012
+ * @version 1.1.0.1, Jun 8, 2015
  * @since 0.2.0
  */
 @RequestProcessor
@@ -48,6 +50,12 @@ public class NewsProcessor {
     @Inject
     private ArticleQueryService articleQueryService;
 
+    /**
+     * Page cache.
+     */
+    @Inject
+    private PageCache pageCache;
+
     /**
      * News fetch size.
      */
@@ -64,6 +72,10 @@ public class NewsProcessor {
     @RequestProcessing(value = "/apis/news", method = HTTPRequestMethod.GET)
     public void getNews(final HTTPRequestContext context, final HttpServletRequest request, final HttpServletResponse response)
             throws Exception {
+        if (HttpCaches.notModified(request, response, pageCache.getAPIValidator())) {
+            return;
+        }
+
         final JSONRenderer renderer = new JSONRenderer().setJSONP(true);
         context.setRenderer(renderer);
 
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2012-2015, b3log.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.symphony.cache;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+import org.b3log.symphony.util.Symphonys;
+
+/**
+ * Rendered article content cache.
+ *
+ * <p>
+ * Caches the final (mention linked, emotion converted, markdowned and cleaned) HTML of article content. An entry is
+ * only valid for the article update time it was rendered with, so a stale entry will never be served even if the
+ * invalidation is missed.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Jun 8, 2015
+ * @since 1.3.0
+ */
+@Named
+@Singleton
+public class ArticleContentCache {
+
+    /**
+     * Rendered contents, &lt;articleId, {updateTime, content}&gt;.
+     */
+    private static final LRUCache<String, Object[]> CACHE = new LRUCache<String, Object[]>(Symphonys.getInt("articleContentCacheCnt"));
+
+    /**
+     * Gets the rendered content of an article specified by the given article id and update time.
+     *
+     * @param articleId the given article id
+     * @param updateTime the given update time
+     * @return rendered content, returns {@code null} if not found or the cached one is outdated
+     */
+    public String get(final String articleId, final long updateTime) {
+        final Object[] cached = CACHE.get(articleId);
+        if (null == cached || updateTime != (Long) cached[0]) {
+            return null;
+        }
+
+        return (String) cached[1];
+    }
+
+    /**
+     * Puts the specified rendered content of an article specified by the given article id and update time.
+     *
+     * @param articleId the given article id
+     * @param updateTime the given update time
+     * @param content the specified rendered content
+     */
+    public void put(final String articleId, final long updateTime, final String content) {
+        CACHE.put(articleId, new Object[]{updateTime, content});
+    }
+
+    /**
+     * Removes the rendered content of an article specified by the given article id.
+     *
+     * @param articleId the given article id
+     */
+    public void remove(final String articleId) {
+        CACHE.remove(articleId);
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2012-2015, b3log.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.symphony.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import org.b3log.symphony.model.Comment;
+import org.b3log.symphony.util.Symphonys;
+import org.json.JSONObject;
+
+/**
+ * Article latest participants cache.
+ *
+ * <p>
+ * Holds the latest distinct participants (commenters) of articles, the most recent first. A participant is a projected
+ * comment, for example,
+ * <pre>
+ * {
+ *     "oId": "", // comment id
+ *     "commentAuthorId": "",
+ *     "commentAuthorEmail": ""
+ * }
+ * </pre>
+ * The participants of an article are seeded from repository lazily and then kept up to date by the add comment event.
+ * Participants added while seeding are memorized and merged into the seeded ones, so they will not be lost.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.1.0.0, Jun 8, 2015
+ * @since 1.3.0
+ */
+@Named
+@Singleton
+public class ArticleParticipantCache {
+
+    /**
+     * Maximum count of participants per article.
+     */
+    public static final int CAPACITY = Math.max(Symphonys.getInt("latestCmtArticleParticipantsCnt"),
+                                                Symphonys.getInt("tagArticleParticipantsCnt"));
+
+    /**
+     * Participants, &lt;articleId, participants&gt;.
+     */
+    private static final LRUCache<String, List<JSONObject>> CACHE
+            = new LRUCache<String, List<JSONObject>>(Symphonys.getInt("articleParticipantsCacheCnt"));
+
+    /**
+     * Participants added while seeding, &lt;articleId, participants (the most recent first)&gt;, guarded by
+     * {@link #CACHE}.
+     */
+    private static final LRUCache<String, List<JSONObject>> SEEDING
+            = new LRUCache<String, List<JSONObject>>(Symphonys.getInt("articleParticipantsCacheCnt"));
+
+    /**
+     * Gets participants of an article specified by the given article id.
+     *
+     * @param articleId the given article id
+     * @return participants (unmodifiable), returns {@code null} if not seeded yet
+     */
+    public List<JSONObject> get(final String articleId) {
+        return CACHE.get(articleId);
+    }
+
+    /**
+     * Begins seeding the participants of an article specified by the given article id, participants added from now on
+     * will be merged by {@link #put(java.lang.String, java.util.List)}.
+     *
+     * <p>
+     * Must be invoked before reading the participants to seed from repository.
+     * </p>
+     *
+     * @param articleId the given article id
+     */
+    public void beginSeed(final String articleId) {
+        synchronized (CACHE) {
+            if (null == CACHE.get(articleId) && null == SEEDING.get(articleId)) {
+                SEEDING.put(articleId, new ArrayList<JSONObject>());
+            }
+        }
+    }
+
+    /**
+     * Seeds the specified participants of an article specified by the given article id.
+     *
+     * <p>
+     * The participants added since {@link #beginSeed(java.lang.String)} will be merged as the most recent ones. Does
+     * nothing if the participants of the article have been seeded (by a concurrent seeding), they are kept up to date.
+     * </p>
+     *
+     * @param articleId the given article id
+     * @param participants the specified participants, the most recent first
+     * @return the seeded participants (unmodifiable)
+     */
+    public List<JSONObject> put(final String articleId, final List<JSONObject> participants) {
+        synchronized (CACHE) {
+            final List<JSONObject> seeded = CACHE.get(articleId);
+            if (null != seeded) {
+                return seeded;
+            }
+
+            final List<JSONObject> all = new ArrayList<JSONObject>();
+            final List<JSONObject> added = SEEDING.remove(articleId);
+            if (null != added) {
+                all.addAll(added);
+            }
+            all.addAll(participants);
+
+            final List<JSONObject> distinct = new ArrayList<JSONObject>();
+            for (final JSONObject participant : all) {
+                if (distinct.size() >= CAPACITY) {
+                    break;
+                }
+
+                if (-1 == indexOf(distinct, participant.optString(Comment.COMMENT_AUTHOR_ID))) {
+                    distinct.add(participant);
+                }
+            }
+
+            final List<JSONObject> ret = Collections.unmodifiableList(distinct);
+            CACHE.put(articleId, ret);
+
+            return ret;
+        }
+    }
+
+    /**
+     * Adds the specified participant as the most recent one of an article specified by the given article id.
+     *
+     * <p>
+     * Does nothing if the participants of the article have been neither seeded nor being seeded, the lazily seeding
+     * will load the participant from repository.
+     * </p>
+     *
+     * @param articleId the given article id
+     * @param participant the specified participant
+     */
+    public void add(final String articleId, final JSONObject participant) {
+        synchronized (CACHE) {
+            final List<JSONObject> participants = CACHE.get(articleId);
+            if (null == participants) {
+                final List<JSONObject> added = SEEDING.get(articleId);
+                if (null != added) {
+                    added.add(0, participant);
+                }
+
+                return;
+            }
+
+            final List<JSONObject> newParticipants = new ArrayList<JSONObject>(participants);
+            final int index = indexOf(newParticipants, participant.optString(Comment.COMMENT_AUTHOR_ID));
+            if (-1 != index) {
+                newParticipants.remove(index);
+            } else if (newParticipants.size() >= CAPACITY) {
+                newParticipants.remove(newParticipants.size() - 1);
+            }
+
+            newParticipants.add(0, participant);
+
+            CACHE.put(articleId, Collections.unmodifiableList(newParticipants));
+        }
+    }
+
+    /**
+     * Gets the index of the participant specified by the given author id in the specified participants.
+     *
+     * @param participants the specified participants
+     * @param authorId the given author id
+     * @return index, returns {@code -1} if not found
+     */
+    private static int indexOf(final List<JSONObject> participants, final String authorId) {
+        for (int i = 0; i < participants.size(); i++) {
+            if (authorId.equals(participants.get(i).optString(Comment.COMMENT_AUTHOR_ID))) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+}
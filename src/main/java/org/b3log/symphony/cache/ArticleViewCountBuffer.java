@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2012-2015, b3log.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.symphony.cache;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+/**
+ * Article view count buffer.
+ *
+ * <p>
+ * Accumulates article view count increments in memory, the increments will be drained and written to repository in
+ * batch by {@link org.b3log.symphony.service.ArticleMgmtService#flushArticleViewCount()}.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Jun 8, 2015
+ * @since 1.3.0
+ */
+@Named
+@Singleton
+public class ArticleViewCountBuffer {
+
+    /**
+     * Unflushed increments, &lt;articleId, increment&gt;.
+     */
+    private static final ConcurrentMap<String, AtomicLong> DELTAS = new ConcurrentHashMap<String, AtomicLong>();
+
+    /**
+     * Increments the view count of an article specified by the given article id.
+     *
+     * @param articleId the given article id
+     */
+    public void inc(final String articleId) {
+        add(articleId, 1);
+    }
+
+    /**
+     * Gets the unflushed view count increment of an article specified by the given article id.
+     *
+     * @param articleId the given article id
+     * @return increment, returns {@code 0} if not found
+     */
+    public long get(final String articleId) {
+        final AtomicLong delta = DELTAS.get(articleId);
+        if (null == delta) {
+            return 0;
+        }
+
+        return delta.get();
+    }
+
+    /**
+     * Drains all unflushed increments.
+     *
+     * @return drained increments, &lt;articleId, increment&gt;
+     */
+    public Map<String, Long> drain() {
+        final Map<String, Long> ret = new HashMap<String, Long>();
+
+        final Iterator<Map.Entry<String, AtomicLong>> iterator = DELTAS.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<String, AtomicLong> entry = iterator.next();
+            final long delta = entry.getValue().getAndSet(0);
+
+            if (0 == delta) {
+                // Idle since the latest drain, concurrent increments on this counter may be lost between the
+                // removal and the next increment, it is acceptable for a view count
+                iterator.remove();
+            } else {
+                ret.put(entry.getKey(), delta);
+            }
+        }
+
+        return ret;
+    }
+
+    /**
+     * Gives back the specified increments, for example, the increments failed to flush.
+     *
+     * @param deltas the specified increments, &lt;articleId, increment&gt;
+     */
+    public void restore(final Map<String, Long> deltas) {
+        for (final Map.Entry<String, Long> entry : deltas.entrySet()) {
+            add(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Adds the specified increment to an article specified by the given article id.
+     *
+     * @param articleId the given article id
+     * @param delta the specified increment
+     */
+    private void add(final String articleId, final long delta) {
+        AtomicLong counter = DELTAS.get(articleId);
+        if (null == counter) {
+            final AtomicLong newCounter = new AtomicLong();
+            counter = DELTAS.putIfAbsent(articleId, newCounter);
+            if (null == counter) {
+                counter = newCounter;
+            }
+        }
+
+        counter.addAndGet(delta);
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2012-2015, b3log.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.symphony.cache;
+
+import java.util.Iterator;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Cache utilities.
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Jun 8, 2015
+ * @since 1.3.0
+ */
+public final class Caches {
+
+    /**
+     * Makes a shallow copy of the specified json object.
+     *
+     * <p>
+     * Cached entities are copied in and out, so callers could modify them freely without polluting the cache.
+     * </p>
+     *
+     * @param jsonObject the specified json object
+     * @return copy
+     */
+    public static JSONObject copy(final JSONObject jsonObject) {
+        final JSONObject ret = new JSONObject();
+
+        try {
+            final Iterator<String> keys = jsonObject.keys();
+            while (keys.hasNext()) {
+                final String key = keys.next();
+                ret.put(key, jsonObject.opt(key));
+            }
+        } catch (final JSONException e) {
+            throw new IllegalStateException(e);
+        }
+
+        return ret;
+    }
+
+    /**
+     * Private constructor.
+     */
+    private Caches() {
+    }
+}
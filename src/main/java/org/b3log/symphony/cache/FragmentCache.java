@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2012-2015, b3log.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.symphony.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import org.b3log.symphony.util.Symphonys;
+
+/**
+ * Page fragment cache.
+ *
+ * <p>
+ * Caches the data of page fragments shared by all users (trend tags, statistic, etc). A fragment expires
+ * after {@code fragmentCacheTTL} seconds, and will be removed by events which change it, the next request will
+ * rebuild it.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.2.0, Jun 8, 2015
+ * @since 1.3.0
+ */
+@Named
+@Singleton
+public class FragmentCache {
+
+    /**
+     * Fragment of trend tags.
+     */
+    public static final String TREND_TAGS = "trendTags";
+
+    /**
+     * Fragment of statistic.
+     */
+    public static final String STATISTIC = "statistic";
+
+    /**
+     * Fragment of online visitor count.
+     */
+    public static final String ONLINE_VISITOR_CNT = "onlineVisitorCnt";
+
+    /**
+     * Fragment of language labels.
+     */
+    public static final String LANGS = "langs";
+
+    /**
+     * Milliseconds of a second.
+     */
+    private static final long SECOND_MILLIS = 1000L;
+
+    /**
+     * Time to live of a fragment in milliseconds.
+     */
+    private static final long TTL = Symphonys.getLong("fragmentCacheTTL") * SECOND_MILLIS;
+
+    /**
+     * Fragments, &lt;name, {expireTime, data}&gt;.
+     */
+    private static final ConcurrentMap<String, Object[]> FRAGMENTS = new ConcurrentHashMap<String, Object[]>();
+
+    /**
+     * Gets the data of a fragment specified by the given name.
+     *
+     * @param name the given name
+     * @return data, returns {@code null} if not found or expired
+     */
+    public Object get(final String name) {
+        final Object[] fragment = FRAGMENTS.get(name);
+        if (null == fragment || System.currentTimeMillis() > (Long) fragment[0]) {
+            return null;
+        }
+
+        return fragment[1];
+    }
+
+    /**
+     * Puts the specified data of a fragment specified by the given name.
+     *
+     * @param name the given name
+     * @param data the specified data
+     */
+    public void put(final String name, final Object data) {
+        FRAGMENTS.put(name, new Object[]{System.currentTimeMillis() + TTL, data});
+    }
+
+    /**
+     * Removes fragments specified by the given names.
+     *
+     * @param names the given names
+     */
+    public void remove(final String... names) {
+        for (final String name : names) {
+            FRAGMENTS.remove(name);
+        }
+    }
+}
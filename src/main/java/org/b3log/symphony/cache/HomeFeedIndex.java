@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2012-2015, b3log.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.symphony.cache;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import org.b3log.latke.Keys;
+import org.b3log.latke.logging.Level;
+import org.b3log.latke.logging.Logger;
+import org.b3log.latke.repository.Query;
+import org.b3log.latke.repository.RepositoryException;
+import org.b3log.latke.repository.SortDirection;
+import org.b3log.symphony.model.Article;
+import org.b3log.symphony.repository.ArticleRepository;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Home feed index.
+ *
+ * <p>
+ * Holds ids of all articles ordered by bad count (ascending), good count (descending) and latest comment time
+ * (descending), the order of the index page. Loads all articles (projected) from repository at the first time
+ * accessing and then keeps up to date by the add/update article and add comment events.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.1, Jun 8, 2015
+ * @since 1.3.0
+ */
+@Named
+@Singleton
+public class HomeFeedIndex {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(HomeFeedIndex.class.getName());
+
+    /**
+     * Page size of loading.
+     */
+    private static final int LOAD_PAGE_SIZE = 1000;
+
+    /**
+     * Ordered entries.
+     */
+    private static final ConcurrentSkipListSet<Entry> FEED = new ConcurrentSkipListSet<Entry>();
+
+    /**
+     * Current entries, &lt;articleId, entry&gt;.
+     */
+    private static final ConcurrentMap<String, Entry> ENTRIES = new ConcurrentHashMap<String, Entry>();
+
+    /**
+     * Whether all articles have been loaded.
+     */
+    private static volatile boolean loaded;
+
+    /**
+     * Article repository.
+     */
+    @Inject
+    private ArticleRepository articleRepository;
+
+    /**
+     * Gets article ids of a page specified by the given page number and page size.
+     *
+     * @param currentPageNum the given page number
+     * @param pageSize the given page size
+     * @return article ids, returns an empty list if not found
+     * @throws RepositoryException repository exception
+     */
+    public List<String> getArticleIds(final int currentPageNum, final int pageSize) throws RepositoryException {
+        load();
+
+        final List<String> ret = new ArrayList<String>();
+
+        final int offset = (currentPageNum - 1) * pageSize;
+        int i = 0;
+        final Iterator<Entry> iterator = FEED.iterator();
+        while (iterator.hasNext() && ret.size() < pageSize) {
+            final Entry entry = iterator.next();
+            if (i++ < offset) {
+                continue;
+            }
+
+            ret.add(entry.articleId);
+        }
+
+        return ret;
+    }
+
+    /**
+     * Indexes the specified article, adds it if it is a new one, or reorders it if it has been indexed.
+     *
+     * <p>
+     * Does nothing if the articles have not been loaded yet, the lazily loading will load the article from repository.
+     * </p>
+     *
+     * @param article the specified article
+     */
+    public void put(final JSONObject article) {
+        synchronized (FEED) {
+            if (!loaded) {
+                return;
+            }
+
+            index(article);
+        }
+    }
+
+    /**
+     * Indexes the specified article.
+     *
+     * @param article the specified article
+     */
+    private static void index(final JSONObject article) {
+        final Entry entry = new Entry(article.optString(Keys.OBJECT_ID), article.optInt(Article.ARTICLE_BAD_CNT),
+                                      article.optInt(Article.ARTICLE_GOOD_CNT), article.optLong(Article.ARTICLE_LATEST_CMT_TIME));
+
+        final Entry old = ENTRIES.put(entry.articleId, entry);
+        FEED.add(entry);
+        if (null != old && 0 != old.compareTo(entry)) {
+            FEED.remove(old);
+        }
+    }
+
+    /**
+     * Loads all articles from repository if not loaded yet.
+     *
+     * @throws RepositoryException repository exception
+     */
+    private void load() throws RepositoryException {
+        if (loaded) {
+            return;
+        }
+
+        synchronized (FEED) {
+            if (loaded) {
+                return;
+            }
+
+            int pageNum = 1;
+            while (true) {
+                final Query query = new Query().setCurrentPageNum(pageNum).setPageSize(LOAD_PAGE_SIZE).setPageCount(1).
+                        addSort(Keys.OBJECT_ID, SortDirection.ASCENDING).
+                        addProjection(Keys.OBJECT_ID, String.class).
+                        addProjection(Article.ARTICLE_BAD_CNT, Integer.class).
+                        addProjection(Article.ARTICLE_GOOD_CNT, Integer.class).
+                        addProjection(Article.ARTICLE_LATEST_CMT_TIME, Long.class);
+                final JSONArray articles = articleRepository.get(query).optJSONArray(Keys.RESULTS);
+                for (int i = 0; i < articles.length(); i++) {
+                    index(articles.optJSONObject(i));
+                }
+
+                if (articles.length() < LOAD_PAGE_SIZE) {
+                    break;
+                }
+
+                pageNum++;
+            }
+
+            loaded = true;
+
+            LOGGER.log(Level.INFO, "Loaded [{0}] articles into home feed index", ENTRIES.size());
+        }
+    }
+
+    /**
+     * Home feed entry.
+     *
+     * @author <a href="http://88250.b3log.org">Liang Ding</a>
+     * @version 1.0.0.0, Jun 8, 2015
+     * @since 1.3.0
+     */
+    private static final class Entry implements Comparable<Entry> {
+
+        /**
+         * Article id.
+         */
+        private final String articleId;
+
+        /**
+         * Bad count.
+         */
+        private final int badCnt;
+
+        /**
+         * Good count.
+         */
+        private final int goodCnt;
+
+        /**
+         * Latest comment time.
+         */
+        private final long latestCmtTime;
+
+        /**
+         * Constructs an entry with the specified article id, bad count, good count and latest comment time.
+         *
+         * @param articleId the specified article id
+         * @param badCnt the specified bad count
+         * @param goodCnt the specified good count
+         * @param latestCmtTime the specified latest comment time
+         */
+        private Entry(final String articleId, final int badCnt, final int goodCnt, final long latestCmtTime) {
+            this.articleId = articleId;
+            this.badCnt = badCnt;
+            this.goodCnt = goodCnt;
+            this.latestCmtTime = latestCmtTime;
+        }
+
+        @Override
+        public int compareTo(final Entry entry) {
+            if (badCnt != entry.badCnt) {
+                return badCnt < entry.badCnt ? -1 : 1;
+            }
+
+            if (goodCnt != entry.goodCnt) {
+                return goodCnt > entry.goodCnt ? -1 : 1;
+            }
+
+            if (latestCmtTime != entry.latestCmtTime) {
+                return latestCmtTime > entry.latestCmtTime ? -1 : 1;
+            }
+
+            return entry.articleId.compareTo(articleId);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof Entry)) {
+                return false;
+            }
+
+            return 0 == compareTo((Entry) obj);
+        }
+
+        @Override
+        public int hashCode() {
+            return articleId.hashCode();
+        }
+    }
+}
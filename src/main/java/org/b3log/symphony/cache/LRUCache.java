@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2012-2015, b3log.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.symphony.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A simple size-bounded, least recently used cache.
+ *
+ * <p>
+ * All operations are synchronized on the cache itself, so an instance could be shared across request threads.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Jun 8, 2015
+ * @since 1.3.0
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ */
+public final class LRUCache<K, V> {
+
+    /**
+     * Load factor of the underlying map.
+     */
+    private static final float LOAD_FACTOR = 0.75F;
+
+    /**
+     * Maximum count of cached entries.
+     */
+    private final int maxCount;
+
+    /**
+     * Entries.
+     */
+    private final LinkedHashMap<K, V> entries;
+
+    /**
+     * Hit count.
+     */
+    private final AtomicLong hitCount = new AtomicLong();
+
+    /**
+     * Miss count.
+     */
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Constructs a cache with the specified maximum count.
+     *
+     * @param maxCount the specified maximum count
+     */
+    public LRUCache(final int maxCount) {
+        this.maxCount = maxCount;
+
+        entries = new LinkedHashMap<K, V>(maxCount, LOAD_FACTOR, true) {
+
+            /**
+             * Serial version UID.
+             */
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<K, V> eldest) {
+                return size() > LRUCache.this.maxCount;
+            }
+        };
+    }
+
+    /**
+     * Gets a value by the specified key.
+     *
+     * @param key the specified key
+     * @return value, returns {@code null} if not found
+     */
+    public synchronized V get(final K key) {
+        final V ret = entries.get(key);
+
+        if (null == ret) {
+            missCount.incrementAndGet();
+        } else {
+            hitCount.incrementAndGet();
+        }
+
+        return ret;
+    }
+
+    /**
+     * Puts the specified value with the specified key.
+     *
+     * @param key the specified key
+     * @param value the specified value
+     */
+    public synchronized void put(final K key, final V value) {
+        entries.put(key, value);
+    }
+
+    /**
+     * Removes a value by the specified key.
+     *
+     * @param key the specified key
+     * @return the removed value, returns {@code null} if not found
+     */
+    public synchronized V remove(final K key) {
+        return entries.remove(key);
+    }
+
+    /**
+     * Removes all values.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Gets the count of cached entries.
+     *
+     * @return cached count
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Gets the maximum count of cached entries.
+     *
+     * @return maximum count
+     */
+    public int getMaxCount() {
+        return maxCount;
+    }
+
+    /**
+     * Gets the hit count.
+     *
+     * @return hit count
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Gets the miss count.
+     *
+     * @return miss count
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+}
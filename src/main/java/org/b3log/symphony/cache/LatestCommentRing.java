@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2012-2015, b3log.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.symphony.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import org.b3log.latke.Keys;
+import org.b3log.symphony.model.Comment;
+import org.b3log.symphony.util.Symphonys;
+import org.json.JSONObject;
+
+/**
+ * Latest comment ring.
+ *
+ * <p>
+ * Holds a fixed number ({@code sizeLatestCmtsCnt} in symphony.properties) of the latest comments, hydrated (article
+ * title, commenter and thumbnail) and ready for rendering. The ring is rebuilt from repository on startup, fed by the
+ * add comment event, and will be rebuilt at the next accessing once an article, commenter or comment it refers to has
+ * been changed (for example, blocked).
+ * </p>
+ *
+ * <p>
+ * Each expiring increases the {@link #getGeneration() generation}, a rebuilding takes the generation before loading
+ * and marks the ring up to date only if no expiring happened while loading.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.1.0.0, Jun 8, 2015
+ * @since 1.3.0
+ */
+@Named
+@Singleton
+public class LatestCommentRing {
+
+    /**
+     * Capacity.
+     */
+    private static final int CAPACITY = Symphonys.getInt("sizeLatestCmtsCnt");
+
+    /**
+     * Comments, {@link #head} is the index of the latest one.
+     */
+    private static final JSONObject[] RING = new JSONObject[CAPACITY];
+
+    /**
+     * Index of the latest comment.
+     */
+    private static int head = -1;
+
+    /**
+     * Count of comments in the ring.
+     */
+    private static int size;
+
+    /**
+     * Whether the ring is up to date.
+     */
+    private static volatile boolean loaded;
+
+    /**
+     * Generation, increased by each expiring.
+     */
+    private static final AtomicLong GENERATION = new AtomicLong();
+
+    /**
+     * Gets the capacity.
+     *
+     * @return capacity
+     */
+    public int getCapacity() {
+        return CAPACITY;
+    }
+
+    /**
+     * Determines whether the ring is up to date.
+     *
+     * @return {@code true} if it is up to date, returns {@code false} otherwise
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Gets the generation, takes it before loading comments for {@link #reset(java.util.List, long)}.
+     *
+     * @return generation
+     */
+    public long getGeneration() {
+        return GENERATION.get();
+    }
+
+    /**
+     * Gets the latest comments with the specified fetch size.
+     *
+     * @param fetchSize the specified fetch size
+     * @return comments, the latest first
+     */
+    public List<JSONObject> get(final int fetchSize) {
+        final List<JSONObject> ret = new ArrayList<JSONObject>();
+
+        synchronized (RING) {
+            final int cnt = Math.min(fetchSize, size);
+            for (int i = 0; i < cnt; i++) {
+                ret.add(copy(RING[(head - i + CAPACITY) % CAPACITY]));
+            }
+        }
+
+        return ret;
+    }
+
+    /**
+     * Adds the specified hydrated comment as the latest one.
+     *
+     * <p>
+     * Does nothing if the ring is not up to date, the comment will be loaded by the next rebuilding.
+     * </p>
+     *
+     * @param comment the specified comment
+     */
+    public void add(final JSONObject comment) {
+        if (!loaded) {
+            return;
+        }
+
+        synchronized (RING) {
+            push(comment);
+        }
+    }
+
+    /**
+     * Resets the ring with the specified hydrated comments.
+     *
+     * <p>
+     * Comments added while the specified comments were being loaded (newer than all of them) are kept. The ring will
+     * not be marked up to date if it has been expired since the specified generation, the comments loaded may refer
+     * to the changed article, commenter or comment.
+     * </p>
+     *
+     * @param comments the specified comments, the latest first
+     * @param generation the specified generation, taken before loading the specified comments
+     */
+    public void reset(final List<JSONObject> comments, final long generation) {
+        synchronized (RING) {
+            final long newest = comments.isEmpty() ? 0 : comments.get(0).optLong(Comment.COMMENT_CREATE_TIME);
+            final List<JSONObject> newer = new ArrayList<JSONObject>();
+            for (int i = size - 1; i >= 0; i--) {
+                final JSONObject comment = RING[(head - i + CAPACITY) % CAPACITY];
+                if (comment.optLong(Comment.COMMENT_CREATE_TIME) > newest) {
+                    newer.add(comment);
+                }
+            }
+
+            head = -1;
+            size = 0;
+
+            for (int i = comments.size() - 1; i >= 0; i--) {
+                push(comments.get(i));
+            }
+
+            for (final JSONObject comment : newer) {
+                push(comment);
+            }
+
+            loaded = generation == GENERATION.get();
+        }
+    }
+
+    /**
+     * Expires the ring if it holds a comment on the article specified by the given article id.
+     *
+     * @param articleId the given article id
+     */
+    public void expireArticle(final String articleId) {
+        expire(Comment.COMMENT_ON_ARTICLE_ID, articleId);
+    }
+
+    /**
+     * Expires the ring if it holds a comment of the commenter specified by the given user id.
+     *
+     * @param userId the given user id
+     */
+    public void expireCommenter(final String userId) {
+        expire(Comment.COMMENT_AUTHOR_ID, userId);
+    }
+
+    /**
+     * Expires the ring if it holds the comment specified by the given comment id.
+     *
+     * @param commentId the given comment id
+     */
+    public void expireComment(final String commentId) {
+        expire(Keys.OBJECT_ID, commentId);
+    }
+
+    /**
+     * Expires the ring if it holds a comment with the specified value of the specified property.
+     *
+     * <p>
+     * Increases the generation anyway, a rebuilding in progress may load such a comment.
+     * </p>
+     *
+     * @param name the specified property name
+     * @param value the specified value
+     */
+    private void expire(final String name, final String value) {
+        synchronized (RING) {
+            GENERATION.incrementAndGet();
+
+            for (int i = 0; i < size; i++) {
+                if (value.equals(RING[(head - i + CAPACITY) % CAPACITY].optString(name))) {
+                    loaded = false;
+
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Pushes the specified comment into the ring, the caller should hold the lock of the ring.
+     *
+     * @param comment the specified comment
+     */
+    private static void push(final JSONObject comment) {
+        final String commentId = comment.optString(Keys.OBJECT_ID);
+        for (int i = 0; i < size; i++) {
+            if (commentId.equals(RING[(head - i + CAPACITY) % CAPACITY].optString(Keys.OBJECT_ID))) {
+                return;
+            }
+        }
+
+        head = (head + 1) % CAPACITY;
+        RING[head] = copy(comment);
+
+        if (size < CAPACITY) {
+            size++;
+        }
+    }
+
+    /**
+     * Copies the specified comment, the commenter is copied as well.
+     *
+     * @param comment the specified comment
+     * @return a copy
+     */
+    private static JSONObject copy(final JSONObject comment) {
+        final JSONObject ret = Caches.copy(comment);
+
+        final JSONObject commenter = comment.optJSONObject(Comment.COMMENT_T_COMMENTER);
+        if (null != commenter) {
+            ret.put(Comment.COMMENT_T_COMMENTER, Caches.copy(commenter));
+        }
+
+        return ret;
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2012-2015, b3log.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.symphony.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import org.b3log.symphony.util.Symphonys;
+
+/**
+ * Notification channel.
+ *
+ * <p>
+ * Lets long-polling requests wait for changes of unread notification count of a user. Each user who has been waiting
+ * has a version, which increases when notifications of the user are added or made read. A waiting request returns
+ * once the version differs from the one it knows, or after {@code notificationLongPollTimeout} milliseconds.
+ * </p>
+ *
+ * <p>
+ * Waiting holds a request thread (there is no asynchronous servlet in Servlet 2.5), so at most
+ * {@code notificationLongPollMaxWaiters} requests wait at the same time, the others return immediately. The cap should
+ * be well below the thread count of the servlet container, and callers should release the JDBC connection bound to
+ * the current thread before waiting.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.1, Jun 8, 2015
+ * @since 1.3.0
+ */
+@Named
+@Singleton
+public class NotificationChannel {
+
+    /**
+     * Max milliseconds of waiting.
+     */
+    private static final long TIMEOUT = Symphonys.getLong("notificationLongPollTimeout");
+
+    /**
+     * Max count of waiting requests.
+     */
+    private static final int MAX_WAITERS = Symphonys.getInt("notificationLongPollMaxWaiters");
+
+    /**
+     * Versions, &lt;userId, version&gt;, the version object is also the monitor of waiting.
+     */
+    private static final ConcurrentMap<String, AtomicLong> VERSIONS = new ConcurrentHashMap<String, AtomicLong>();
+
+    /**
+     * Count of waiting requests.
+     */
+    private static final AtomicInteger WAITERS = new AtomicInteger();
+
+    /**
+     * Gets the version of a user specified by the given user id.
+     *
+     * @param userId the given user id
+     * @return version, returns {@code 0} if the user has never waited
+     */
+    public long getVersion(final String userId) {
+        final AtomicLong version = VERSIONS.get(userId);
+
+        return null == version ? 0 : version.get();
+    }
+
+    /**
+     * Waits for a change of a user specified by the given user id.
+     *
+     * @param userId the given user id
+     * @param knownVersion the version known by the waiting request
+     * @return the current version, equals to the specified known version if timeout, returns {@code -1} if there are
+     * too many waiting requests
+     */
+    public long await(final String userId, final long knownVersion) {
+        if (WAITERS.incrementAndGet() > MAX_WAITERS) {
+            WAITERS.decrementAndGet();
+
+            return -1;
+        }
+
+        try {
+            AtomicLong version = VERSIONS.get(userId);
+            if (null == version) {
+                VERSIONS.putIfAbsent(userId, new AtomicLong());
+                version = VERSIONS.get(userId);
+            }
+
+            synchronized (version) {
+                final long deadline = System.currentTimeMillis() + TIMEOUT;
+                long remaining = TIMEOUT;
+
+                while (version.get() == knownVersion && remaining > 0) {
+                    version.wait(remaining);
+                    remaining = deadline - System.currentTimeMillis();
+                }
+
+                return version.get();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            return getVersion(userId);
+        } finally {
+            WAITERS.decrementAndGet();
+        }
+    }
+
+    /**
+     * Signals a change of a user specified by the given user id, does nothing if the user has never waited.
+     *
+     * @param userId the given user id
+     */
+    public void signal(final String userId) {
+        final AtomicLong version = VERSIONS.get(userId);
+        if (null == version) {
+            return;
+        }
+
+        synchronized (version) {
+            version.incrementAndGet();
+            version.notifyAll();
+        }
+    }
+
+    /**
+     * Signals a change of all users who have waited, for example, an author activity has been published.
+     */
+    public void signalAll() {
+        for (final String userId : VERSIONS.keySet()) {
+            signal(userId);
+        }
+    }
+
+    /**
+     * Gets the count of waiting requests.
+     *
+     * @return count of waiting requests
+     */
+    public int getWaiterCount() {
+        return WAITERS.get();
+    }
+}
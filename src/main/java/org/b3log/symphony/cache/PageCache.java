@@ -0,0 +1,474 @@
+/*
+ * Copyright (c) 2012-2015, b3log.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.symphony.cache;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+import org.b3log.latke.Keys;
+import org.b3log.latke.logging.Level;
+import org.b3log.latke.logging.Logger;
+import org.b3log.latke.model.User;
+import org.b3log.latke.util.Strings;
+import org.b3log.symphony.model.Article;
+import org.b3log.symphony.util.Symphonys;
+import org.json.JSONObject;
+
+/**
+ * Page cache.
+ *
+ * <p>
+ * Caches rendered pages (index, article, tag and member) for anonymous visitors and search engine bots, keyed by path
+ * and page number. A page expires after {@code pageCacheTTL} seconds, and will be removed by events which change the
+ * entity (article, tag or user) it shows. Cached pages are served by {@link org.b3log.symphony.PageCacheFilter}
+ * without touching the session.
+ * </p>
+ *
+ * <p>
+ * Holds {@link Validator validators} (ETag and Last-Modified) for conditional GET as well. A validator of a page is
+ * created at the first time requesting and lives as long as the cached page would (removed by the same events, and
+ * expired after the same TTL), so an unchanged validator guarantees the page has not been changed. The
+ * {@link #getAPIValidator() API validator} changes once an article has been added or changed, and expires after the
+ * same TTL as well, since the APIs show data (view count, author) changed by other events.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.1.0.1, Jun 8, 2015
+ * @since 1.3.0
+ */
+@Named
+@Singleton
+public class PageCache {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(PageCache.class.getName());
+
+    /**
+     * Request attribute name of a cached page hit by the current request.
+     */
+    public static final String HIT = "pageCacheHit";
+
+    /**
+     * Index path.
+     */
+    public static final String INDEX_PATH = "/";
+
+    /**
+     * Cacheable paths.
+     */
+    private static final Pattern CACHEABLE_PATH = Pattern.compile("^/$|^/article/[^/]+$|^/tags/[^/]+$|^/member/[^/]+$");
+
+    /**
+     * Name of the page number parameter.
+     */
+    private static final String PAGE_NUM_PARAM = "p";
+
+    /**
+     * Cacheable page numbers.
+     */
+    private static final Pattern CACHEABLE_PAGE_NUM = Pattern.compile("^[1-9][0-9]{0,5}$");
+
+    /**
+     * Name of the login cookie.
+     */
+    private static final String LOGIN_COOKIE = "b3log-latke";
+
+    /**
+     * Milliseconds of a second.
+     */
+    private static final long SECOND_MILLIS = 1000L;
+
+    /**
+     * Time to live of a page in milliseconds.
+     */
+    private static final long TTL = Symphonys.getLong("pageCacheTTL") * SECOND_MILLIS;
+
+    /**
+     * Pages, &lt;path, &lt;pageNum, page&gt;&gt;.
+     */
+    private static final LRUCache<String, ConcurrentMap<Integer, Page>> PAGES
+            = new LRUCache<String, ConcurrentMap<Integer, Page>>(Symphonys.getInt("pageCacheCnt"));
+
+    /**
+     * Validators of pages, &lt;path, validator&gt;.
+     */
+    private static final LRUCache<String, Validator> VALIDATORS = new LRUCache<String, Validator>(Symphonys.getInt("pageCacheCnt"));
+
+    /**
+     * Sequence of validators, distinguishes validators created in the same millisecond.
+     */
+    private static final AtomicLong VALIDATOR_SEQ = new AtomicLong();
+
+    /**
+     * Validator of the article APIs.
+     */
+    private static volatile Validator apiValidator = Validator.create();
+
+    /**
+     * Gets the validator of the specified request, creates one if not found or expired.
+     *
+     * @param request the specified request
+     * @return validator, returns {@code null} if the specified request is not cacheable
+     */
+    public Validator getValidator(final HttpServletRequest request) {
+        final String path = getCacheablePath(request);
+        if (null == path) {
+            return null;
+        }
+
+        synchronized (VALIDATORS) {
+            Validator ret = VALIDATORS.get(path);
+            if (null == ret || System.currentTimeMillis() > ret.lastModified + TTL) {
+                ret = Validator.create();
+                VALIDATORS.put(path, ret);
+            }
+
+            return ret;
+        }
+    }
+
+    /**
+     * Gets the validator of the article APIs (/apis/articles, /apis/news and /apis/broadcasts), creates one if
+     * expired.
+     *
+     * @return validator
+     */
+    public Validator getAPIValidator() {
+        Validator ret = apiValidator;
+        if (System.currentTimeMillis() > ret.lastModified + TTL) {
+            ret = Validator.create(); // Concurrent renewals only cost an extra full response
+            apiValidator = ret;
+        }
+
+        return ret;
+    }
+
+    /**
+     * Gets the cached page of the specified request.
+     *
+     * @param request the specified request
+     * @return page, returns {@code null} if not found, expired or the specified request is not cacheable
+     */
+    public Page get(final HttpServletRequest request) {
+        final String path = getCacheablePath(request);
+        if (null == path) {
+            return null;
+        }
+
+        final ConcurrentMap<Integer, Page> pages = PAGES.get(path);
+        if (null == pages) {
+            return null;
+        }
+
+        final Page ret = pages.get(getPageNum(request));
+        if (null == ret || System.currentTimeMillis() > ret.expireTime) {
+            return null;
+        }
+
+        return ret;
+    }
+
+    /**
+     * Puts the specified rendered content of the specified request.
+     *
+     * @param request the specified request
+     * @param contentType the specified content type
+     * @param content the specified rendered content
+     */
+    public void put(final HttpServletRequest request, final String contentType, final byte[] content) {
+        final String path = getCacheablePath(request);
+        if (null == path) {
+            return;
+        }
+
+        ConcurrentMap<Integer, Page> pages;
+        synchronized (PAGES) {
+            pages = PAGES.get(path);
+            if (null == pages) {
+                pages = new ConcurrentHashMap<Integer, Page>();
+                PAGES.put(path, pages);
+            }
+        }
+
+        pages.put(getPageNum(request), new Page(contentType, content, System.currentTimeMillis() + TTL));
+    }
+
+    /**
+     * Removes the cached index pages.
+     */
+    public void removeIndex() {
+        remove(INDEX_PATH);
+    }
+
+    /**
+     * Removes the cached pages of the specified article, its tags and the index.
+     *
+     * @param article the specified article
+     */
+    public void removeArticle(final JSONObject article) {
+        removeArticle(article.optString(Keys.OBJECT_ID));
+        removeTags(article.optString(Article.ARTICLE_TAGS));
+        removeIndex();
+    }
+
+    /**
+     * Removes the cached pages of an article specified by the given article id.
+     *
+     * @param articleId the given article id
+     */
+    public void removeArticle(final String articleId) {
+        remove("/article/" + articleId);
+
+        apiValidator = Validator.create();
+    }
+
+    /**
+     * Removes the cached pages of tags specified by the given tags string.
+     *
+     * @param tagsString the given tags string, for example, "tag1,tag2"
+     */
+    public void removeTags(final String tagsString) {
+        for (final String tagTitle : tagsString.split(",")) {
+            remove("/tags/" + tagTitle.trim());
+        }
+    }
+
+    /**
+     * Removes the cached pages of a member specified by the given user name.
+     *
+     * @param userName the given user name
+     */
+    public void removeMember(final String userName) {
+        remove("/member/" + userName);
+    }
+
+    /**
+     * Removes the cached pages and the validator of the specified path.
+     *
+     * @param path the specified path
+     */
+    private static void remove(final String path) {
+        PAGES.remove(path);
+        VALIDATORS.remove(path);
+    }
+
+    /**
+     * Gets the cacheable path of the specified request.
+     *
+     * <p>
+     * A request is cacheable if it is an anonymous GET request of a cacheable path without parameters except the page
+     * number.
+     * </p>
+     *
+     * @param request the specified request
+     * @return the decoded path, returns {@code null} if the specified request is not cacheable
+     */
+    private static String getCacheablePath(final HttpServletRequest request) {
+        if (!"GET".equals(request.getMethod())) {
+            return null;
+        }
+
+        String ret = request.getRequestURI().substring(request.getContextPath().length());
+        try {
+            ret = URLDecoder.decode(ret, "UTF-8");
+        } catch (final UnsupportedEncodingException e) {
+            LOGGER.log(Level.ERROR, "Decodes path [" + ret + "] failed", e);
+
+            return null;
+        }
+
+        if (!CACHEABLE_PATH.matcher(ret).matches()) {
+            return null;
+        }
+
+        final Map<?, ?> params = request.getParameterMap();
+        final boolean pageNumOnly = params.isEmpty() || (1 == params.size() && params.containsKey(PAGE_NUM_PARAM)
+                                                          && CACHEABLE_PAGE_NUM.matcher(request.getParameter(PAGE_NUM_PARAM)).matches());
+        if (!pageNumOnly || !isAnonymous(request)) {
+            return null;
+        }
+
+        return ret;
+    }
+
+    /**
+     * Gets the page number of the specified request.
+     *
+     * @param request the specified request
+     * @return page number, returns {@code 1} if not specified
+     */
+    private static int getPageNum(final HttpServletRequest request) {
+        final String pageNum = request.getParameter(PAGE_NUM_PARAM);
+        if (Strings.isEmptyOrNull(pageNum)) {
+            return 1;
+        }
+
+        return Integer.valueOf(pageNum);
+    }
+
+    /**
+     * Determines whether the specified request is made by an anonymous visitor (neither logged in nor carrying the
+     * login cookie).
+     *
+     * @param request the specified request
+     * @return {@code true} if it is anonymous, returns {@code false} otherwise
+     */
+    public static boolean isAnonymous(final HttpServletRequest request) {
+        final HttpSession session = request.getSession(false);
+        if (null != session && null != session.getAttribute(User.USER)) {
+            return false;
+        }
+
+        final Cookie[] cookies = request.getCookies();
+        if (null != cookies) {
+            for (final Cookie cookie : cookies) {
+                if (LOGIN_COOKIE.equals(cookie.getName())) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Validator for conditional GET.
+     *
+     * @author <a href="http://88250.b3log.org">Liang Ding</a>
+     * @version 1.0.0.0, Jun 8, 2015
+     * @since 1.3.0
+     */
+    public static final class Validator {
+
+        /**
+         * ETag.
+         */
+        private final String eTag;
+
+        /**
+         * Last modified time, in seconds precision.
+         */
+        private final long lastModified;
+
+        /**
+         * Constructs a validator with the specified ETag and last modified time.
+         *
+         * @param eTag the specified ETag
+         * @param lastModified the specified last modified time
+         */
+        private Validator(final String eTag, final long lastModified) {
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * Creates a validator with the current time.
+         *
+         * @return validator
+         */
+        private static Validator create() {
+            final long now = System.currentTimeMillis();
+
+            return new Validator("W/\"" + Long.toHexString(now) + '-' + VALIDATOR_SEQ.incrementAndGet() + '"',
+                                 now / SECOND_MILLIS * SECOND_MILLIS);
+        }
+
+        /**
+         * Gets the ETag.
+         *
+         * @return ETag
+         */
+        public String getETag() {
+            return eTag;
+        }
+
+        /**
+         * Gets the last modified time.
+         *
+         * @return last modified time
+         */
+        public long getLastModified() {
+            return lastModified;
+        }
+    }
+
+    /**
+     * Cached page.
+     *
+     * @author <a href="http://88250.b3log.org">Liang Ding</a>
+     * @version 1.0.0.0, Jun 8, 2015
+     * @since 1.3.0
+     */
+    public static final class Page {
+
+        /**
+         * Content type.
+         */
+        private final String contentType;
+
+        /**
+         * Rendered content.
+         */
+        private final byte[] content;
+
+        /**
+         * Expire time.
+         */
+        private final long expireTime;
+
+        /**
+         * Constructs a page with the specified content type, content and expire time.
+         *
+         * @param contentType the specified content type
+         * @param content the specified content
+         * @param expireTime the specified expire time
+         */
+        private Page(final String contentType, final byte[] content, final long expireTime) {
+            this.contentType = contentType;
+            this.content = content;
+            this.expireTime = expireTime;
+        }
+
+        /**
+         * Gets the content type.
+         *
+         * @return content type
+         */
+        public String getContentType() {
+            return contentType;
+        }
+
+        /**
+         * Gets the rendered content.
+         *
+         * @return rendered content
+         */
+        public byte[] getContent() {
+            return content;
+        }
+    }
+}
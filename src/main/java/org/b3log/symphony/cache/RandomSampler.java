@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2012-2015, b3log.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.symphony.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import org.b3log.latke.Keys;
+import org.b3log.latke.logging.Level;
+import org.b3log.latke.logging.Logger;
+import org.b3log.latke.repository.CompositeFilter;
+import org.b3log.latke.repository.CompositeFilterOperator;
+import org.b3log.latke.repository.Filter;
+import org.b3log.latke.repository.FilterOperator;
+import org.b3log.latke.repository.PropertyFilter;
+import org.b3log.latke.repository.Query;
+import org.b3log.latke.repository.RepositoryException;
+import org.b3log.latke.repository.SortDirection;
+import org.b3log.symphony.model.Article;
+import org.b3log.symphony.model.Tag;
+import org.b3log.symphony.repository.ArticleRepository;
+import org.b3log.symphony.repository.TagRepository;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Random sampler.
+ *
+ * <p>
+ * Holds a pool of article briefs and a pool of icon-bearing tag ids in memory, random picks are made from the pools.
+ * The article pool is a window of articles ordered by {@value Article#ARTICLE_RANDOM_DOUBLE} starting at a random
+ * point, so there is no random-order SQL. The tag pool is a window of icon-bearing tags ordered by id, each refreshing
+ * moves the window forward (wraps around at the end), so all tags will be sampled across refreshes. The pools are
+ * built at the first time accessing and then refreshed by {@link #refresh()} periodically.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.1.0.0, Jun 8, 2015
+ * @since 1.3.0
+ */
+@Named
+@Singleton
+public class RandomSampler {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(RandomSampler.class.getName());
+
+    /**
+     * Size of the article pool.
+     */
+    private static final int ARTICLE_POOL_SIZE = 256;
+
+    /**
+     * Maximum size of the tag pool.
+     */
+    private static final int TAG_POOL_SIZE = 1024;
+
+    /**
+     * Random.
+     */
+    private static final Random RANDOM = new Random();
+
+    /**
+     * Article pool (briefs).
+     */
+    private static volatile List<JSONObject> articlePool;
+
+    /**
+     * Tag pool (ids).
+     */
+    private static volatile List<String> tagPool;
+
+    /**
+     * Id of the last tag in the tag pool, the next refreshing loads tags after it, {@code null} means from the first
+     * tag.
+     */
+    private static volatile String tagCursor;
+
+    /**
+     * Article repository.
+     */
+    @Inject
+    private ArticleRepository articleRepository;
+
+    /**
+     * Tag repository.
+     */
+    @Inject
+    private TagRepository tagRepository;
+
+    /**
+     * Samples articles with the specified size.
+     *
+     * @param size the specified size
+     * @return article briefs (id, title, permalink, author id/email and status), blocked articles excluded
+     * @throws RepositoryException repository exception
+     */
+    public List<JSONObject> sampleArticles(final int size) throws RepositoryException {
+        if (null == articlePool) {
+            refresh();
+        }
+
+        final List<JSONObject> ret = new ArrayList<JSONObject>();
+        for (final JSONObject article : sample(articlePool, size)) {
+            if (Article.ARTICLE_STATUS_C_INVALID != article.optInt(Article.ARTICLE_STATUS)) {
+                ret.add(Caches.copy(article));
+            }
+        }
+
+        return ret;
+    }
+
+    /**
+     * Samples icon-bearing tag ids with the specified size.
+     *
+     * @param size the specified size
+     * @return tag ids
+     * @throws RepositoryException repository exception
+     */
+    public List<String> sampleTagIds(final int size) throws RepositoryException {
+        if (null == tagPool) {
+            refresh();
+        }
+
+        return sample(tagPool, size);
+    }
+
+    /**
+     * Refreshes the pools.
+     *
+     * @return the count of pooled articles and tags, {articleCnt, tagCnt}
+     * @throws RepositoryException repository exception
+     */
+    public int[] refresh() throws RepositoryException {
+        final double start = RANDOM.nextDouble();
+        final List<JSONObject> articles = loadArticles(FilterOperator.GREATER_THAN_OR_EQUAL, start, ARTICLE_POOL_SIZE);
+        if (articles.size() < ARTICLE_POOL_SIZE) { // Wraps around
+            articles.addAll(loadArticles(FilterOperator.LESS_THAN, start, ARTICLE_POOL_SIZE - articles.size()));
+        }
+
+        final String cursor = tagCursor;
+        final List<String> tagIds = loadTagIds(FilterOperator.GREATER_THAN, cursor, TAG_POOL_SIZE);
+        if (tagIds.size() < TAG_POOL_SIZE && null != cursor) { // Wraps around
+            tagIds.addAll(loadTagIds(FilterOperator.LESS_THAN_OR_EQUAL, cursor, TAG_POOL_SIZE - tagIds.size()));
+        }
+
+        // Moves the window forward, starts from the first tag if all tags have been loaded
+        tagCursor = tagIds.size() < TAG_POOL_SIZE ? null : tagIds.get(tagIds.size() - 1);
+
+        articlePool = Collections.unmodifiableList(articles);
+        tagPool = Collections.unmodifiableList(tagIds);
+
+        LOGGER.log(Level.DEBUG, "Refreshed random pools [articleCnt={0}, tagCnt={1}]", new Object[]{articles.size(), tagIds.size()});
+
+        return new int[]{articles.size(), tagIds.size()};
+    }
+
+    /**
+     * Loads icon-bearing tag ids with the specified id bound and size.
+     *
+     * @param operator the specified filter operator applied on the id
+     * @param bound the specified id bound, {@code null} means no bound
+     * @param size the specified size
+     * @return tag ids, ordered by id
+     * @throws RepositoryException repository exception
+     */
+    private List<String> loadTagIds(final FilterOperator operator, final String bound, final int size) throws RepositoryException {
+        final List<Filter> filters = new ArrayList<Filter>();
+        filters.add(new PropertyFilter(Tag.TAG_ICON_PATH, FilterOperator.NOT_EQUAL, ""));
+        if (null != bound) {
+            filters.add(new PropertyFilter(Keys.OBJECT_ID, operator, bound));
+        }
+
+        final Query query = new Query().setCurrentPageNum(1).setPageSize(size).setPageCount(1).
+                setFilter(1 == filters.size() ? filters.get(0) : new CompositeFilter(CompositeFilterOperator.AND, filters)).
+                addSort(Keys.OBJECT_ID, SortDirection.ASCENDING).
+                addProjection(Keys.OBJECT_ID, String.class);
+        final JSONArray tags = tagRepository.get(query).optJSONArray(Keys.RESULTS);
+
+        final List<String> ret = new ArrayList<String>();
+        for (int i = 0; i < tags.length(); i++) {
+            ret.add(tags.optJSONObject(i).optString(Keys.OBJECT_ID));
+        }
+
+        return ret;
+    }
+
+    /**
+     * Loads article briefs with the specified random double bound and size.
+     *
+     * @param operator the specified filter operator applied on the random double
+     * @param bound the specified random double bound
+     * @param size the specified size
+     * @return article briefs
+     * @throws RepositoryException repository exception
+     */
+    private List<JSONObject> loadArticles(final FilterOperator operator, final double bound, final int size)
+            throws RepositoryException {
+        final Query query = new Query().setCurrentPageNum(1).setPageSize(size).setPageCount(1).
+                setFilter(new PropertyFilter(Article.ARTICLE_RANDOM_DOUBLE, operator, bound)).
+                addSort(Article.ARTICLE_RANDOM_DOUBLE, SortDirection.ASCENDING).
+                addProjection(Keys.OBJECT_ID, String.class).
+                addProjection(Article.ARTICLE_TITLE, String.class).
+                addProjection(Article.ARTICLE_PERMALINK, String.class).
+                addProjection(Article.ARTICLE_AUTHOR_ID, String.class).
+                addProjection(Article.ARTICLE_AUTHOR_EMAIL, String.class).
+                addProjection(Article.ARTICLE_STATUS, Integer.class);
+        final JSONArray articles = articleRepository.get(query).optJSONArray(Keys.RESULTS);
+
+        final List<JSONObject> ret = new ArrayList<JSONObject>();
+        for (int i = 0; i < articles.length(); i++) {
+            ret.add(articles.optJSONObject(i));
+        }
+
+        return ret;
+    }
+
+    /**
+     * Samples the specified pool with the specified size.
+     *
+     * @param <T> the type of elements
+     * @param pool the specified pool
+     * @param size the specified size
+     * @return distinct elements in random order
+     */
+    private static <T> List<T> sample(final List<T> pool, final int size) {
+        final int poolSize = pool.size();
+        if (size >= poolSize) {
+            final List<T> ret = new ArrayList<T>(pool);
+            Collections.shuffle(ret, RANDOM);
+
+            return ret;
+        }
+
+        final List<T> ret = new ArrayList<T>(size);
+        final Set<Integer> picked = new HashSet<Integer>();
+        while (ret.size() < size) {
+            final int index = RANDOM.nextInt(poolSize);
+            if (picked.add(index)) {
+                ret.add(pool.get(index));
+            }
+        }
+
+        return ret;
+    }
+}
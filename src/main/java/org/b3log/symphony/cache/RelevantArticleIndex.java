@@ -0,0 +1,434 @@
+/*
+ * Copyright (c) 2012-2015, b3log.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.symphony.cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import org.b3log.latke.Keys;
+import org.b3log.latke.logging.Level;
+import org.b3log.latke.logging.Logger;
+import org.b3log.latke.repository.Query;
+import org.b3log.latke.repository.RepositoryException;
+import org.b3log.latke.repository.SortDirection;
+import org.b3log.latke.repository.jdbc.JdbcRepository;
+import org.b3log.symphony.model.Article;
+import org.b3log.symphony.repository.ArticleRepository;
+import org.b3log.symphony.util.Symphonys;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Relevant articles index.
+ *
+ * <p>
+ * Holds a brief (id, title, permalink, author, tags, create time and status) of all articles and a tag to articles
+ * (the most recent first) index in memory. The relevant articles of an article are the articles sharing tags with it,
+ * scored by the count of shared tags with a recency weight, and only the most recent {@value #TAG_WINDOW} articles of
+ * each tag are taken as candidates. The computed relevant article ids are memorized until an article sharing tags has
+ * been added or updated.
+ * </p>
+ *
+ * <p>
+ * Loads all articles from repository in a background thread (started at startup by
+ * {@link org.b3log.symphony.SymphonyServletListener}) and then keeps up to date by the add/update article events.
+ * Returns no relevant articles until the loading completes.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.1.0.0, Jun 8, 2015
+ * @since 1.3.0
+ */
+@Named
+@Singleton
+public class RelevantArticleIndex {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(RelevantArticleIndex.class.getName());
+
+    /**
+     * Page size of loading.
+     */
+    private static final int LOAD_PAGE_SIZE = 1000;
+
+    /**
+     * Count of the most recent articles of a tag taken as relevant candidates.
+     */
+    private static final int TAG_WINDOW = 64;
+
+    /**
+     * Maximum count of memorized relevant article ids per article.
+     */
+    private static final int CAPACITY = 32;
+
+    /**
+     * Age (in days) at which the recency weight of an article halves.
+     */
+    private static final int RECENCY_HALF_DAYS = 30;
+
+    /**
+     * Milliseconds of a day.
+     */
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    /**
+     * Article briefs, &lt;articleId, brief&gt;.
+     */
+    private static final ConcurrentMap<String, JSONObject> ARTICLES = new ConcurrentHashMap<String, JSONObject>();
+
+    /**
+     * Tag articles, &lt;tagTitle, articleIds (the most recent first)&gt;.
+     */
+    private static final ConcurrentMap<String, Set<String>> TAG_ARTICLES = new ConcurrentHashMap<String, Set<String>>();
+
+    /**
+     * Memorized relevant article ids, &lt;articleId, relevantArticleIds&gt;.
+     */
+    private static final LRUCache<String, List<String>> RELEVANT
+            = new LRUCache<String, List<String>>(Symphonys.getInt("relevantArticlesCacheCnt"));
+
+    /**
+     * Ids of articles indexed by {@link #put(org.json.JSONObject)} while loading, the loading will not overwrite them.
+     */
+    private static final Set<String> PUT_WHILE_LOADING = new HashSet<String>();
+
+    /**
+     * Whether all articles have been loaded.
+     */
+    private static volatile boolean loaded;
+
+    /**
+     * Whether the articles are being loaded, guarded by {@link #ARTICLES}.
+     */
+    private static boolean loading;
+
+    /**
+     * Article repository.
+     */
+    @Inject
+    private ArticleRepository articleRepository;
+
+    /**
+     * Gets the relevant articles of an article specified by the given article id with the specified fetch size.
+     *
+     * @param articleId the given article id
+     * @param fetchSize the specified fetch size
+     * @return relevant articles (briefs, blocked articles excluded), returns an empty list if not found or the
+     * articles have not been loaded yet
+     */
+    public List<JSONObject> getRelevantArticles(final String articleId, final int fetchSize) {
+        if (!loaded) {
+            loadAsync(); // Retries if the previous loading failed
+
+            return Collections.emptyList();
+        }
+
+        List<String> relevantIds = RELEVANT.get(articleId);
+        if (null == relevantIds) {
+            relevantIds = compute(articleId);
+            RELEVANT.put(articleId, relevantIds);
+        }
+
+        final List<JSONObject> ret = new ArrayList<JSONObject>();
+        for (final String relevantId : relevantIds) {
+            if (ret.size() >= fetchSize) {
+                break;
+            }
+
+            final JSONObject brief = ARTICLES.get(relevantId);
+            if (null == brief || Article.ARTICLE_STATUS_C_INVALID == brief.optInt(Article.ARTICLE_STATUS)) {
+                continue;
+            }
+
+            ret.add(Caches.copy(brief));
+        }
+
+        return ret;
+    }
+
+    /**
+     * Indexes the specified article, adds it if it is a new one, or refreshes it if it has been indexed.
+     *
+     * <p>
+     * Does nothing if the articles are neither loaded nor being loaded, the next loading will load the article from
+     * repository.
+     * </p>
+     *
+     * @param article the specified article
+     */
+    public void put(final JSONObject article) {
+        synchronized (ARTICLES) {
+            if (!loaded && !loading) {
+                return;
+            }
+
+            final String articleId = article.optString(Keys.OBJECT_ID);
+            if (!loaded) {
+                PUT_WHILE_LOADING.add(articleId);
+            }
+            final JSONObject old = ARTICLES.get(articleId);
+            if (null != old) {
+                for (final String tagTitle : getTagTitles(old)) {
+                    invalidate(tagTitle);
+
+                    final Set<String> articleIds = TAG_ARTICLES.get(tagTitle);
+                    if (null != articleIds) {
+                        articleIds.remove(articleId);
+                    }
+                }
+            }
+
+            index(article);
+
+            for (final String tagTitle : getTagTitles(article)) {
+                invalidate(tagTitle);
+            }
+            RELEVANT.remove(articleId);
+        }
+    }
+
+    /**
+     * Computes the relevant article ids of an article specified by the given article id.
+     *
+     * @param articleId the given article id
+     * @return relevant article ids, the most relevant first
+     */
+    private List<String> compute(final String articleId) {
+        final JSONObject article = ARTICLES.get(articleId);
+        if (null == article) {
+            return Collections.emptyList();
+        }
+
+        final Map<String, Integer> overlaps = new HashMap<String, Integer>();
+        for (final String tagTitle : getTagTitles(article)) {
+            final Set<String> articleIds = TAG_ARTICLES.get(tagTitle);
+            if (null == articleIds) {
+                continue;
+            }
+
+            int i = 0;
+            final Iterator<String> iterator = articleIds.iterator();
+            while (iterator.hasNext() && i++ < TAG_WINDOW) {
+                final String candidateId = iterator.next();
+                if (candidateId.equals(articleId)) {
+                    continue;
+                }
+
+                final Integer overlap = overlaps.get(candidateId);
+                overlaps.put(candidateId, null == overlap ? 1 : overlap + 1);
+            }
+        }
+
+        final long now = System.currentTimeMillis();
+        final Map<String, Double> scores = new HashMap<String, Double>();
+        for (final Map.Entry<String, Integer> overlap : overlaps.entrySet()) {
+            final JSONObject candidate = ARTICLES.get(overlap.getKey());
+            if (null == candidate) {
+                continue;
+            }
+
+            final double ageDays = (double) Math.max(0, now - candidate.optLong(Article.ARTICLE_CREATE_TIME)) / DAY_MILLIS;
+            scores.put(overlap.getKey(), overlap.getValue() / (1 + ageDays / RECENCY_HALF_DAYS));
+        }
+
+        final List<String> ret = new ArrayList<String>(scores.keySet());
+        Collections.sort(ret, new Comparator<String>() {
+            @Override
+            public int compare(final String id1, final String id2) {
+                final int result = Double.compare(scores.get(id2), scores.get(id1));
+                if (0 != result) {
+                    return result;
+                }
+
+                return id2.compareTo(id1);
+            }
+        });
+
+        if (ret.size() > CAPACITY) {
+            return new ArrayList<String>(ret.subList(0, CAPACITY));
+        }
+
+        return ret;
+    }
+
+    /**
+     * Invalidates the memorized relevant article ids of the candidates of the specified tag.
+     *
+     * @param tagTitle the specified tag title
+     */
+    private static void invalidate(final String tagTitle) {
+        final Set<String> articleIds = TAG_ARTICLES.get(tagTitle);
+        if (null == articleIds) {
+            return;
+        }
+
+        int i = 0;
+        final Iterator<String> iterator = articleIds.iterator();
+        while (iterator.hasNext() && i++ < TAG_WINDOW) {
+            RELEVANT.remove(iterator.next());
+        }
+    }
+
+    /**
+     * Indexes the specified article.
+     *
+     * @param article the specified article
+     */
+    private static void index(final JSONObject article) {
+        final String articleId = article.optString(Keys.OBJECT_ID);
+
+        final JSONObject brief = new JSONObject();
+        brief.put(Keys.OBJECT_ID, articleId);
+        brief.put(Article.ARTICLE_TITLE, article.optString(Article.ARTICLE_TITLE));
+        brief.put(Article.ARTICLE_PERMALINK, article.optString(Article.ARTICLE_PERMALINK));
+        brief.put(Article.ARTICLE_AUTHOR_ID, article.optString(Article.ARTICLE_AUTHOR_ID));
+        brief.put(Article.ARTICLE_AUTHOR_EMAIL, article.optString(Article.ARTICLE_AUTHOR_EMAIL));
+        brief.put(Article.ARTICLE_TAGS, article.optString(Article.ARTICLE_TAGS));
+        brief.put(Article.ARTICLE_CREATE_TIME, article.optLong(Article.ARTICLE_CREATE_TIME));
+        brief.put(Article.ARTICLE_STATUS, article.optInt(Article.ARTICLE_STATUS));
+        ARTICLES.put(articleId, brief);
+
+        for (final String tagTitle : getTagTitles(brief)) {
+            Set<String> articleIds = TAG_ARTICLES.get(tagTitle);
+            if (null == articleIds) {
+                // Article ids are time millis ids with the same length, so the reverse order is the most recent first
+                articleIds = new ConcurrentSkipListSet<String>(Collections.reverseOrder());
+                final Set<String> existing = TAG_ARTICLES.putIfAbsent(tagTitle, articleIds);
+                if (null != existing) {
+                    articleIds = existing;
+                }
+            }
+
+            articleIds.add(articleId);
+        }
+    }
+
+    /**
+     * Gets tag titles of the specified article.
+     *
+     * @param article the specified article
+     * @return tag titles
+     */
+    private static List<String> getTagTitles(final JSONObject article) {
+        final List<String> ret = new ArrayList<String>();
+        for (final String tagTitle : article.optString(Article.ARTICLE_TAGS).split(",")) {
+            final String title = tagTitle.trim();
+            if (!title.isEmpty()) {
+                ret.add(title);
+            }
+        }
+
+        return ret;
+    }
+
+    /**
+     * Loads all articles from repository in a background thread, does nothing if the articles have been loaded or are
+     * being loaded.
+     */
+    public void loadAsync() {
+        synchronized (ARTICLES) {
+            if (loaded || loading) {
+                return;
+            }
+
+            // Drops the remains of a failed loading
+            ARTICLES.clear();
+            TAG_ARTICLES.clear();
+            PUT_WHILE_LOADING.clear();
+
+            loading = true;
+        }
+
+        final Thread loader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    load();
+                } catch (final RepositoryException e) {
+                    LOGGER.log(Level.ERROR, "Loads relevant articles index failed", e);
+                } finally {
+                    synchronized (ARTICLES) {
+                        loading = false;
+                    }
+
+                    JdbcRepository.dispose();
+                }
+            }
+        }, "RelevantArticleIndexLoader");
+
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * Loads all articles from repository page by page, the articles put while loading will not be overwritten.
+     *
+     * @throws RepositoryException repository exception
+     */
+    private void load() throws RepositoryException {
+        int pageNum = 1;
+        while (true) {
+            final Query query = new Query().setCurrentPageNum(pageNum).setPageSize(LOAD_PAGE_SIZE).setPageCount(1).
+                    addSort(Keys.OBJECT_ID, SortDirection.ASCENDING).
+                    addProjection(Keys.OBJECT_ID, String.class).
+                    addProjection(Article.ARTICLE_TITLE, String.class).
+                    addProjection(Article.ARTICLE_PERMALINK, String.class).
+                    addProjection(Article.ARTICLE_AUTHOR_ID, String.class).
+                    addProjection(Article.ARTICLE_AUTHOR_EMAIL, String.class).
+                    addProjection(Article.ARTICLE_TAGS, String.class).
+                    addProjection(Article.ARTICLE_CREATE_TIME, Long.class).
+                    addProjection(Article.ARTICLE_STATUS, Integer.class);
+            final JSONArray articles = articleRepository.get(query).optJSONArray(Keys.RESULTS);
+
+            synchronized (ARTICLES) {
+                for (int i = 0; i < articles.length(); i++) {
+                    final JSONObject article = articles.optJSONObject(i);
+
+                    if (!PUT_WHILE_LOADING.contains(article.optString(Keys.OBJECT_ID))) {
+                        index(article);
+                    }
+                }
+            }
+
+            if (articles.length() < LOAD_PAGE_SIZE) {
+                break;
+            }
+
+            pageNum++;
+        }
+
+        synchronized (ARTICLES) {
+            loaded = true;
+            PUT_WHILE_LOADING.clear();
+        }
+
+        LOGGER.log(Level.INFO, "Loaded [{0}] articles into relevant articles index", ARTICLES.size());
+    }
+}
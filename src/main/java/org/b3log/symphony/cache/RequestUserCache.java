@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2012-2015, b3log.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.symphony.cache;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import org.b3log.latke.repository.RepositoryException;
+import org.b3log.symphony.repository.UserRepository;
+import org.json.JSONObject;
+
+/**
+ * Request scoped user cache.
+ *
+ * <p>
+ * Loads users from {@link UserCache} first, then in batch (one query for all missing ids) and memorizes them in the
+ * current request, so the same user will be loaded at most once while rendering a page. The memory will be released by
+ * {@link #release()} at the end of the request.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.1.0.0, Jun 8, 2015
+ * @since 1.3.0
+ */
+@Named
+@Singleton
+public class RequestUserCache {
+
+    /**
+     * Users of the current request, &lt;userId, user&gt;.
+     */
+    private static final ThreadLocal<Map<String, JSONObject>> USERS = new ThreadLocal<Map<String, JSONObject>>();
+
+    /**
+     * User repository.
+     */
+    @Inject
+    private UserRepository userRepository;
+
+    /**
+     * User cache.
+     */
+    @Inject
+    private UserCache userCache;
+
+    /**
+     * Gets users by the specified user ids.
+     *
+     * @param userIds the specified user ids
+     * @return users, &lt;userId, user&gt;, users not found are absent
+     * @throws RepositoryException repository exception
+     */
+    public Map<String, JSONObject> getUsers(final Set<String> userIds) throws RepositoryException {
+        Map<String, JSONObject> users = USERS.get();
+        if (null == users) {
+            users = new HashMap<String, JSONObject>();
+            USERS.set(users);
+        }
+
+        final Set<String> missingIds = new HashSet<String>();
+        for (final String userId : userIds) {
+            if (users.containsKey(userId)) {
+                continue;
+            }
+
+            final JSONObject cached = userCache.getUser(userId);
+            if (null == cached) {
+                missingIds.add(userId);
+            } else {
+                users.put(userId, cached);
+            }
+        }
+
+        if (!missingIds.isEmpty()) {
+            final Map<String, JSONObject> loaded = userRepository.get(missingIds);
+            for (final String userId : missingIds) {
+                final JSONObject user = loaded.get(userId);
+                users.put(userId, user); // Memorizes not found as well
+
+                if (null != user) {
+                    userCache.putUser(user);
+                }
+            }
+        }
+
+        final Map<String, JSONObject> ret = new HashMap<String, JSONObject>();
+        for (final String userId : userIds) {
+            final JSONObject user = users.get(userId);
+            if (null != user) {
+                ret.put(userId, user);
+            }
+        }
+
+        return ret;
+    }
+
+    /**
+     * Releases users of the current request.
+     */
+    public static void release() {
+        USERS.remove();
+    }
+}
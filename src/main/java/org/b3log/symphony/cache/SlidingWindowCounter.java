@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2012-2015, b3log.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.symphony.cache;
+
+import java.util.Arrays;
+
+/**
+ * Sliding window distinct counter.
+ *
+ * <p>
+ * Counts distinct keys seen in the recent minutes approximately. Each minute has a bucket of
+ * <a href="http://en.wikipedia.org/wiki/HyperLogLog">HyperLogLog</a> registers, adding a key only touches one register
+ * of the current bucket, and counting merges the registers of the buckets in the window, so both are constant time
+ * and the memory is constant regardless of the count of keys. The standard error is about 3%.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Jun 8, 2015
+ * @since 1.3.0
+ */
+public final class SlidingWindowCounter {
+
+    /**
+     * Count of index bits of registers.
+     */
+    private static final int INDEX_BITS = 10;
+
+    /**
+     * Count of registers of a bucket.
+     */
+    private static final int REGISTER_CNT = 1 << INDEX_BITS;
+
+    /**
+     * Bias correction constant for {@link #REGISTER_CNT}.
+     */
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTER_CNT);
+
+    /**
+     * Upper bound of small range correction.
+     */
+    private static final double SMALL_RANGE = 2.5 * REGISTER_CNT;
+
+    /**
+     * Milliseconds of a minute.
+     */
+    private static final long MINUTE_MILLIS = 60L * 1000;
+
+    /**
+     * FNV-1a 64 offset basis.
+     */
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    /**
+     * FNV-1a 64 prime.
+     */
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * Shift of MurmurHash3 fmix64.
+     */
+    private static final int FMIX_SHIFT = 33;
+
+    /**
+     * The first multiplier of MurmurHash3 fmix64.
+     */
+    private static final long FMIX_C1 = 0xff51afd7ed558ccdL;
+
+    /**
+     * The second multiplier of MurmurHash3 fmix64.
+     */
+    private static final long FMIX_C2 = 0xc4ceb9fe1a85ec53L;
+
+    /**
+     * Buckets, one per minute of the window, indexed by minute modulo window size.
+     */
+    private final Bucket[] buckets;
+
+    /**
+     * Constructs a counter with the specified window size.
+     *
+     * @param windowMinutes the specified window size in minutes
+     */
+    public SlidingWindowCounter(final int windowMinutes) {
+        buckets = new Bucket[windowMinutes];
+        for (int i = 0; i < windowMinutes; i++) {
+            buckets[i] = new Bucket();
+        }
+    }
+
+    /**
+     * Adds the specified key.
+     *
+     * @param key the specified key
+     */
+    public void add(final String key) {
+        final long hash = hash(key);
+        final int index = (int) (hash >>> (Long.SIZE - INDEX_BITS));
+        final byte rank = (byte) Math.min(Long.numberOfLeadingZeros(hash << INDEX_BITS) + 1, Long.SIZE - INDEX_BITS + 1);
+
+        final long minute = System.currentTimeMillis() / MINUTE_MILLIS;
+        final Bucket bucket = buckets[(int) (minute % buckets.length)];
+
+        synchronized (bucket) {
+            if (bucket.minute != minute) {
+                bucket.minute = minute;
+                Arrays.fill(bucket.registers, (byte) 0);
+            }
+
+            if (bucket.registers[index] < rank) {
+                bucket.registers[index] = rank;
+            }
+        }
+    }
+
+    /**
+     * Counts the distinct keys seen in the window.
+     *
+     * @return approximate count
+     */
+    public int count() {
+        final byte[] merged = new byte[REGISTER_CNT];
+        final long minute = System.currentTimeMillis() / MINUTE_MILLIS;
+
+        for (final Bucket bucket : buckets) {
+            synchronized (bucket) {
+                if (minute - bucket.minute >= buckets.length) { // Expired
+                    continue;
+                }
+
+                for (int i = 0; i < REGISTER_CNT; i++) {
+                    if (merged[i] < bucket.registers[i]) {
+                        merged[i] = bucket.registers[i];
+                    }
+                }
+            }
+        }
+
+        double sum = 0;
+        int zeros = 0;
+        for (int i = 0; i < REGISTER_CNT; i++) {
+            sum += 1.0 / (1L << merged[i]);
+            if (0 == merged[i]) {
+                zeros++;
+            }
+        }
+
+        final double estimate = ALPHA * REGISTER_CNT * REGISTER_CNT / sum;
+        if (estimate <= SMALL_RANGE && 0 != zeros) {
+            return (int) Math.round(REGISTER_CNT * Math.log((double) REGISTER_CNT / zeros));
+        }
+
+        return (int) Math.round(estimate);
+    }
+
+    /**
+     * Hashes the specified key with FNV-1a 64 and a final avalanche mix.
+     *
+     * @param key the specified key
+     * @return hash
+     */
+    private static long hash(final String key) {
+        long ret = FNV_OFFSET_BASIS;
+        for (int i = 0; i < key.length(); i++) {
+            ret ^= key.charAt(i);
+            ret *= FNV_PRIME;
+        }
+
+        // MurmurHash3 fmix64
+        ret ^= ret >>> FMIX_SHIFT;
+        ret *= FMIX_C1;
+        ret ^= ret >>> FMIX_SHIFT;
+        ret *= FMIX_C2;
+        ret ^= ret >>> FMIX_SHIFT;
+
+        return ret;
+    }
+
+    /**
+     * Registers of a minute.
+     *
+     * @author <a href="http://88250.b3log.org">Liang Ding</a>
+     * @version 1.0.0.0, Jun 8, 2015
+     * @since 1.3.0
+     */
+    private static final class Bucket {
+
+        /**
+         * Minute of the registers, minutes since epoch.
+         */
+        private long minute = -1;
+
+        /**
+         * Registers.
+         */
+        private final byte[] registers = new byte[REGISTER_CNT];
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2012-2015, b3log.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.symphony.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import org.b3log.symphony.model.Option;
+
+/**
+ * Site-wide statistic counter.
+ *
+ * <p>
+ * Accumulates increments of the statistic options (member, article, tag and comment count) in memory, so writers do
+ * not read-modify-write the hot statistic rows in their transactions. The increments will be drained and written to
+ * repository in batch by {@link org.b3log.symphony.service.OptionMgmtService#flushStatistic()}, readers add the
+ * unflushed increments to the persisted values, see
+ * {@link org.b3log.symphony.service.OptionQueryService#getStatistic()}.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Jun 8, 2015
+ * @since 1.3.0
+ */
+@Named
+@Singleton
+public class StatisticCounter {
+
+    /**
+     * Unflushed increments, &lt;statisticId, increment&gt;.
+     *
+     * <p>
+     * The counters are created once and never removed, so no increment will be lost while draining.
+     * </p>
+     */
+    private static final Map<String, AtomicLong> DELTAS = new HashMap<String, AtomicLong>();
+
+    static {
+        DELTAS.put(Option.ID_C_STATISTIC_MEMBER_COUNT, new AtomicLong());
+        DELTAS.put(Option.ID_C_STATISTIC_ARTICLE_COUNT, new AtomicLong());
+        DELTAS.put(Option.ID_C_STATISTIC_TAG_COUNT, new AtomicLong());
+        DELTAS.put(Option.ID_C_STATISTIC_CMT_COUNT, new AtomicLong());
+    }
+
+    /**
+     * Increments the statistic specified by the given statistic id.
+     *
+     * @param statisticId the given statistic id, for example, {@value Option#ID_C_STATISTIC_ARTICLE_COUNT}
+     */
+    public void inc(final String statisticId) {
+        add(statisticId, 1);
+    }
+
+    /**
+     * Adds the specified increment to the statistic specified by the given statistic id.
+     *
+     * @param statisticId the given statistic id
+     * @param delta the specified increment
+     */
+    public void add(final String statisticId, final long delta) {
+        if (0 == delta) {
+            return;
+        }
+
+        getCounter(statisticId).addAndGet(delta);
+    }
+
+    /**
+     * Gets the unflushed increment of the statistic specified by the given statistic id.
+     *
+     * @param statisticId the given statistic id
+     * @return increment, returns {@code 0} if the statistic is not counted here (for example, max online visitor
+     * count)
+     */
+    public long get(final String statisticId) {
+        final AtomicLong delta = DELTAS.get(statisticId);
+        if (null == delta) {
+            return 0;
+        }
+
+        return delta.get();
+    }
+
+    /**
+     * Drains all unflushed increments.
+     *
+     * @return drained increments, &lt;statisticId, increment&gt;, statistics without increment are absent
+     */
+    public Map<String, Long> drain() {
+        final Map<String, Long> ret = new HashMap<String, Long>();
+
+        for (final Map.Entry<String, AtomicLong> entry : DELTAS.entrySet()) {
+            final long delta = entry.getValue().getAndSet(0);
+
+            if (0 != delta) {
+                ret.put(entry.getKey(), delta);
+            }
+        }
+
+        return ret;
+    }
+
+    /**
+     * Gives back the specified increments, for example, the increments failed to flush.
+     *
+     * @param deltas the specified increments, &lt;statisticId, increment&gt;
+     */
+    public void restore(final Map<String, Long> deltas) {
+        for (final Map.Entry<String, Long> entry : deltas.entrySet()) {
+            add(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Gets the counter of the statistic specified by the given statistic id.
+     *
+     * @param statisticId the given statistic id
+     * @return counter
+     * @throws IllegalArgumentException if the statistic is not counted here
+     */
+    private static AtomicLong getCounter(final String statisticId) {
+        final AtomicLong ret = DELTAS.get(statisticId);
+        if (null == ret) {
+            throw new IllegalArgumentException("Unknown statistic [id=" + statisticId + "]");
+        }
+
+        return ret;
+    }
+}
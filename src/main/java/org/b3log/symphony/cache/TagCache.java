@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2012-2015, b3log.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.symphony.cache;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+import org.b3log.latke.Keys;
+import org.b3log.symphony.model.Tag;
+import org.b3log.symphony.util.Symphonys;
+import org.json.JSONObject;
+
+/**
+ * Tag cache.
+ *
+ * <p>
+ * Caches tags by id, and indexes them by title. The title index only holds tag ids, a dangling index entry (the tag
+ * has been evicted or renamed) will be treated as a miss.
+ * </p>
+ *
+ * <p>
+ * Tags are copied in and out by {@link Caches#copy(org.json.JSONObject)}.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.1.0.0, Jun 8, 2015
+ * @since 1.3.0
+ */
+@Named
+@Singleton
+public class TagCache {
+
+    /**
+     * Tags, &lt;tagId, tag&gt;.
+     */
+    private static final LRUCache<String, JSONObject> ID_CACHE = new LRUCache<String, JSONObject>(Symphonys.getInt("tagCacheCnt"));
+
+    /**
+     * Title index, &lt;tagTitle, tagId&gt;.
+     */
+    private static final LRUCache<String, String> TITLE_INDEX = new LRUCache<String, String>(Symphonys.getInt("tagCacheCnt"));
+
+    /**
+     * Gets a tag by the specified tag id.
+     *
+     * @param tagId the specified tag id
+     * @return tag, returns {@code null} if not found
+     */
+    public JSONObject getTag(final String tagId) {
+        final JSONObject tag = ID_CACHE.get(tagId);
+        if (null == tag) {
+            return null;
+        }
+
+        return Caches.copy(tag);
+    }
+
+    /**
+     * Gets a tag by the specified tag title.
+     *
+     * @param tagTitle the specified tag title
+     * @return tag, returns {@code null} if not found
+     */
+    public JSONObject getTagByTitle(final String tagTitle) {
+        final String tagId = TITLE_INDEX.get(tagTitle);
+        if (null == tagId) {
+            return null;
+        }
+
+        final JSONObject ret = getTag(tagId);
+        if (null == ret || !tagTitle.equals(ret.optString(Tag.TAG_TITLE))) {
+            return null;
+        }
+
+        return ret;
+    }
+
+    /**
+     * Puts the specified tag.
+     *
+     * @param tag the specified tag
+     */
+    public void putTag(final JSONObject tag) {
+        final String tagId = tag.optString(Keys.OBJECT_ID);
+
+        ID_CACHE.put(tagId, Caches.copy(tag));
+        TITLE_INDEX.put(tag.optString(Tag.TAG_TITLE), tagId);
+    }
+
+    /**
+     * Increments the comment count of the cached tag specified by the given tag id by one.
+     *
+     * <p>
+     * The cached tag is replaced by a patched copy, so readers never see a half updated tag. Does nothing if the tag
+     * is not cached.
+     * </p>
+     *
+     * @param tagId the specified tag id
+     */
+    public void incCommentCount(final String tagId) {
+        synchronized (ID_CACHE) {
+            final JSONObject tag = ID_CACHE.get(tagId);
+            if (null == tag) {
+                return;
+            }
+
+            final JSONObject patched = Caches.copy(tag);
+            patched.put(Tag.TAG_COMMENT_CNT, patched.optInt(Tag.TAG_COMMENT_CNT) + 1);
+
+            ID_CACHE.put(tagId, patched);
+        }
+    }
+
+    /**
+     * Removes a tag by the specified tag id.
+     *
+     * @param tagId the specified tag id
+     */
+    public void removeTag(final String tagId) {
+        final JSONObject tag = ID_CACHE.remove(tagId);
+        if (null == tag) {
+            return;
+        }
+
+        TITLE_INDEX.remove(tag.optString(Tag.TAG_TITLE));
+    }
+
+    /**
+     * Removes a tag by the specified tag title.
+     *
+     * @param tagTitle the specified tag title
+     */
+    public void removeTagByTitle(final String tagTitle) {
+        final String tagId = TITLE_INDEX.remove(tagTitle);
+        if (null == tagId) {
+            return;
+        }
+
+        ID_CACHE.remove(tagId);
+    }
+
+    /**
+     * Gets the hit count.
+     *
+     * @return hit count
+     */
+    public long getHitCount() {
+        return ID_CACHE.getHitCount();
+    }
+
+    /**
+     * Gets the miss count.
+     *
+     * @return miss count
+     */
+    public long getMissCount() {
+        return ID_CACHE.getMissCount();
+    }
+}
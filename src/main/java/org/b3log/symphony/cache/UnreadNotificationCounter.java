@@ -0,0 +1,304 @@
+/*
+ * Copyright (c) 2012-2015, b3log.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.symphony.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import org.b3log.symphony.model.Notification;
+
+/**
+ * Unread notification counter.
+ *
+ * <p>
+ * Holds the count of unread notifications of each data type for users, so the count could be read without querying
+ * notification repository. Counters of a user will be loaded from repository at the first time of reading (see
+ * {@link org.b3log.symphony.service.NotificationQueryService#getUnreadNotificationCount(java.lang.String)}), and then
+ * maintained by {@link org.b3log.symphony.service.NotificationMgmtService} along with adding notifications and making
+ * notifications read. Changes of users not loaded yet will be ignored since they will be counted while loading.
+ * </p>
+ *
+ * <p>
+ * A loading should be started by {@link #beginLoad(java.lang.String)} before querying, changes of the user while
+ * querying make the loading stale, and a stale loading will be discarded by
+ * {@link #load(java.lang.String, java.lang.Object, int[])} since its counts may miss the changes.
+ * </p>
+ *
+ * <p>
+ * Author activities pulled by followers (see {@link org.b3log.symphony.model.Activity}) are not counted one by one,
+ * the unread count of them is memorized per user with the activity version it was counted at, and becomes stale once
+ * a new activity is published.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.2.0.0, Jun 8, 2015
+ * @since 1.3.0
+ */
+@Named
+@Singleton
+public class UnreadNotificationCounter {
+
+    /**
+     * Count of notification data types.
+     */
+    public static final int TYPE_CNT = Notification.DATA_TYPE_C_FOLLOWING_USER + 1;
+
+    /**
+     * Unread counts, &lt;userId, counts indexed by notification data type&gt;.
+     */
+    private static final ConcurrentMap<String, AtomicIntegerArray> COUNTS = new ConcurrentHashMap<String, AtomicIntegerArray>();
+
+    /**
+     * Loadings in progress, &lt;userId, stale flag&gt;, guarded by itself.
+     */
+    private static final ConcurrentMap<String, AtomicBoolean> LOADINGS = new ConcurrentHashMap<String, AtomicBoolean>();
+
+    /**
+     * Version of author activities, increases when an activity is published.
+     */
+    private static final AtomicLong ACTIVITY_VERSION = new AtomicLong();
+
+    /**
+     * Unread pulled activity counts, &lt;userId, {activityVersion, count}&gt;.
+     */
+    private static final ConcurrentMap<String, long[]> PULLED_COUNTS = new ConcurrentHashMap<String, long[]>();
+
+    /**
+     * Determines whether the counters of a user specified by the given user id have been loaded.
+     *
+     * @param userId the given user id
+     * @return {@code true} if loaded, returns {@code false} otherwise
+     */
+    public boolean isLoaded(final String userId) {
+        return COUNTS.containsKey(userId);
+    }
+
+    /**
+     * Begins loading the counters of a user specified by the given user id, must be invoked before querying the counts.
+     *
+     * @param userId the given user id
+     * @return loading token for {@link #load(java.lang.String, java.lang.Object, int[])}
+     */
+    public Object beginLoad(final String userId) {
+        synchronized (LOADINGS) {
+            AtomicBoolean ret = LOADINGS.get(userId);
+            if (null == ret) {
+                ret = new AtomicBoolean();
+                LOADINGS.put(userId, ret);
+            }
+
+            return ret;
+        }
+    }
+
+    /**
+     * Loads the counters of a user specified by the given user id with the specified counts.
+     *
+     * <p>
+     * The counts will be discarded if the counters of the user have been changed since
+     * {@link #beginLoad(java.lang.String)}, or the loading has been finished by a concurrent loading (which installed
+     * or discarded its counts).
+     * </p>
+     *
+     * @param userId the given user id
+     * @param token the loading token returned by {@link #beginLoad(java.lang.String)}
+     * @param counts the specified counts, indexed by notification data type, length is {@value #TYPE_CNT}
+     * @return {@code true} if the counters have been loaded (by this or a concurrent loading), returns {@code false} if
+     * the specified counts are stale and have been discarded
+     */
+    public boolean load(final String userId, final Object token, final int[] counts) {
+        synchronized (LOADINGS) {
+            final AtomicBoolean stale = (AtomicBoolean) token;
+            if (LOADINGS.remove(userId, stale) && !stale.get()) {
+                COUNTS.putIfAbsent(userId, new AtomicIntegerArray(counts));
+            }
+
+            return COUNTS.containsKey(userId);
+        }
+    }
+
+    /**
+     * Gets the count of unread notifications of a user specified by the given user id.
+     *
+     * @param userId the given user id
+     * @return count of unread notifications, returns {@code -1} if the counters have not been loaded
+     */
+    public int get(final String userId) {
+        final AtomicIntegerArray counts = COUNTS.get(userId);
+        if (null == counts) {
+            return -1;
+        }
+
+        int ret = 0;
+        for (int i = 0; i < TYPE_CNT; i++) {
+            ret += counts.get(i);
+        }
+
+        return ret;
+    }
+
+    /**
+     * Gets the count of unread notifications with the specified data type of a user specified by the given user id.
+     *
+     * @param userId the given user id
+     * @param dataType the specified data type
+     * @return count of unread notifications, returns {@code -1} if the counters have not been loaded
+     */
+    public int get(final String userId, final int dataType) {
+        final AtomicIntegerArray counts = COUNTS.get(userId);
+        if (null == counts) {
+            return -1;
+        }
+
+        if (!isValidType(dataType)) {
+            return 0;
+        }
+
+        return counts.get(dataType);
+    }
+
+    /**
+     * Adds the specified delta to the count of unread notifications with the specified data type of a user specified
+     * by the given user id.
+     *
+     * <p>
+     * Does nothing if the counters of the user have not been loaded. The count will not be less than {@code 0}.
+     * </p>
+     *
+     * @param userId the given user id
+     * @param dataType the specified data type
+     * @param delta the specified delta, negative for making notifications read
+     */
+    public void add(final String userId, final int dataType, final int delta) {
+        if (!isValidType(dataType) || 0 == delta) {
+            return;
+        }
+
+        AtomicIntegerArray counts = COUNTS.get(userId);
+        if (null == counts) {
+            synchronized (LOADINGS) {
+                counts = COUNTS.get(userId);
+                if (null == counts) {
+                    markStale(userId);
+
+                    return;
+                }
+            }
+        }
+
+        while (true) {
+            final int current = counts.get(dataType);
+            final int next = Math.max(0, current + delta);
+
+            if (counts.compareAndSet(dataType, current, next)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Removes the counters of a user specified by the given user id, they will be reloaded at the next reading.
+     *
+     * @param userId the given user id
+     */
+    public void remove(final String userId) {
+        synchronized (LOADINGS) {
+            COUNTS.remove(userId);
+            markStale(userId);
+        }
+
+        PULLED_COUNTS.remove(userId);
+    }
+
+    /**
+     * Gets the current activity version, the version should be got before counting pulled activities.
+     *
+     * @return activity version
+     */
+    public long getActivityVersion() {
+        return ACTIVITY_VERSION.get();
+    }
+
+    /**
+     * Makes all pulled counts stale, invoked after an activity has been published.
+     */
+    public void activityPublished() {
+        ACTIVITY_VERSION.incrementAndGet();
+    }
+
+    /**
+     * Gets the count of unread pulled activities of a user specified by the given user id.
+     *
+     * @param userId the given user id
+     * @return count of unread pulled activities, returns {@code -1} if not counted or stale
+     */
+    public int getPulled(final String userId) {
+        final long[] count = PULLED_COUNTS.get(userId);
+        if (null == count || count[0] != ACTIVITY_VERSION.get()) {
+            return -1;
+        }
+
+        return (int) count[1];
+    }
+
+    /**
+     * Puts the specified count of unread pulled activities of a user specified by the given user id.
+     *
+     * @param userId the given user id
+     * @param activityVersion the activity version got before counting
+     * @param count the specified count
+     */
+    public void putPulled(final String userId, final long activityVersion, final int count) {
+        PULLED_COUNTS.put(userId, new long[]{activityVersion, count});
+    }
+
+    /**
+     * Removes the count of unread pulled activities of a user specified by the given user id, for example, the user has
+     * read activities or followed/unfollowed a user.
+     *
+     * @param userId the given user id
+     */
+    public void removePulled(final String userId) {
+        PULLED_COUNTS.remove(userId);
+    }
+
+    /**
+     * Marks the loading of a user specified by the given user id stale if it is in progress, the caller should hold
+     * the lock of {@link #LOADINGS}.
+     *
+     * @param userId the given user id
+     */
+    private static void markStale(final String userId) {
+        final AtomicBoolean stale = LOADINGS.get(userId);
+        if (null != stale) {
+            stale.set(true);
+        }
+    }
+
+    /**
+     * Determines whether the specified data type is counted.
+     *
+     * @param dataType the specified data type
+     * @return {@code true} if it is counted, returns {@code false} otherwise
+     */
+    private static boolean isValidType(final int dataType) {
+        return 0 <= dataType && dataType < TYPE_CNT;
+    }
+}
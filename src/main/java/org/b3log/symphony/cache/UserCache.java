@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2012-2015, b3log.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.symphony.cache;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+import org.b3log.latke.Keys;
+import org.b3log.latke.model.User;
+import org.b3log.symphony.util.Symphonys;
+import org.json.JSONObject;
+
+/**
+ * User cache.
+ *
+ * <p>
+ * Caches users by id, and indexes them by lower-cased email and name. The email/name indexes only hold user ids, so
+ * there is only one copy of a user in the cache, evicting a user from the id cache makes its index entries dangling,
+ * and a dangling index entry will be treated as a miss.
+ * </p>
+ *
+ * <p>
+ * Users are copied in and out by {@link Caches#copy(org.json.JSONObject)}.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.1.0, Jun 8, 2015
+ * @since 1.3.0
+ */
+@Named
+@Singleton
+public class UserCache {
+
+    /**
+     * Users, &lt;userId, user&gt;.
+     */
+    private static final LRUCache<String, JSONObject> ID_CACHE = new LRUCache<String, JSONObject>(Symphonys.getInt("userCacheCnt"));
+
+    /**
+     * Email index, &lt;email (lower-cased), userId&gt;.
+     */
+    private static final LRUCache<String, String> EMAIL_INDEX = new LRUCache<String, String>(Symphonys.getInt("userCacheCnt"));
+
+    /**
+     * Name index, &lt;name, userId&gt;.
+     */
+    private static final LRUCache<String, String> NAME_INDEX = new LRUCache<String, String>(Symphonys.getInt("userCacheCnt"));
+
+    /**
+     * Gets a user by the specified user id.
+     *
+     * @param userId the specified user id
+     * @return user, returns {@code null} if not found
+     */
+    public JSONObject getUser(final String userId) {
+        final JSONObject user = ID_CACHE.get(userId);
+        if (null == user) {
+            return null;
+        }
+
+        return Caches.copy(user);
+    }
+
+    /**
+     * Gets a user by the specified email.
+     *
+     * @param email the specified email
+     * @return user, returns {@code null} if not found
+     */
+    public JSONObject getUserByEmail(final String email) {
+        final String userId = EMAIL_INDEX.get(email.toLowerCase().trim());
+        if (null == userId) {
+            return null;
+        }
+
+        final JSONObject ret = getUser(userId);
+        if (null == ret || !email.trim().equalsIgnoreCase(ret.optString(User.USER_EMAIL))) {
+            return null;
+        }
+
+        return ret;
+    }
+
+    /**
+     * Gets a user by the specified name.
+     *
+     * @param name the specified name
+     * @return user, returns {@code null} if not found
+     */
+    public JSONObject getUserByName(final String name) {
+        final String userId = NAME_INDEX.get(name);
+        if (null == userId) {
+            return null;
+        }
+
+        final JSONObject ret = getUser(userId);
+        if (null == ret || !name.equals(ret.optString(User.USER_NAME))) {
+            return null;
+        }
+
+        return ret;
+    }
+
+    /**
+     * Puts the specified user.
+     *
+     * @param user the specified user
+     */
+    public void putUser(final JSONObject user) {
+        final String userId = user.optString(Keys.OBJECT_ID);
+
+        ID_CACHE.put(userId, Caches.copy(user));
+        EMAIL_INDEX.put(user.optString(User.USER_EMAIL).toLowerCase().trim(), userId);
+        NAME_INDEX.put(user.optString(User.USER_NAME), userId);
+    }
+
+    /**
+     * Removes a user by the specified user id.
+     *
+     * @param userId the specified user id
+     */
+    public void removeUser(final String userId) {
+        final JSONObject user = ID_CACHE.remove(userId);
+        if (null == user) {
+            return;
+        }
+
+        EMAIL_INDEX.remove(user.optString(User.USER_EMAIL).toLowerCase().trim());
+        NAME_INDEX.remove(user.optString(User.USER_NAME));
+    }
+
+    /**
+     * Gets the hit count.
+     *
+     * @return hit count
+     */
+    public long getHitCount() {
+        return ID_CACHE.getHitCount();
+    }
+
+    /**
+     * Gets the miss count.
+     *
+     * @return miss count
+     */
+    public long getMissCount() {
+        return ID_CACHE.getMissCount();
+    }
+}
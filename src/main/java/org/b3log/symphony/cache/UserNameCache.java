@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2012-2015, b3log.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.symphony.cache;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import org.b3log.latke.Keys;
+import org.b3log.latke.logging.Level;
+import org.b3log.latke.logging.Logger;
+import org.b3log.latke.model.User;
+import org.b3log.latke.repository.Query;
+import org.b3log.latke.repository.RepositoryException;
+import org.b3log.latke.repository.SortDirection;
+import org.b3log.symphony.processor.advice.validate.UserRegisterValidation;
+import org.b3log.symphony.repository.UserRepository;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * User name cache.
+ *
+ * <p>
+ * Holds names (lower-cased) of all users in memory, it is used for &#64;username resolution, loads all names from
+ * repository at the first time accessing and then keeps up to date by user management service.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.1.0.0, Jun 8, 2015
+ * @since 1.3.0
+ */
+@Named
+@Singleton
+public class UserNameCache {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(UserNameCache.class.getName());
+
+    /**
+     * Page size of loading.
+     */
+    private static final int LOAD_PAGE_SIZE = 1000;
+
+    /**
+     * User names.
+     */
+    private static final Set<String> NAMES = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /**
+     * Whether all user names have been loaded.
+     */
+    private static volatile boolean loaded;
+
+    /**
+     * User repository.
+     */
+    @Inject
+    private UserRepository userRepository;
+
+    /**
+     * Determines whether there is a user with the specified name.
+     *
+     * @param name the specified name, case insensitive
+     * @return {@code true} if exists, returns {@code false} otherwise
+     * @throws RepositoryException repository exception
+     */
+    public boolean contains(final String name) throws RepositoryException {
+        load();
+
+        return NAMES.contains(name.toLowerCase());
+    }
+
+    /**
+     * Gets the end index of the user name mentioned by the &#64; at the specified index of the specified text.
+     *
+     * <p>
+     * A mentioned user name is between &#64; and a blank or a line break, it should be a valid user name (see
+     * {@link UserRegisterValidation#invalidUserName(java.lang.String)}) of an existing user.
+     * </p>
+     *
+     * @param text the specified text
+     * @param index the specified index, the character at this index is &#64;
+     * @return the end index (exclusive) of the user name, returns {@code -1} if it is not a mention
+     * @throws RepositoryException repository exception
+     */
+    public int getMentionEnd(final String text, final int index) throws RepositoryException {
+        final int length = text.length();
+        int end = index + 1;
+        while (end < length && !Character.isWhitespace(text.charAt(end))) {
+            end++;
+        }
+
+        final int nameLength = end - index - 1;
+        if (nameLength < UserRegisterValidation.MIN_USER_NAME_LENGTH || nameLength > UserRegisterValidation.MAX_USER_NAME_LENGTH) {
+            return -1;
+        }
+
+        final String name = text.substring(index + 1, end);
+        if (UserRegisterValidation.invalidUserName(name) || !contains(name)) {
+            return -1;
+        }
+
+        return end;
+    }
+
+    /**
+     * Adds the specified user name.
+     *
+     * @param name the specified user name
+     */
+    public void add(final String name) {
+        NAMES.add(name.toLowerCase());
+    }
+
+    /**
+     * Removes the specified user name.
+     *
+     * @param name the specified user name
+     */
+    public void remove(final String name) {
+        NAMES.remove(name.toLowerCase());
+    }
+
+    /**
+     * Loads all user names from repository if not loaded yet.
+     *
+     * @throws RepositoryException repository exception
+     */
+    private void load() throws RepositoryException {
+        if (loaded) {
+            return;
+        }
+
+        synchronized (NAMES) {
+            if (loaded) {
+                return;
+            }
+
+            int pageNum = 1;
+            while (true) {
+                final Query query = new Query().setCurrentPageNum(pageNum).setPageSize(LOAD_PAGE_SIZE).setPageCount(1).
+                        addSort(Keys.OBJECT_ID, SortDirection.ASCENDING).
+                        addProjection(User.USER_NAME, String.class);
+                final JSONArray users = userRepository.get(query).optJSONArray(Keys.RESULTS);
+                for (int i = 0; i < users.length(); i++) {
+                    final JSONObject user = users.optJSONObject(i);
+
+                    NAMES.add(user.optString(User.USER_NAME).toLowerCase());
+                }
+
+                if (users.length() < LOAD_PAGE_SIZE) {
+                    break;
+                }
+
+                pageNum++;
+            }
+
+            loaded = true;
+
+            LOGGER.log(Level.INFO, "Loaded [{0}] user names", NAMES.size());
+        }
+    }
+}
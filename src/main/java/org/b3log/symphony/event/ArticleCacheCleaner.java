@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2012-2015, b3log.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.symphony.event;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import org.b3log.latke.Keys;
+import org.b3log.latke.event.AbstractEventListener;
+import org.b3log.latke.event.Event;
+import org.b3log.latke.event.EventException;
+import org.b3log.latke.logging.Level;
+import org.b3log.latke.logging.Logger;
+import org.b3log.symphony.cache.ArticleContentCache;
+import org.b3log.symphony.cache.FragmentCache;
+import org.b3log.symphony.cache.HomeFeedIndex;
+import org.b3log.symphony.cache.PageCache;
+import org.b3log.symphony.cache.LatestCommentRing;
+import org.b3log.symphony.cache.RelevantArticleIndex;
+import org.b3log.symphony.model.Article;
+import org.json.JSONObject;
+
+/**
+ * Evicts or refreshes cached data of an article once the article has been updated.
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.4.2.0, Jun 8, 2015
+ * @since 1.3.0
+ */
+@Named
+public class ArticleCacheCleaner extends AbstractEventListener<JSONObject> {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(ArticleCacheCleaner.class.getName());
+
+    /**
+     * Article content cache.
+     */
+    @Inject
+    private ArticleContentCache articleContentCache;
+
+    /**
+     * Relevant article index.
+     */
+    @Inject
+    private RelevantArticleIndex relevantArticleIndex;
+
+    /**
+     * Fragment cache.
+     */
+    @Inject
+    private FragmentCache fragmentCache;
+
+    /**
+     * Home feed index.
+     */
+    @Inject
+    private HomeFeedIndex homeFeedIndex;
+
+    /**
+     * Page cache.
+     */
+    @Inject
+    private PageCache pageCache;
+
+    /**
+     * Latest comment ring.
+     */
+    @Inject
+    private LatestCommentRing latestCommentRing;
+
+    @Override
+    public void action(final Event<JSONObject> event) throws EventException {
+        final JSONObject data = event.getData();
+        LOGGER.log(Level.DEBUG, "Processing an event[type={0}, data={1}] in listener[className={2}]",
+                   new Object[]{event.getType(), data, ArticleCacheCleaner.class.getName()});
+
+        final JSONObject article = data.optJSONObject(Article.ARTICLE);
+        if (null == article) {
+            return;
+        }
+
+        articleContentCache.remove(article.optString(Keys.OBJECT_ID));
+        relevantArticleIndex.put(article);
+        homeFeedIndex.put(article);
+        latestCommentRing.expireArticle(article.optString(Keys.OBJECT_ID));
+        pageCache.removeArticle(article);
+        fragmentCache.remove(FragmentCache.TREND_TAGS);
+    }
+
+    /**
+     * Gets the event type {@linkplain EventTypes#UPDATE_ARTICLE}.
+     *
+     * @return event type
+     */
+    @Override
+    public String getEventType() {
+        return EventTypes.UPDATE_ARTICLE;
+    }
+}
@@ -16,7 +16,6 @@
 package org.b3log.symphony.event;
 
 import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -31,7 +30,7 @@ import org.b3log.latke.urlfetch.URLFetchService;
 import org.b3log.latke.urlfetch.URLFetchServiceFactory;
 import org.b3log.symphony.model.Article;
 import org.b3log.symphony.model.Notification;
-import org.b3log.symphony.service.FollowQueryService;
+import org.b3log.symphony.service.NotificationFanOutService;
 import org.b3log.symphony.service.NotificationMgmtService;
 import org.b3log.symphony.service.UserQueryService;
 import org.json.JSONObject;
@@ -40,7 +39,7 @@ import org.json.JSONObject;
  * Sends an article notification to the user who be &#64;username in the article content.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.0.0.5, Nov 14, 2013
+ * @version 1.1.0.0, Jun 8, 2015
  * @since 0.2.0
  */
 @Named
@@ -63,10 +62,10 @@ public class ArticleNotifier extends AbstractEventListener<JSONObject> {
     private NotificationMgmtService notificationMgmtService;
 
     /**
-     * Follow query service.
+     * Notification fan-out service.
      */
     @Inject
-    private FollowQueryService followQueryService;
+    private NotificationFanOutService notificationFanOutService;
 
     /**
      * User query service.
@@ -112,23 +111,9 @@ public class ArticleNotifier extends AbstractEventListener<JSONObject> {
 
                 atedUserIds.add(atedUserId);
             }
-            // 'FollowingUser' Notification
-            final JSONObject followerUsersResult = followQueryService.getFollowerUsers(articleAuthorId, 1, Integer.MAX_VALUE);
-            @SuppressWarnings("unchecked")
-            final List<JSONObject> followerUsers = (List) followerUsersResult.opt(Keys.RESULTS);
-            for (final JSONObject followerUser : followerUsers) {
-                final JSONObject requestJSONObject = new JSONObject();
-                final String followerUserId = followerUser.optString(Keys.OBJECT_ID);
-
-                if (atedUserIds.contains(followerUserId)) {
-                    continue;
-                }
-
-                requestJSONObject.put(Notification.NOTIFICATION_USER_ID, followerUserId);
-                requestJSONObject.put(Notification.NOTIFICATION_DATA_ID, originalArticle.optString(Keys.OBJECT_ID));
-
-                notificationMgmtService.addFollowingUserNotification(requestJSONObject);
-            }
+            // 'FollowingUser' Notification, fans out in background
+            notificationFanOutService.fanOutFollowingUserNotification(articleAuthorId, originalArticle.optString(Keys.OBJECT_ID),
+                    atedUserIds);
 
 //            final Set<String> qqSet = new HashSet<String>();
 //            for (final String userName : atUserNames) {
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2012-2015, b3log.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.symphony.event;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import org.b3log.latke.Keys;
+import org.b3log.latke.event.AbstractEventListener;
+import org.b3log.latke.event.Event;
+import org.b3log.latke.event.EventException;
+import org.b3log.latke.logging.Level;
+import org.b3log.latke.logging.Logger;
+import org.b3log.latke.service.ServiceException;
+import org.b3log.symphony.cache.ArticleParticipantCache;
+import org.b3log.symphony.cache.FragmentCache;
+import org.b3log.symphony.cache.HomeFeedIndex;
+import org.b3log.symphony.cache.PageCache;
+import org.b3log.symphony.model.Article;
+import org.b3log.symphony.model.Comment;
+import org.b3log.symphony.service.CommentQueryService;
+import org.json.JSONObject;
+
+/**
+ * Updates cached data of an article once a comment has been added to the article.
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.4.0.0, Jun 8, 2015
+ * @since 1.3.0
+ */
+@Named
+public class CommentCacheUpdater extends AbstractEventListener<JSONObject> {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(CommentCacheUpdater.class.getName());
+
+    /**
+     * Article participant cache.
+     */
+    @Inject
+    private ArticleParticipantCache articleParticipantCache;
+
+    /**
+     * Fragment cache.
+     */
+    @Inject
+    private FragmentCache fragmentCache;
+
+    /**
+     * Home feed index.
+     */
+    @Inject
+    private HomeFeedIndex homeFeedIndex;
+
+    /**
+     * Page cache.
+     */
+    @Inject
+    private PageCache pageCache;
+
+    /**
+     * Comment query service.
+     */
+    @Inject
+    private CommentQueryService commentQueryService;
+
+    @Override
+    public void action(final Event<JSONObject> event) throws EventException {
+        final JSONObject data = event.getData();
+        LOGGER.log(Level.DEBUG, "Processing an event[type={0}, data={1}] in listener[className={2}]",
+                   new Object[]{event.getType(), data, CommentCacheUpdater.class.getName()});
+
+        final JSONObject comment = data.optJSONObject(Comment.COMMENT);
+        final String articleId = comment.optString(Comment.COMMENT_ON_ARTICLE_ID);
+
+        final JSONObject participant = new JSONObject();
+        participant.put(Keys.OBJECT_ID, comment.optString(Keys.OBJECT_ID));
+        participant.put(Comment.COMMENT_AUTHOR_ID, comment.optString(Comment.COMMENT_AUTHOR_ID));
+        participant.put(Comment.COMMENT_AUTHOR_EMAIL, comment.optString(Comment.COMMENT_AUTHOR_EMAIL));
+        articleParticipantCache.add(articleId, participant);
+
+        final JSONObject article = data.optJSONObject(Article.ARTICLE);
+        if (null != article) { // Latest comment time changed
+            homeFeedIndex.put(article);
+            pageCache.removeArticle(article);
+
+            try {
+                commentQueryService.addLatestComment(comment, article);
+            } catch (final ServiceException e) {
+                LOGGER.log(Level.ERROR, "Adds a latest comment failed", e);
+            }
+        }
+
+        fragmentCache.remove(FragmentCache.STATISTIC, FragmentCache.TREND_TAGS);
+    }
+
+    /**
+     * Gets the event type {@linkplain EventTypes#ADD_COMMENT_TO_ARTICLE}.
+     *
+     * @return event type
+     */
+    @Override
+    public String getEventType() {
+        return EventTypes.ADD_COMMENT_TO_ARTICLE;
+    }
+}
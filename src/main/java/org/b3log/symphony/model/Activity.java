@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2012-2015, b3log.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.symphony.model;
+
+/**
+ * This class defines all author activity model relevant keys.
+ *
+ * <p>
+ * An activity is published once by an author who has too many followers to be notified one by one, and will be merged
+ * into the 'followingUser' notifications of each follower at reading. Each follower has a read cursor, the activities
+ * not newer than the cursor have been read.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Jun 8, 2015
+ * @since 1.3.0
+ */
+public final class Activity {
+
+    /**
+     * Activity.
+     */
+    public static final String ACTIVITY = "activity";
+
+    /**
+     * Activities.
+     */
+    public static final String ACTIVITIES = "activities";
+
+    /**
+     * Key of author id.
+     */
+    public static final String ACTIVITY_AUTHOR_ID = "authorId";
+
+    /**
+     * Key of data id.
+     */
+    public static final String ACTIVITY_DATA_ID = "dataId";
+
+    /**
+     * Activity cursor, oId of a cursor is the id of the follower.
+     */
+    public static final String ACTIVITY_CURSOR = "activity_cursor";
+
+    /**
+     * Key of read activity id of a cursor.
+     */
+    public static final String ACTIVITY_CURSOR_READ_ID = "readId";
+
+    /**
+     * Private constructor.
+     */
+    private Activity() {
+    }
+}
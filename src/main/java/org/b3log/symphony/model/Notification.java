@@ -19,7 +19,7 @@ package org.b3log.symphony.model;
  * This class defines all notification model relevant keys.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.0.0.2, Nov 11, 2013
+ * @version 1.2.0.0, Jun 8, 2015
  * @since 0.2.5
  */
 public final class Notification {
@@ -34,6 +34,11 @@ public final class Notification {
      */
     public static final String NOTIFICATIONS = "notifications";
 
+    /**
+     * Notification archive.
+     */
+    public static final String NOTIFICATION_ARCHIVE = "notification_archive";
+
     /**
      * Key of user id.
      */
@@ -91,6 +96,11 @@ public final class Notification {
      */
     public static final String NOTIFICATION_T_AT_IN_ARTICLE = "atInArticle";
 
+    /**
+     * Key of pulled from author activities.
+     */
+    public static final String NOTIFICATION_T_PULLED = "pulled";
+
     /**
      * Private constructor.
      */
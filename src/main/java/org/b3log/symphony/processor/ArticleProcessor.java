@@ -43,6 +43,7 @@ import org.b3log.latke.user.UserServiceFactory;
 import org.b3log.latke.util.Paginator;
 import org.b3log.latke.util.Requests;
 import org.b3log.latke.util.Strings;
+import org.b3log.symphony.cache.RandomSampler;
 import org.b3log.symphony.model.Article;
 import org.b3log.symphony.model.Client;
 import org.b3log.symphony.model.Common;
@@ -57,8 +58,8 @@ import org.b3log.symphony.service.ClientQueryService;
 import org.b3log.symphony.service.CommentQueryService;
 import org.b3log.symphony.service.FollowQueryService;
 import org.b3log.symphony.service.UserQueryService;
+import org.b3log.symphony.util.ContentRenderer;
 import org.b3log.symphony.util.Filler;
-import org.b3log.symphony.util.Markdowns;
 import org.b3log.symphony.util.QueryResults;
 import org.b3log.symphony.util.Symphonys;
 import org.json.JSONObject;
@@ -73,6 +74,8 @@ import org.json.JSONObject;
  * <li>Updates an article (/article/{id}) <em>locally</em>, PUT</li>
  * <li>Adds an article (/rhythm/article) <em>remotely</em>, POST</li>
  * <li>Markdowns text (/markdown), POST</li>
+ * <li>Flushes article view count (/articles/view-count/flush), GET</li>
+ * <li>Refreshes random pools (/articles/random-pool/refresh), GET</li>
  * </ul>
  *
  * <p>
@@ -81,7 +84,7 @@ import org.json.JSONObject;
  * </p>
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.3.2.19, Jun 3, 2015
+ * @version 1.4.4.19, Jun 8, 2015
  * @since 0.2.0
  */
 @RequestProcessor
@@ -98,6 +101,12 @@ public class ArticleProcessor {
     @Inject
     private ArticleMgmtService articleMgmtService;
 
+    /**
+     * Random sampler.
+     */
+    @Inject
+    private RandomSampler randomSampler;
+
     /**
      * Article query service.
      */
@@ -149,6 +158,12 @@ public class ArticleProcessor {
     @Inject
     private Filler filler;
 
+    /**
+     * Content renderer.
+     */
+    @Inject
+    private ContentRenderer contentRenderer;
+
     /**
      * Shows add article.
      *
@@ -752,6 +767,83 @@ public class ArticleProcessor {
         }
     }
 
+    /**
+     * Flushes the buffered article view count into repository.
+     *
+     * <p>
+     * Renders the response with a json object, for example,
+     * <pre>
+     * {
+     *     "sc": true,
+     *     "flushedCnt": 10
+     * }
+     * </pre>
+     * </p>
+     *
+     * @param context the specified context
+     * @param request the specified request
+     * @param response the specified response
+     * @throws Exception exception
+     */
+    @RequestProcessing(value = "/articles/view-count/flush", method = HTTPRequestMethod.GET)
+    public void flushArticleViewCount(final HTTPRequestContext context, final HttpServletRequest request,
+                                      final HttpServletResponse response) throws Exception {
+        final String key = Symphonys.get("keyOfSymphony");
+        if (!key.equals(request.getParameter("key"))) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+
+            return;
+        }
+
+        final JSONRenderer renderer = new JSONRenderer();
+        context.setRenderer(renderer);
+
+        final JSONObject ret = QueryResults.trueResult();
+        renderer.setJSONObject(ret);
+
+        ret.put("flushedCnt", articleMgmtService.flushArticleViewCount());
+    }
+
+    /**
+     * Refreshes the random article and tag pools.
+     *
+     * <p>
+     * Renders the response with a json object, for example,
+     * <pre>
+     * {
+     *     "sc": true,
+     *     "articleCnt": 256,
+     *     "tagCnt": 32
+     * }
+     * </pre>
+     * </p>
+     *
+     * @param context the specified context
+     * @param request the specified request
+     * @param response the specified response
+     * @throws Exception exception
+     */
+    @RequestProcessing(value = "/articles/random-pool/refresh", method = HTTPRequestMethod.GET)
+    public void refreshRandomPool(final HTTPRequestContext context, final HttpServletRequest request,
+                                  final HttpServletResponse response) throws Exception {
+        final String key = Symphonys.get("keyOfSymphony");
+        if (!key.equals(request.getParameter("key"))) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+
+            return;
+        }
+
+        final JSONRenderer renderer = new JSONRenderer();
+        context.setRenderer(renderer);
+
+        final JSONObject ret = QueryResults.trueResult();
+        renderer.setJSONObject(ret);
+
+        final int[] pooled = randomSampler.refresh();
+        ret.put("articleCnt", pooled[0]);
+        ret.put("tagCnt", pooled[1]);
+    }
+
     /**
      * Markdowns.
      *
@@ -796,7 +888,7 @@ public class ArticleProcessor {
         markdownText = markdownText.replace("<", "&lt;").replace(">", "&gt;").replace("&lt;pre&gt;", "<pre>").replace("&lt;/pre&gt;",
                 "</pre>");
 
-        result.put("html", Markdowns.toHTML(markdownText));
+        result.put("html", contentRenderer.render(markdownText, ""));
     }
 
     /**
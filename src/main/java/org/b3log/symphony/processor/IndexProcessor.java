@@ -30,6 +30,7 @@ import org.b3log.latke.servlet.annotation.After;
 import org.b3log.latke.servlet.annotation.Before;
 import org.b3log.latke.servlet.annotation.RequestProcessing;
 import org.b3log.latke.servlet.annotation.RequestProcessor;
+import org.b3log.latke.servlet.renderer.JSONRenderer;
 import org.b3log.latke.servlet.renderer.freemarker.AbstractFreeMarkerRenderer;
 import org.b3log.latke.servlet.renderer.freemarker.FreeMarkerRenderer;
 import org.b3log.latke.util.Locales;
@@ -41,8 +42,10 @@ import org.b3log.symphony.processor.advice.stopwatch.StopwatchEndAdvice;
 import org.b3log.symphony.processor.advice.stopwatch.StopwatchStartAdvice;
 import org.b3log.symphony.service.ArticleQueryService;
 import org.b3log.symphony.service.CommentQueryService;
+import org.b3log.symphony.service.OptionMgmtService;
 import org.b3log.symphony.service.OptionQueryService;
 import org.b3log.symphony.util.Filler;
+import org.b3log.symphony.util.QueryResults;
 import org.b3log.symphony.util.Symphonys;
 import org.json.JSONObject;
 
@@ -53,10 +56,12 @@ import org.json.JSONObject;
  * <li>Shows index (/), GET</li>
  * <li>Shows about (/about), GET</li>
  * <li>Shows kill browser (/kill-browser), GET</li>
+ * <li>Updates max online visitor count (/statistic/max-online-visitor-count/update), GET</li>
+ * <li>Flushes statistic (/statistic/flush), GET</li>
  * </ul>
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.0.1.8, Jan 22, 2014
+ * @version 1.2.1.8, Jun 8, 2015
  * @since 0.2.0
  */
 @RequestProcessor
@@ -85,6 +90,12 @@ public class IndexProcessor {
     @Inject
     private OptionQueryService optionQueryService;
 
+    /**
+     * Option management service.
+     */
+    @Inject
+    private OptionMgmtService optionMgmtService;
+
     /**
      * Filler.
      */
@@ -190,4 +201,78 @@ public class IndexProcessor {
         Keys.fillRuntime(dataModel);
         filler.fillMinified(dataModel);
     }
+
+    /**
+     * Updates the max online visitor count with the peak online visitor count counted in memory.
+     *
+     * <p>
+     * Renders the response with a json object, for example,
+     * <pre>
+     * {
+     *     "sc": true,
+     *     "maxOnlineVisitorCnt": 128
+     * }
+     * </pre>
+     * </p>
+     *
+     * @param context the specified context
+     * @param request the specified request
+     * @param response the specified response
+     * @throws Exception exception
+     */
+    @RequestProcessing(value = "/statistic/max-online-visitor-count/update", method = HTTPRequestMethod.GET)
+    public void updateMaxOnlineVisitorCount(final HTTPRequestContext context, final HttpServletRequest request,
+                                            final HttpServletResponse response) throws Exception {
+        final String key = Symphonys.get("keyOfSymphony");
+        if (!key.equals(request.getParameter("key"))) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+
+            return;
+        }
+
+        final JSONRenderer renderer = new JSONRenderer();
+        context.setRenderer(renderer);
+
+        final JSONObject ret = QueryResults.trueResult();
+        renderer.setJSONObject(ret);
+
+        ret.put("maxOnlineVisitorCnt", optionMgmtService.updateMaxOnlineVisitorCount());
+    }
+
+    /**
+     * Flushes the statistic increments counted in memory.
+     *
+     * <p>
+     * Renders the response with a json object, for example,
+     * <pre>
+     * {
+     *     "sc": true,
+     *     "flushedCnt": 3
+     * }
+     * </pre>
+     * </p>
+     *
+     * @param context the specified context
+     * @param request the specified request
+     * @param response the specified response
+     * @throws Exception exception
+     */
+    @RequestProcessing(value = "/statistic/flush", method = HTTPRequestMethod.GET)
+    public void flushStatistic(final HTTPRequestContext context, final HttpServletRequest request,
+                               final HttpServletResponse response) throws Exception {
+        final String key = Symphonys.get("keyOfSymphony");
+        if (!key.equals(request.getParameter("key"))) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+
+            return;
+        }
+
+        final JSONRenderer renderer = new JSONRenderer();
+        context.setRenderer(renderer);
+
+        final JSONObject ret = QueryResults.trueResult();
+        renderer.setJSONObject(ret);
+
+        ret.put("flushedCnt", optionMgmtService.flushStatistic());
+    }
 }
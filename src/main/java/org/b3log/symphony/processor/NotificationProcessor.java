@@ -24,6 +24,7 @@ import org.b3log.latke.Keys;
 import org.b3log.latke.logging.Logger;
 import org.b3log.latke.model.Pagination;
 import org.b3log.latke.model.User;
+import org.b3log.latke.repository.jdbc.JdbcRepository;
 import org.b3log.latke.servlet.HTTPRequestContext;
 import org.b3log.latke.servlet.HTTPRequestMethod;
 import org.b3log.latke.servlet.annotation.Before;
@@ -33,11 +34,15 @@ import org.b3log.latke.servlet.renderer.JSONRenderer;
 import org.b3log.latke.servlet.renderer.freemarker.AbstractFreeMarkerRenderer;
 import org.b3log.latke.servlet.renderer.freemarker.FreeMarkerRenderer;
 import org.b3log.latke.util.Paginator;
+import org.b3log.latke.util.Requests;
 import org.b3log.latke.util.Strings;
+import org.b3log.symphony.cache.NotificationChannel;
+import org.b3log.symphony.cache.UnreadNotificationCounter;
 import org.b3log.symphony.model.Common;
 import org.b3log.symphony.model.Notification;
 import org.b3log.symphony.processor.advice.LoginCheck;
 import org.b3log.symphony.service.CommentQueryService;
+import org.b3log.symphony.service.NotificationFanOutService;
 import org.b3log.symphony.service.NotificationMgmtService;
 import org.b3log.symphony.service.NotificationQueryService;
 import org.b3log.symphony.service.UserQueryService;
@@ -53,10 +58,14 @@ import org.json.JSONObject;
  * <li>Displays comments of my articles (/notifications/commented), GET</li>
  * <li>Displays at me (/notifications/at), GET</li>
  * <li>Displays following user's articles (/notifications/following-user), GET</li>
+ * <li>Waits for changes of unread count of notifications (/notification/unread/poll), GET</li>
+ * <li>Makes notifications of a type read (/notification/read), POST</li>
+ * <li>Gets notification fan-out status (/notification/fan-out/status), GET</li>
+ * <li>Archives read notifications (/notifications/archive), GET</li>
  * </ul>
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.2.0.1, May 27, 2015
+ * @version 1.6.0.1, Jun 8, 2015
  * @since 0.2.5
  */
 @RequestProcessor
@@ -97,6 +106,18 @@ public class NotificationProcessor {
     @Inject
     private Filler filler;
 
+    /**
+     * Notification fan-out service.
+     */
+    @Inject
+    private NotificationFanOutService notificationFanOutService;
+
+    /**
+     * Notification channel.
+     */
+    @Inject
+    private NotificationChannel notificationChannel;
+
     /**
      * Navigates notifications.
      *
@@ -341,6 +362,7 @@ public class NotificationProcessor {
         dataModel.put(Common.UNREAD_FOLLOWING_USER_NOTIFICATION_CNT, unreadFollowingUserNotificationCnt);
 
         notificationMgmtService.makeRead(followingUserNotifications);
+        notificationMgmtService.makeActivitiesRead(userId, followingUserNotifications);
 
         final int recordCnt = result.getInt(Pagination.PAGINATION_RECORD_COUNT);
         final int pageCount = (int) Math.ceil((double) recordCnt / (double) pageSize);
@@ -382,4 +404,181 @@ public class NotificationProcessor {
         ret.put(Notification.NOTIFICATION_T_UNREAD_COUNT,
                 notificationQueryService.getUnreadNotificationCount(currentUser.optString(Keys.OBJECT_ID)));
     }
+
+    /**
+     * Waits for changes of unread count of notifications (long polling).
+     *
+     * <p>
+     * Request parameters: "v", the version returned by the last polling, -1 for the first polling; "c", the unread
+     * count returned by the last polling, optional. Returns immediately if the version has changed, otherwise waits
+     * until unread count of the current user changes or timeout. If there are too many waiting requests, returns
+     * immediately with "busy" and the client should fall back to polling later.
+     * </p>
+     *
+     * <p>
+     * Renders the response with a json object, for example,
+     * <pre>
+     * {
+     *     "sc": true,
+     *     "v": long,
+     *     "unreadNotificationCount": int,
+     *     "delta": int, // unreadNotificationCount - c, 0 if c is absent
+     *     "busy": boolean
+     * }
+     * </pre>
+     * </p>
+     *
+     * @param context the specified context
+     * @param request the specified request
+     * @param response the specified response
+     * @throws Exception exception
+     */
+    @RequestProcessing(value = "/notification/unread/poll", method = HTTPRequestMethod.GET)
+    @Before(adviceClass = LoginCheck.class)
+    public void pollUnreadNotificationCount(final HTTPRequestContext context, final HttpServletRequest request,
+            final HttpServletResponse response) throws Exception {
+        final JSONRenderer renderer = new JSONRenderer();
+        context.setRenderer(renderer);
+
+        final JSONObject ret = QueryResults.trueResult();
+        renderer.setJSONObject(ret);
+
+        final JSONObject currentUser = (JSONObject) request.getAttribute(User.USER);
+        final String userId = currentUser.optString(Keys.OBJECT_ID);
+
+        final String versionStr = request.getParameter("v");
+        final long knownVersion = Strings.isNumeric(versionStr) ? Long.valueOf(versionStr) : -1;
+
+        // Releases the connection (maybe checked out by login check) before waiting, other requests need it
+        JdbcRepository.dispose();
+
+        long version = notificationChannel.await(userId, knownVersion);
+        final boolean busy = -1 == version;
+        if (busy) {
+            version = notificationChannel.getVersion(userId);
+        }
+        final int count = notificationQueryService.getUnreadNotificationCount(userId);
+
+        final String countStr = request.getParameter("c");
+        final int delta = Strings.isNumeric(countStr) ? count - Integer.valueOf(countStr) : 0;
+
+        ret.put("v", version);
+        ret.put(Notification.NOTIFICATION_T_UNREAD_COUNT, count);
+        ret.put("delta", delta);
+        ret.put("busy", busy);
+    }
+
+    /**
+     * Makes all notifications with the specified data type of the current user have been read.
+     *
+     * <p>
+     * The request json object:
+     * <pre>
+     * {
+     *   "dataType": int
+     * }
+     * </pre>
+     * </p>
+     *
+     * @param context the specified context
+     * @param request the specified request
+     * @param response the specified response
+     * @throws Exception exception
+     */
+    @RequestProcessing(value = "/notification/read", method = HTTPRequestMethod.POST)
+    @Before(adviceClass = LoginCheck.class)
+    public void makeAllNotificationsRead(final HTTPRequestContext context, final HttpServletRequest request,
+            final HttpServletResponse response) throws Exception {
+        final JSONRenderer renderer = new JSONRenderer();
+        context.setRenderer(renderer);
+
+        final JSONObject ret = QueryResults.falseResult();
+        renderer.setJSONObject(ret);
+
+        final JSONObject requestJSONObject = Requests.parseRequestJSONObject(request, context.getResponse());
+        final int dataType = requestJSONObject.optInt(Notification.NOTIFICATION_DATA_TYPE, -1);
+        if (dataType < 0 || dataType >= UnreadNotificationCounter.TYPE_CNT) {
+            return;
+        }
+
+        final JSONObject currentUser = (JSONObject) request.getAttribute(User.USER);
+
+        notificationMgmtService.makeAllRead(currentUser.optString(Keys.OBJECT_ID), dataType);
+
+        ret.put(Keys.STATUS_CODE, true);
+    }
+
+    /**
+     * Gets the depth of the notification fan-out queue.
+     *
+     * <p>
+     * Renders the response with a json object, for example,
+     * <pre>
+     * {
+     *     "sc": true,
+     *     "queueDepth": 3
+     * }
+     * </pre>
+     * </p>
+     *
+     * @param context the specified context
+     * @param request the specified request
+     * @param response the specified response
+     * @throws Exception exception
+     */
+    @RequestProcessing(value = "/notification/fan-out/status", method = HTTPRequestMethod.GET)
+    public void getFanOutStatus(final HTTPRequestContext context, final HttpServletRequest request,
+            final HttpServletResponse response) throws Exception {
+        final String key = Symphonys.get("keyOfSymphony");
+        if (!key.equals(request.getParameter("key"))) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+
+            return;
+        }
+
+        final JSONRenderer renderer = new JSONRenderer();
+        context.setRenderer(renderer);
+
+        final JSONObject ret = QueryResults.trueResult();
+        renderer.setJSONObject(ret);
+
+        ret.put("queueDepth", notificationFanOutService.getQueueDepth());
+    }
+
+    /**
+     * Archives read notifications out of the retention window.
+     *
+     * <p>
+     * Renders the response with a json object, for example,
+     * <pre>
+     * {
+     *     "sc": true,
+     *     "movedCnt": 500
+     * }
+     * </pre>
+     * </p>
+     *
+     * @param context the specified context
+     * @param request the specified request
+     * @param response the specified response
+     * @throws Exception exception
+     */
+    @RequestProcessing(value = "/notifications/archive", method = HTTPRequestMethod.GET)
+    public void archiveNotifications(final HTTPRequestContext context, final HttpServletRequest request,
+            final HttpServletResponse response) throws Exception {
+        final String key = Symphonys.get("keyOfSymphony");
+        if (!key.equals(request.getParameter("key"))) {
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+
+            return;
+        }
+
+        final JSONRenderer renderer = new JSONRenderer();
+        context.setRenderer(renderer);
+
+        final JSONObject ret = QueryResults.trueResult();
+        renderer.setJSONObject(ret);
+
+        ret.put("movedCnt", notificationMgmtService.archiveNotifications());
+    }
 }
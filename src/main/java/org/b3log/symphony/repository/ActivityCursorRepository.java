@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2012-2015, b3log.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.symphony.repository;
+
+import org.b3log.latke.Keys;
+import org.b3log.latke.repository.AbstractRepository;
+import org.b3log.latke.repository.RepositoryException;
+import org.b3log.latke.repository.annotation.Repository;
+import org.b3log.symphony.model.Activity;
+import org.json.JSONObject;
+
+/**
+ * Author activity read cursor repository.
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Jun 8, 2015
+ * @since 1.3.0
+ */
+@Repository
+public class ActivityCursorRepository extends AbstractRepository {
+
+    /**
+     * Gets the read activity id of a user specified by the given user id.
+     *
+     * @param userId the given user id
+     * @return read activity id, returns an empty string if the user has not read any activity
+     * @throws RepositoryException repository exception
+     */
+    public String getReadId(final String userId) throws RepositoryException {
+        final JSONObject cursor = get(userId);
+        if (null == cursor) {
+            return "";
+        }
+
+        return cursor.optString(Activity.ACTIVITY_CURSOR_READ_ID);
+    }
+
+    /**
+     * Moves the read cursor of a user specified by the given user id to the specified activity id, does nothing if the
+     * cursor has been moved over the activity.
+     *
+     * @param userId the given user id
+     * @param readId the specified activity id
+     * @throws RepositoryException repository exception
+     */
+    public void moveTo(final String userId, final String readId) throws RepositoryException {
+        final JSONObject cursor = get(userId);
+
+        if (null == cursor) {
+            final JSONObject newCursor = new JSONObject();
+            newCursor.put(Keys.OBJECT_ID, userId);
+            newCursor.put(Activity.ACTIVITY_CURSOR_READ_ID, readId);
+
+            add(newCursor);
+
+            return;
+        }
+
+        if (cursor.optString(Activity.ACTIVITY_CURSOR_READ_ID).compareTo(readId) >= 0) {
+            return;
+        }
+
+        cursor.put(Activity.ACTIVITY_CURSOR_READ_ID, readId);
+        update(userId, cursor);
+    }
+
+    /**
+     * Public constructor.
+     */
+    public ActivityCursorRepository() {
+        super(Activity.ACTIVITY_CURSOR);
+    }
+}
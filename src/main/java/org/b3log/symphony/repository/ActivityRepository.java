@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2012-2015, b3log.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.symphony.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.b3log.latke.Keys;
+import org.b3log.latke.repository.AbstractRepository;
+import org.b3log.latke.repository.CompositeFilter;
+import org.b3log.latke.repository.CompositeFilterOperator;
+import org.b3log.latke.repository.Filter;
+import org.b3log.latke.repository.FilterOperator;
+import org.b3log.latke.repository.PropertyFilter;
+import org.b3log.latke.repository.Query;
+import org.b3log.latke.repository.RepositoryException;
+import org.b3log.latke.repository.SortDirection;
+import org.b3log.latke.repository.annotation.Repository;
+import org.b3log.latke.util.CollectionUtils;
+import org.b3log.symphony.model.Activity;
+import org.json.JSONObject;
+
+/**
+ * Author activity repository.
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Jun 8, 2015
+ * @since 1.3.0
+ */
+@Repository
+public class ActivityRepository extends AbstractRepository {
+
+    /**
+     * Gets the latest activities of the authors specified by the given author ids, newer than the specified activity
+     * id.
+     *
+     * @param authorIds the given author ids
+     * @param sinceId the specified activity id
+     * @param fetchSize the specified fetch size
+     * @return activities sorted by id descending, returns an empty list if not found
+     * @throws RepositoryException repository exception
+     */
+    public List<JSONObject> getByAuthorIds(final Collection<String> authorIds, final String sinceId, final int fetchSize)
+            throws RepositoryException {
+        if (authorIds.isEmpty()) {
+            return new ArrayList<JSONObject>();
+        }
+
+        final List<Filter> filters = new ArrayList<Filter>();
+        filters.add(new PropertyFilter(Activity.ACTIVITY_AUTHOR_ID, FilterOperator.IN, authorIds));
+        filters.add(new PropertyFilter(Keys.OBJECT_ID, FilterOperator.GREATER_THAN, sinceId));
+
+        final Query query = new Query().setFilter(new CompositeFilter(CompositeFilterOperator.AND, filters)).
+                addSort(Keys.OBJECT_ID, SortDirection.DESCENDING).setCurrentPageNum(1).setPageSize(fetchSize).setPageCount(1);
+
+        return CollectionUtils.jsonArrayToList(get(query).optJSONArray(Keys.RESULTS));
+    }
+
+    /**
+     * Public constructor.
+     */
+    public ActivityRepository() {
+        super(Activity.ACTIVITY);
+    }
+}
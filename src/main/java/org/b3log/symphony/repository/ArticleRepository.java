@@ -15,15 +15,23 @@
  */
 package org.b3log.symphony.repository;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import org.b3log.latke.Keys;
 import org.b3log.latke.repository.AbstractRepository;
+import org.b3log.latke.repository.RepositoryException;
 import org.b3log.latke.repository.annotation.Repository;
+import org.b3log.latke.repository.jdbc.JdbcRepository;
 import org.b3log.symphony.model.Article;
 
 /**
  * Article repository.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.0.0.0, Sep 28, 2012
+ * @version 1.1.0.0, Jun 8, 2015
  * @since 0.2.0
  */
 @Repository
@@ -35,4 +43,56 @@ public class ArticleRepository extends AbstractRepository {
     public ArticleRepository() {
         super(Article.ARTICLE);
     }
+
+    /**
+     * Adds the specified view count increments to the articles in one JDBC batch.
+     *
+     * <p>
+     * Updates only the view count column ({@code articleViewCount = articleViewCount + ?}), so concurrent updates of
+     * other columns of the articles will not be overwritten.
+     * </p>
+     *
+     * @param deltas the specified increments, &lt;articleId, increment&gt;
+     * @return count of articles updated
+     * @throws RepositoryException repository exception
+     */
+    public int incViewCount(final Map<String, Long> deltas) throws RepositoryException {
+        if (deltas.isEmpty()) {
+            return 0;
+        }
+
+        final String sql = "UPDATE " + getName() + " SET " + Article.ARTICLE_VIEW_CNT + " = " + Article.ARTICLE_VIEW_CNT
+                + " + ? WHERE " + Keys.OBJECT_ID + " = ?";
+        PreparedStatement statement = null;
+
+        try {
+            final Connection connection = JdbcRepository.getConnection();
+            statement = connection.prepareStatement(sql);
+
+            for (final Map.Entry<String, Long> entry : deltas.entrySet()) {
+                statement.setObject(1, entry.getValue());
+                statement.setObject(2, entry.getKey());
+                statement.addBatch();
+            }
+
+            int ret = 0;
+            for (final int cnt : statement.executeBatch()) {
+                if (0 < cnt || Statement.SUCCESS_NO_INFO == cnt) {
+                    ret++;
+                }
+            }
+
+            return ret;
+        } catch (final SQLException e) {
+            throw new RepositoryException(e);
+        } finally {
+            if (null != statement) {
+                try {
+                    statement.close();
+                } catch (final SQLException e) {
+                    // Ignored, the connection is managed by the transaction
+                }
+            }
+        }
+    }
 }
@@ -15,24 +15,269 @@
  */
 package org.b3log.symphony.repository;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import javax.inject.Inject;
+import org.b3log.latke.Keys;
 import org.b3log.latke.repository.AbstractRepository;
+import org.b3log.latke.repository.CompositeFilter;
+import org.b3log.latke.repository.CompositeFilterOperator;
+import org.b3log.latke.repository.Filter;
+import org.b3log.latke.repository.FilterOperator;
+import org.b3log.latke.repository.PropertyFilter;
+import org.b3log.latke.repository.Query;
+import org.b3log.latke.repository.RepositoryException;
+import org.b3log.latke.repository.SortDirection;
 import org.b3log.latke.repository.annotation.Repository;
+import org.b3log.latke.repository.jdbc.JdbcRepository;
+import org.b3log.latke.util.Ids;
 import org.b3log.symphony.model.Notification;
+import org.json.JSONArray;
+import org.json.JSONObject;
 
 /**
  * Notification repository.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.0.0.0, Aug 28, 2013
+ * @version 1.3.0.0, Jun 8, 2015
  * @since 0.2.5
  */
 @Repository
 public class NotificationRepository extends AbstractRepository {
 
+    /**
+     * Notification archive repository.
+     */
+    @Inject
+    private NotificationArchiveRepository notificationArchiveRepository;
+
     /**
      * Public constructor.
      */
     public NotificationRepository() {
         super(Notification.NOTIFICATION);
     }
+
+    /**
+     * Adds the specified notifications in one JDBC batch.
+     *
+     * <p>
+     * Generates one time millis id for the batch and suffixes it with the index of each notification (six digits), so
+     * the ids are unique and still ordered by time like the ids generated by {@link #add(org.json.JSONObject)}. The
+     * generated id will be set into each notification.
+     * </p>
+     *
+     * @param notifications the specified notifications, each of them has userId, dataId, dataType and hasRead, at
+     * most 1000000 notifications
+     * @throws RepositoryException repository exception
+     */
+    public void addBatch(final List<JSONObject> notifications) throws RepositoryException {
+        if (notifications.isEmpty()) {
+            return;
+        }
+
+        final String sql = "INSERT INTO " + getName() + " (" + Keys.OBJECT_ID + ", " + Notification.NOTIFICATION_USER_ID + ", "
+                + Notification.NOTIFICATION_DATA_ID + ", " + Notification.NOTIFICATION_DATA_TYPE + ", "
+                + Notification.NOTIFICATION_HAS_READ + ") VALUES (?, ?, ?, ?, ?)";
+        final String batchId = Ids.genTimeMillisId();
+        PreparedStatement statement = null;
+
+        try {
+            final Connection connection = JdbcRepository.getConnection();
+            statement = connection.prepareStatement(sql);
+
+            for (int i = 0; i < notifications.size(); i++) {
+                final JSONObject notification = notifications.get(i);
+                final String id = batchId + String.format("%06d", i);
+                notification.put(Keys.OBJECT_ID, id);
+
+                statement.setObject(1, id);
+                statement.setObject(2, notification.optString(Notification.NOTIFICATION_USER_ID));
+                statement.setObject(3, notification.optString(Notification.NOTIFICATION_DATA_ID));
+                statement.setObject(4, notification.optInt(Notification.NOTIFICATION_DATA_TYPE));
+                statement.setObject(5, notification.optBoolean(Notification.NOTIFICATION_HAS_READ));
+                statement.addBatch();
+            }
+
+            statement.executeBatch();
+        } catch (final SQLException e) {
+            throw new RepositoryException(e);
+        } finally {
+            close(statement);
+        }
+    }
+
+    /**
+     * Makes the unread notifications specified by the given ids have been read in one statement.
+     *
+     * @param ids the given ids
+     * @return count of notifications made read
+     * @throws RepositoryException repository exception
+     */
+    public int makeRead(final Collection<String> ids) throws RepositoryException {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        final StringBuilder sql = new StringBuilder("UPDATE ").append(getName()).append(" SET ").
+                append(Notification.NOTIFICATION_HAS_READ).append(" = ? WHERE ").
+                append(Notification.NOTIFICATION_HAS_READ).append(" = ? AND ");
+        final List<Object> params = new ArrayList<Object>();
+        params.add(true);
+        params.add(false);
+        appendIds(sql, ids, params);
+
+        return executeUpdate(sql.toString(), params);
+    }
+
+    /**
+     * Gets the ids of read notifications older than the specified notification id.
+     *
+     * @param beforeId the specified notification id
+     * @param fetchSize the specified fetch size
+     * @return ids sorted ascending, returns an empty list if not found
+     * @throws RepositoryException repository exception
+     */
+    public List<String> getReadIdsBefore(final String beforeId, final int fetchSize) throws RepositoryException {
+        final List<Filter> filters = new ArrayList<Filter>();
+        filters.add(new PropertyFilter(Keys.OBJECT_ID, FilterOperator.LESS_THAN, beforeId));
+        filters.add(new PropertyFilter(Notification.NOTIFICATION_HAS_READ, FilterOperator.EQUAL, true));
+
+        final Query query = new Query().setFilter(new CompositeFilter(CompositeFilterOperator.AND, filters)).
+                addProjection(Keys.OBJECT_ID, String.class).addSort(Keys.OBJECT_ID, SortDirection.ASCENDING).
+                setCurrentPageNum(1).setPageSize(fetchSize).setPageCount(1);
+        final JSONArray results = get(query).optJSONArray(Keys.RESULTS);
+
+        final List<String> ret = new ArrayList<String>();
+        for (int i = 0; i < results.length(); i++) {
+            ret.add(results.optJSONObject(i).optString(Keys.OBJECT_ID));
+        }
+
+        return ret;
+    }
+
+    /**
+     * Moves the read notifications specified by the given ids into the archive table, with one copy statement and one
+     * delete statement.
+     *
+     * @param ids the given ids
+     * @return count of notifications moved
+     * @throws RepositoryException repository exception
+     */
+    public int archive(final Collection<String> ids) throws RepositoryException {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        final String columns = Keys.OBJECT_ID + ", " + Notification.NOTIFICATION_USER_ID + ", " + Notification.NOTIFICATION_DATA_ID + ", "
+                               + Notification.NOTIFICATION_DATA_TYPE + ", " + Notification.NOTIFICATION_HAS_READ;
+
+        final StringBuilder copy = new StringBuilder("INSERT INTO ").append(notificationArchiveRepository.getName()).
+                append(" (").append(columns).append(") SELECT ").append(columns).append(" FROM ").append(getName()).
+                append(" WHERE ").append(Notification.NOTIFICATION_HAS_READ).append(" = ? AND ");
+        final List<Object> copyParams = new ArrayList<Object>();
+        copyParams.add(true);
+        appendIds(copy, ids, copyParams);
+
+        final StringBuilder delete = new StringBuilder("DELETE FROM ").append(getName()).
+                append(" WHERE ").append(Notification.NOTIFICATION_HAS_READ).append(" = ? AND ");
+        final List<Object> deleteParams = new ArrayList<Object>();
+        deleteParams.add(true);
+        appendIds(delete, ids, deleteParams);
+
+        executeUpdate(copy.toString(), copyParams);
+
+        return executeUpdate(delete.toString(), deleteParams);
+    }
+
+    /**
+     * Makes all unread notifications with the specified data type of a user specified by the given user id have been
+     * read in one statement.
+     *
+     * @param userId the given user id
+     * @param dataType the specified data type
+     * @return count of notifications made read
+     * @throws RepositoryException repository exception
+     */
+    public int makeRead(final String userId, final int dataType) throws RepositoryException {
+        final String sql = "UPDATE " + getName() + " SET " + Notification.NOTIFICATION_HAS_READ + " = ? WHERE "
+                + Notification.NOTIFICATION_HAS_READ + " = ? AND " + Notification.NOTIFICATION_USER_ID + " = ? AND "
+                + Notification.NOTIFICATION_DATA_TYPE + " = ?";
+        final List<Object> params = new ArrayList<Object>();
+        params.add(true);
+        params.add(false);
+        params.add(userId);
+        params.add(dataType);
+
+        return executeUpdate(sql, params);
+    }
+
+    /**
+     * Appends an "oId IN (?, ...)" condition of the specified ids to the specified statement.
+     *
+     * @param sql the specified statement
+     * @param ids the specified ids, must not be empty
+     * @param params the parameters of the statement, the ids will be appended
+     */
+    private static void appendIds(final StringBuilder sql, final Collection<String> ids, final List<Object> params) {
+        sql.append(Keys.OBJECT_ID).append(" IN (");
+
+        boolean first = true;
+        for (final String id : ids) {
+            sql.append(first ? "?" : ", ?");
+            params.add(id);
+            first = false;
+        }
+
+        sql.append(')');
+    }
+
+    /**
+     * Executes the specified update statement with the specified parameters on the connection of the current
+     * transaction.
+     *
+     * @param sql the specified update statement
+     * @param params the specified parameters
+     * @return count of rows updated
+     * @throws RepositoryException repository exception
+     */
+    private static int executeUpdate(final String sql, final List<Object> params) throws RepositoryException {
+        PreparedStatement statement = null;
+
+        try {
+            final Connection connection = JdbcRepository.getConnection();
+            statement = connection.prepareStatement(sql);
+
+            for (int i = 0; i < params.size(); i++) {
+                statement.setObject(i + 1, params.get(i));
+            }
+
+            return statement.executeUpdate();
+        } catch (final SQLException e) {
+            throw new RepositoryException(e);
+        } finally {
+            close(statement);
+        }
+    }
+
+    /**
+     * Closes the specified statement quietly, the connection is managed by the transaction.
+     *
+     * @param statement the specified statement, may be {@code null}
+     */
+    private static void close(final PreparedStatement statement) {
+        if (null == statement) {
+            return;
+        }
+
+        try {
+            statement.close();
+        } catch (final SQLException e) {
+            // Ignored
+        }
+    }
 }
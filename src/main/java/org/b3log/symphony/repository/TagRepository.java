@@ -15,7 +15,12 @@
  */
 package org.b3log.symphony.repository;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import javax.inject.Inject;
 import org.b3log.latke.Keys;
@@ -26,7 +31,9 @@ import org.b3log.latke.repository.Query;
 import org.b3log.latke.repository.RepositoryException;
 import org.b3log.latke.repository.SortDirection;
 import org.b3log.latke.repository.annotation.Repository;
+import org.b3log.latke.repository.jdbc.JdbcRepository;
 import org.b3log.latke.util.CollectionUtils;
+import org.b3log.symphony.cache.TagCache;
 import org.b3log.symphony.model.Tag;
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -34,8 +41,12 @@ import org.json.JSONObject;
 /**
  * Tag repository.
  *
+ * <p>
+ * Lookups by id and title go through {@link TagCache}, see {@link UserRepository} for the caching rules.
+ * </p>
+ *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.0.0.0, Sep 28, 2012
+ * @version 1.2.0.0, Jun 8, 2015
  * @since 0.2.0
  */
 @Repository
@@ -47,6 +58,12 @@ public class TagRepository extends AbstractRepository {
     @Inject
     private TagArticleRepository tagArticleRepository;
 
+    /**
+     * Tag cache.
+     */
+    @Inject
+    private TagCache tagCache;
+
     /**
      * Public constructor.
      */
@@ -54,6 +71,33 @@ public class TagRepository extends AbstractRepository {
         super(Tag.TAG);
     }
 
+    @Override
+    public JSONObject get(final String id) throws RepositoryException {
+        JSONObject ret = tagCache.getTag(id);
+        if (null != ret) {
+            return ret;
+        }
+
+        ret = super.get(id);
+        cache(ret);
+
+        return ret;
+    }
+
+    @Override
+    public void update(final String id, final JSONObject tag) throws RepositoryException {
+        tagCache.removeTag(id);
+
+        super.update(id, tag);
+    }
+
+    @Override
+    public void remove(final String id) throws RepositoryException {
+        tagCache.removeTag(id);
+
+        super.remove(id);
+    }
+
     /**
      * Gets a tag by the specified tag title.
      *
@@ -62,6 +106,11 @@ public class TagRepository extends AbstractRepository {
      * @throws RepositoryException repository exception
      */
     public JSONObject getByTitle(final String tagTitle) throws RepositoryException {
+        final JSONObject cached = tagCache.getTagByTitle(tagTitle);
+        if (null != cached) {
+            return cached;
+        }
+
         final Query query = new Query().setFilter(new PropertyFilter(Tag.TAG_TITLE, FilterOperator.EQUAL, tagTitle)).setPageCount(1);
 
         final JSONObject result = get(query);
@@ -71,7 +120,102 @@ public class TagRepository extends AbstractRepository {
             return null;
         }
 
-        return array.optJSONObject(0);
+        final JSONObject ret = array.optJSONObject(0);
+        cache(ret);
+
+        return ret;
+    }
+
+    /**
+     * Gets tags by the specified tag titles, cached tags are used and the rest are loaded by one query.
+     *
+     * @param tagTitles the specified tag titles
+     * @return a list of tags, a title without tag is skipped, returns an empty list if not found
+     * @throws RepositoryException repository exception
+     */
+    public List<JSONObject> getByTitles(final Collection<String> tagTitles) throws RepositoryException {
+        final List<JSONObject> ret = new ArrayList<JSONObject>();
+        final List<String> missed = new ArrayList<String>();
+
+        for (final String tagTitle : tagTitles) {
+            final JSONObject cached = tagCache.getTagByTitle(tagTitle);
+            if (null != cached) {
+                ret.add(cached);
+            } else {
+                missed.add(tagTitle);
+            }
+        }
+
+        if (missed.isEmpty()) {
+            return ret;
+        }
+
+        final Query query = new Query().setFilter(new PropertyFilter(Tag.TAG_TITLE, FilterOperator.IN, missed)).
+                setPageCount(1);
+
+        final JSONObject result = get(query);
+        final JSONArray array = result.optJSONArray(Keys.RESULTS);
+
+        for (int i = 0; i < array.length(); i++) {
+            final JSONObject tag = array.optJSONObject(i);
+            cache(tag);
+
+            ret.add(tag);
+        }
+
+        return ret;
+    }
+
+    /**
+     * Increments the comment count of tags specified by the given tag ids by one.
+     *
+     * <p>
+     * Only the comment count column is updated (tagCommentCnt = tagCommentCnt + 1), so concurrent comments will not
+     * overwrite each other. The tag cache is left as it is, callers should patch it after the transaction committed.
+     * </p>
+     *
+     * @param tagIds the specified tag ids
+     * @return the number of updated tags
+     * @throws RepositoryException repository exception
+     */
+    public int incCommentCount(final Collection<String> tagIds) throws RepositoryException {
+        if (tagIds.isEmpty()) {
+            return 0;
+        }
+
+        final StringBuilder sqlBuilder = new StringBuilder("UPDATE ").append(getName()).append(" SET ")
+                .append(Tag.TAG_COMMENT_CNT).append(" = ").append(Tag.TAG_COMMENT_CNT).append(" + 1 WHERE ")
+                .append(Keys.OBJECT_ID).append(" IN (");
+        for (int i = 0; i < tagIds.size(); i++) {
+            sqlBuilder.append(0 == i ? "?" : ", ?");
+        }
+        sqlBuilder.append(")");
+
+        PreparedStatement statement = null;
+
+        try {
+            final Connection connection = JdbcRepository.getConnection();
+            statement = connection.prepareStatement(sqlBuilder.toString());
+
+            int index = 1;
+            for (final String tagId : tagIds) {
+                statement.setObject(index++, tagId);
+            }
+
+            final int ret = statement.executeUpdate();
+
+            return Statement.SUCCESS_NO_INFO == ret ? tagIds.size() : ret;
+        } catch (final SQLException e) {
+            throw new RepositoryException(e);
+        } finally {
+            if (null != statement) {
+                try {
+                    statement.close();
+                } catch (final SQLException e) {
+                    // Ignored, the connection is managed by the transaction
+                }
+            }
+        }
     }
 
     /**
@@ -111,4 +255,17 @@ public class TagRepository extends AbstractRepository {
 
         return ret;
     }
+
+    /**
+     * Caches the specified tag if there is no transaction in progress.
+     *
+     * @param tag the specified tag, may be {@code null}
+     */
+    private void cache(final JSONObject tag) {
+        if (null == tag || hasTransactionBegun()) {
+            return;
+        }
+
+        tagCache.putTag(tag);
+    }
 }
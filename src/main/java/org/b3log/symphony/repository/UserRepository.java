@@ -15,6 +15,7 @@
  */
 package org.b3log.symphony.repository;
 
+import javax.inject.Inject;
 import org.b3log.latke.Keys;
 import org.b3log.latke.model.Role;
 import org.b3log.latke.model.User;
@@ -24,19 +25,33 @@ import org.b3log.latke.repository.PropertyFilter;
 import org.b3log.latke.repository.Query;
 import org.b3log.latke.repository.RepositoryException;
 import org.b3log.latke.repository.annotation.Repository;
+import org.b3log.symphony.cache.UserCache;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
 /**
  * User repository.
  *
+ * <p>
+ * Lookups by id, email and name go through {@link UserCache}. Users read inside a transaction will not be cached
+ * since they may be uncommitted, and updates/removals evict the cached user. Callers should also evict the user via
+ * {@link UserCache#removeUser(java.lang.String)} after the transaction committed, so that a concurrent read between
+ * the update and the commit could not leave a stale user in the cache.
+ * </p>
+ *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.0.0.3, Aug 10, 2012
+ * @version 1.1.0.3, Jun 8, 2015
  * @since 0.2.0
  */
 @Repository
 public class UserRepository extends AbstractRepository {
 
+    /**
+     * User cache.
+     */
+    @Inject
+    private UserCache userCache;
+
     /**
      * Public constructor.
      */
@@ -44,6 +59,33 @@ public class UserRepository extends AbstractRepository {
         super(User.USER);
     }
 
+    @Override
+    public JSONObject get(final String id) throws RepositoryException {
+        JSONObject ret = userCache.getUser(id);
+        if (null != ret) {
+            return ret;
+        }
+
+        ret = super.get(id);
+        cache(ret);
+
+        return ret;
+    }
+
+    @Override
+    public void update(final String id, final JSONObject user) throws RepositoryException {
+        userCache.removeUser(id);
+
+        super.update(id, user);
+    }
+
+    @Override
+    public void remove(final String id) throws RepositoryException {
+        userCache.removeUser(id);
+
+        super.remove(id);
+    }
+
     /**
      * Gets a user by the specified name.
      *
@@ -52,6 +94,11 @@ public class UserRepository extends AbstractRepository {
      * @throws RepositoryException repository exception
      */
     public JSONObject getByName(final String name) throws RepositoryException {
+        final JSONObject cached = userCache.getUserByName(name);
+        if (null != cached) {
+            return cached;
+        }
+
         final Query query = new Query().setPageCount(1);
         query.setFilter(new PropertyFilter(User.USER_NAME, FilterOperator.EQUAL, name));
 
@@ -62,7 +109,10 @@ public class UserRepository extends AbstractRepository {
             return null;
         }
 
-        return array.optJSONObject(0);
+        final JSONObject ret = array.optJSONObject(0);
+        cache(ret);
+
+        return ret;
     }
 
     /**
@@ -73,6 +123,11 @@ public class UserRepository extends AbstractRepository {
      * @throws RepositoryException repository exception
      */
     public JSONObject getByEmail(final String email) throws RepositoryException {
+        final JSONObject cached = userCache.getUserByEmail(email);
+        if (null != cached) {
+            return cached;
+        }
+
         final Query query = new Query().setPageCount(1);
         query.setFilter(new PropertyFilter(User.USER_EMAIL, FilterOperator.EQUAL, email.toLowerCase().trim()));
 
@@ -83,7 +138,10 @@ public class UserRepository extends AbstractRepository {
             return null;
         }
 
-        return array.optJSONObject(0);
+        final JSONObject ret = array.optJSONObject(0);
+        cache(ret);
+
+        return ret;
     }
 
     /**
@@ -122,4 +180,17 @@ public class UserRepository extends AbstractRepository {
 
         return Role.ADMIN_ROLE.equals(user.optString(User.USER_ROLE));
     }
+
+    /**
+     * Caches the specified user if there is no transaction in progress.
+     *
+     * @param user the specified user, may be {@code null}
+     */
+    private void cache(final JSONObject user) {
+        if (null == user || hasTransactionBegun()) {
+            return;
+        }
+
+        userCache.putUser(user);
+    }
 }
@@ -18,6 +18,7 @@ package org.b3log.symphony.service;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import javax.inject.Inject;
 import org.b3log.latke.Keys;
 import org.b3log.latke.event.Event;
@@ -33,6 +34,15 @@ import org.b3log.latke.service.LangPropsService;
 import org.b3log.latke.service.ServiceException;
 import org.b3log.latke.service.annotation.Service;
 import org.b3log.latke.util.Ids;
+import org.b3log.symphony.cache.ArticleContentCache;
+import org.b3log.symphony.cache.ArticleViewCountBuffer;
+import org.b3log.symphony.cache.HomeFeedIndex;
+import org.b3log.symphony.cache.PageCache;
+import org.b3log.symphony.cache.LatestCommentRing;
+import org.b3log.symphony.cache.RelevantArticleIndex;
+import org.b3log.symphony.cache.StatisticCounter;
+import org.b3log.symphony.cache.TagCache;
+import org.b3log.symphony.cache.UserCache;
 import org.b3log.symphony.event.EventTypes;
 import org.b3log.symphony.model.Article;
 import org.b3log.symphony.model.Common;
@@ -53,7 +63,7 @@ import org.json.JSONObject;
  * Article management service.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.2.1.6, May 31, 2015
+ * @version 1.3.5.11, Jun 8, 2015
  * @since 0.2.0
  */
 @Service
@@ -106,6 +116,18 @@ public class ArticleMgmtService {
     @Inject
     private TagMgmtService tagMgmtService;
 
+    /**
+     * Article content cache.
+     */
+    @Inject
+    private ArticleContentCache articleContentCache;
+
+    /**
+     * Article view count buffer.
+     */
+    @Inject
+    private ArticleViewCountBuffer articleViewCountBuffer;
+
     /**
      * Event manager.
      */
@@ -118,33 +140,90 @@ public class ArticleMgmtService {
     @Inject
     private LangPropsService langPropsService;
 
+    /**
+     * User cache.
+     */
+    @Inject
+    private UserCache userCache;
+
+    /**
+     * Statistic counter.
+     */
+    @Inject
+    private StatisticCounter statisticCounter;
+
+    /**
+     * Tag cache.
+     */
+    @Inject
+    private TagCache tagCache;
+
+    /**
+     * Relevant article index.
+     */
+    @Inject
+    private RelevantArticleIndex relevantArticleIndex;
+
+    /**
+     * Home feed index.
+     */
+    @Inject
+    private HomeFeedIndex homeFeedIndex;
+
+    /**
+     * Page cache.
+     */
+    @Inject
+    private PageCache pageCache;
+
+    /**
+     * Latest comment ring.
+     */
+    @Inject
+    private LatestCommentRing latestCommentRing;
+
     /**
      * Increments the view count of the specified article by the given article id.
      *
+     * <p>
+     * The increment is buffered in memory, it will be written to repository by {@link #flushArticleViewCount()}.
+     * </p>
+     *
      * @param articleId the given article id
+     */
+    public void incArticleViewCount(final String articleId) {
+        articleViewCountBuffer.inc(articleId);
+    }
+
+    /**
+     * Flushes the buffered article view count increments into repository in one transaction, only the view count
+     * column will be updated.
+     *
+     * @return the count of updated articles
      * @throws ServiceException service exception
      */
-    public void incArticleViewCount(final String articleId) throws ServiceException {
+    public int flushArticleViewCount() throws ServiceException {
+        final Map<String, Long> deltas = articleViewCountBuffer.drain();
+        if (deltas.isEmpty()) {
+            return 0;
+        }
+
         final Transaction transaction = articleRepository.beginTransaction();
 
         try {
-            final JSONObject article = articleRepository.get(articleId);
-            if (null == article) {
-                return;
-            }
-
-            final int viewCnt = article.optInt(Article.ARTICLE_VIEW_CNT);
-            article.put(Article.ARTICLE_VIEW_CNT, viewCnt + 1);
-
-            articleRepository.update(articleId, article);
+            final int ret = articleRepository.incViewCount(deltas);
 
             transaction.commit();
+
+            return ret;
         } catch (final RepositoryException e) {
             if (transaction.isActive()) {
                 transaction.rollback();
             }
 
-            LOGGER.log(Level.ERROR, "Incs an article view count failed", e);
+            articleViewCountBuffer.restore(deltas);
+
+            LOGGER.log(Level.ERROR, "Flushes article view count failed", e);
             throw new ServiceException(e);
         }
     }
@@ -239,12 +318,7 @@ public class ArticleMgmtService {
             article.put(Article.ARTICLE_RANDOM_DOUBLE, Math.random());
             article.put(Article.ARTICLE_STATUS, 0);
 
-            tag(article.optString(Article.ARTICLE_TAGS).split(","), article, author);
-
-            final JSONObject articleCntOption = optionRepository.get(Option.ID_C_STATISTIC_ARTICLE_COUNT);
-            final int articleCnt = articleCntOption.optInt(Option.OPTION_VALUE);
-            articleCntOption.put(Option.OPTION_VALUE, articleCnt + 1);
-            optionRepository.update(Option.ID_C_STATISTIC_ARTICLE_COUNT, articleCntOption);
+            final int newTagCnt = tag(article.optString(Article.ARTICLE_TAGS).split(","), article, author);
 
             author.put(UserExt.USER_ARTICLE_COUNT, author.optInt(UserExt.USER_ARTICLE_COUNT) + 1);
             author.put(UserExt.USER_LATEST_ARTICLE_TIME, currentTimeMillis);
@@ -254,6 +328,13 @@ public class ArticleMgmtService {
             articleRepository.add(article);
 
             transaction.commit();
+
+            statisticCounter.inc(Option.ID_C_STATISTIC_ARTICLE_COUNT);
+            statisticCounter.add(Option.ID_C_STATISTIC_TAG_COUNT, newTagCnt);
+
+            userCache.removeUser(author.optString(Keys.OBJECT_ID));
+            pageCache.removeMember(author.optString(User.USER_NAME));
+            removeCachedTags(article.optString(Article.ARTICLE_TAGS));
             
             // Grows the tag graph
             tagMgmtService.relateTags(article.optString(Article.ARTICLE_TAGS));
@@ -314,8 +395,9 @@ public class ArticleMgmtService {
             final JSONObject oldArticle = articleRepository.get(articleId);
             final String authorId = oldArticle.optString(Article.ARTICLE_AUTHOR_ID);
             final JSONObject author = userRepository.get(authorId);
+            final String oldTagsString = oldArticle.optString(Article.ARTICLE_TAGS);
 
-            processTagsForArticleUpdate(oldArticle, requestJSONObject, author);
+            final int newTagCnt = processTagsForArticleUpdate(oldArticle, requestJSONObject, author);
             userRepository.update(author.optString(Keys.OBJECT_ID), author);
 
             final boolean fromClient = requestJSONObject.has(Article.ARTICLE_CLIENT_ARTICLE_ID);
@@ -338,6 +420,14 @@ public class ArticleMgmtService {
 
             transaction.commit();
 
+            statisticCounter.add(Option.ID_C_STATISTIC_TAG_COUNT, newTagCnt);
+
+            userCache.removeUser(authorId);
+            pageCache.removeMember(author.optString(User.USER_NAME));
+            removeCachedTags(oldTagsString);
+            pageCache.removeTags(oldTagsString);
+            removeCachedTags(oldArticle.optString(Article.ARTICLE_TAGS));
+
             final JSONObject eventData = new JSONObject();
             eventData.put(Common.FROM_CLIENT, fromClient);
             eventData.put(Article.ARTICLE, oldArticle);
@@ -373,6 +463,13 @@ public class ArticleMgmtService {
             articleRepository.update(articleId, article);
 
             transaction.commit();
+
+            // Status or content may be changed without touching the update time
+            articleContentCache.remove(articleId);
+            relevantArticleIndex.put(article);
+            homeFeedIndex.put(article); // Good/bad count may be changed
+            latestCommentRing.expireArticle(articleId);
+            pageCache.removeArticle(article);
         } catch (final RepositoryException e) {
             if (transaction.isActive()) {
                 transaction.rollback();
@@ -395,9 +492,10 @@ public class ArticleMgmtService {
      * @param oldArticle the specified old article
      * @param newArticle the specified new article
      * @param author the specified author
+     * @return the count of new tags
      * @throws Exception exception
      */
-    private void processTagsForArticleUpdate(final JSONObject oldArticle, final JSONObject newArticle, final JSONObject author)
+    private int processTagsForArticleUpdate(final JSONObject oldArticle, final JSONObject newArticle, final JSONObject author)
             throws Exception {
         final String oldArticleId = oldArticle.getString(Keys.OBJECT_ID);
         final List<JSONObject> oldTags = tagRepository.getByArticleId(oldArticleId);
@@ -471,7 +569,8 @@ public class ArticleMgmtService {
         }
 
         newArticle.put(Article.ARTICLE_COMMENT_CNT, articleCmtCnt);
-        tag(tagStrings, newArticle, author);
+
+        return tag(tagStrings, newArticle, author);
     }
 
     /**
@@ -531,9 +630,12 @@ public class ArticleMgmtService {
      * @param tagTitles the specified tag titles
      * @param article the specified article
      * @param author the specified author
+     * @return the count of new tags
      * @throws RepositoryException repository exception
      */
-    private void tag(final String[] tagTitles, final JSONObject article, final JSONObject author) throws RepositoryException {
+    private int tag(final String[] tagTitles, final JSONObject article, final JSONObject author) throws RepositoryException {
+        int ret = 0;
+
         for (int i = 0; i < tagTitles.length; i++) {
             final String tagTitle = tagTitles[i].trim();
             JSONObject tag = tagRepository.getByTitle(tagTitle);
@@ -559,10 +661,7 @@ public class ArticleMgmtService {
                 tag.put(Keys.OBJECT_ID, tagId);
                 userTagType = 0; // Creator
 
-                final JSONObject tagCntOption = optionRepository.get(Option.ID_C_STATISTIC_TAG_COUNT);
-                final int tagCnt = tagCntOption.optInt(Option.OPTION_VALUE);
-                tagCntOption.put(Option.OPTION_VALUE, tagCnt + 1);
-                optionRepository.update(Option.ID_C_STATISTIC_TAG_COUNT, tagCntOption);
+                ++ret;
 
                 author.put(UserExt.USER_TAG_COUNT, author.optInt(UserExt.USER_TAG_COUNT) + 1);
             } else {
@@ -600,5 +699,18 @@ public class ArticleMgmtService {
             userTagRelation.put(Common.TYPE, userTagType);
             userTagRepository.add(userTagRelation);
         }
+
+        return ret;
+    }
+
+    /**
+     * Removes cached tags specified by the given tags string.
+     *
+     * @param tagsString the given tags string, for example, "tag1,tag2"
+     */
+    private void removeCachedTags(final String tagsString) {
+        for (final String tagTitle : tagsString.split(",")) {
+            tagCache.removeTagByTitle(tagTitle.trim());
+        }
     }
 }
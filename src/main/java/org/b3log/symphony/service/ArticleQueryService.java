@@ -18,6 +18,7 @@ package org.b3log.symphony.service;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -43,6 +44,12 @@ import org.b3log.latke.service.annotation.Service;
 import org.b3log.latke.util.CollectionUtils;
 import org.b3log.latke.util.Paginator;
 import org.b3log.latke.util.Strings;
+import org.b3log.symphony.cache.ArticleContentCache;
+import org.b3log.symphony.cache.ArticleViewCountBuffer;
+import org.b3log.symphony.cache.HomeFeedIndex;
+import org.b3log.symphony.cache.RandomSampler;
+import org.b3log.symphony.cache.RelevantArticleIndex;
+import org.b3log.symphony.cache.RequestUserCache;
 import org.b3log.symphony.model.Article;
 import org.b3log.symphony.model.Tag;
 import org.b3log.symphony.model.UserExt;
@@ -50,8 +57,7 @@ import org.b3log.symphony.repository.ArticleRepository;
 import org.b3log.symphony.repository.TagArticleRepository;
 import org.b3log.symphony.repository.TagRepository;
 import org.b3log.symphony.repository.UserRepository;
-import org.b3log.symphony.util.Emotions;
-import org.b3log.symphony.util.Markdowns;
+import org.b3log.symphony.util.ContentRenderer;
 import org.b3log.symphony.util.Symphonys;
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -60,7 +66,7 @@ import org.json.JSONObject;
  * Article query service.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.2.0.11, Apr 20, 2015
+ * @version 1.2.8.11, Jun 8, 2015
  * @since 0.2.0
  */
 @Service
@@ -102,33 +108,65 @@ public class ArticleQueryService {
     private CommentQueryService commentQueryService;
 
     /**
-     * User query service.
+     * Thumbnail query service.
      */
     @Inject
-    private UserQueryService userQueryService;
+    private ThumbnailQueryService thumbnailQueryService;
 
     /**
-     * Thumbnail query service.
+     * Language service.
      */
     @Inject
-    private ThumbnailQueryService thumbnailQueryService;
+    private LangPropsService langPropsService;
+
+    /**
+     * Article content cache.
+     */
+    @Inject
+    private ArticleContentCache articleContentCache;
 
     /**
-     * Count to fetch article tags for relevant articles.
+     * Article view count buffer.
      */
-    private static final int RELEVANT_ARTICLE_RANDOM_FETCH_TAG_CNT = 3;
+    @Inject
+    private ArticleViewCountBuffer articleViewCountBuffer;
 
     /**
-     * Language service.
+     * Request user cache.
      */
     @Inject
-    private LangPropsService langPropsService;
+    private RequestUserCache requestUserCache;
+
+    /**
+     * Content renderer.
+     */
+    @Inject
+    private ContentRenderer contentRenderer;
+
+    /**
+     * Relevant article index.
+     */
+    @Inject
+    private RelevantArticleIndex relevantArticleIndex;
+
+    /**
+     * Home feed index.
+     */
+    @Inject
+    private HomeFeedIndex homeFeedIndex;
+
+    /**
+     * Random sampler.
+     */
+    @Inject
+    private RandomSampler randomSampler;
 
     /**
      * Gets the relevant articles of the specified article with the specified fetch size.
      *
      * <p>
-     * The relevant articles exist the same tag with the specified article.
+     * The relevant articles exist the same tag with the specified article, they are read from
+     * {@link RelevantArticleIndex}.
      * </p>
      *
      * @param article the specified article
@@ -137,44 +175,8 @@ public class ArticleQueryService {
      * @throws ServiceException service exception
      */
     public List<JSONObject> getRelevantArticles(final JSONObject article, final int fetchSize) throws ServiceException {
-        final String tagsString = article.optString(Article.ARTICLE_TAGS);
-        final String[] tagTitles = tagsString.split(",");
-        final int tagTitlesLength = tagTitles.length;
-        final int subCnt = tagTitlesLength > RELEVANT_ARTICLE_RANDOM_FETCH_TAG_CNT
-                           ? RELEVANT_ARTICLE_RANDOM_FETCH_TAG_CNT : tagTitlesLength;
-
-        final List<Integer> tagIdx = CollectionUtils.getRandomIntegers(0, tagTitlesLength, subCnt);
-        final int subFetchSize = fetchSize / subCnt;
-        final Set<String> fetchedArticleIds = new HashSet<String>();
-
-        final List<JSONObject> ret = new ArrayList<JSONObject>();
         try {
-            for (int i = 0; i < tagIdx.size(); i++) {
-                final String tagTitle = tagTitles[tagIdx.get(i)].trim();
-
-                final JSONObject tag = tagRepository.getByTitle(tagTitle);
-                final String tagId = tag.optString(Keys.OBJECT_ID);
-                JSONObject result = tagArticleRepository.getByTagId(tagId, 1, subFetchSize);
-
-                final JSONArray tagArticleRelations = result.optJSONArray(Keys.RESULTS);
-
-                final Set<String> articleIds = new HashSet<String>();
-                for (int j = 0; j < tagArticleRelations.length(); j++) {
-                    final String articleId = tagArticleRelations.optJSONObject(j).optString(Article.ARTICLE + '_' + Keys.OBJECT_ID);
-
-                    if (fetchedArticleIds.contains(articleId)) {
-                        continue;
-                    }
-
-                    articleIds.add(articleId);
-                    fetchedArticleIds.add(articleId);
-                }
-
-                final Query query = new Query().setFilter(new PropertyFilter(Keys.OBJECT_ID, FilterOperator.IN, articleIds));
-                result = articleRepository.get(query);
-
-                ret.addAll(CollectionUtils.<JSONObject>jsonArrayToList(result.optJSONArray(Keys.RESULTS)));
-            }
+            final List<JSONObject> ret = relevantArticleIndex.getRelevantArticles(article.optString(Keys.OBJECT_ID), fetchSize);
 
             organizeArticles(ret);
 
@@ -469,13 +471,17 @@ public class ArticleQueryService {
     /**
      * Gets the random articles with the specified fetch size.
      *
+     * <p>
+     * The articles are picked by {@link RandomSampler}.
+     * </p>
+     *
      * @param fetchSize the specified fetch size
      * @return recent articles, returns an empty list if not found
      * @throws ServiceException service exception
      */
     public List<JSONObject> getRandomArticles(final int fetchSize) throws ServiceException {
         try {
-            final List<JSONObject> ret = articleRepository.getRandomly(fetchSize);
+            final List<JSONObject> ret = randomSampler.sampleArticles(fetchSize);
             organizeArticles(ret);
 
             return ret;
@@ -511,28 +517,48 @@ public class ArticleQueryService {
     /**
      * Gets the latest comment articles with the specified fetch size.
      *
+     * <p>
+     * The articles are paged through {@link HomeFeedIndex} (ordered by bad count, good count and latest comment time),
+     * and then loaded by ids.
+     * </p>
+     *
      * @param currentPageNum the specified current page number
      * @param fetchSize the specified fetch size
      * @return recent articles, returns an empty list if not found
      * @throws ServiceException service exception
      */
     public List<JSONObject> getLatestCmtArticles(final int currentPageNum, final int fetchSize) throws ServiceException {
-        final Query query = new Query()
-                .addSort(Article.ARTICLE_BAD_CNT, SortDirection.ASCENDING)
-                .addSort(Article.ARTICLE_GOOD_CNT, SortDirection.DESCENDING)
-                .addSort(Article.ARTICLE_LATEST_CMT_TIME, SortDirection.DESCENDING)
-                .setPageCount(1).setPageSize(fetchSize).setCurrentPageNum(currentPageNum);
-
         try {
+            final List<String> articleIds = homeFeedIndex.getArticleIds(currentPageNum, fetchSize);
+            if (articleIds.isEmpty()) {
+                return new ArrayList<JSONObject>();
+            }
+
+            final Query query = new Query().setPageCount(1).
+                    setFilter(new PropertyFilter(Keys.OBJECT_ID, FilterOperator.IN, new HashSet<String>(articleIds)));
             final JSONObject result = articleRepository.get(query);
-            final List<JSONObject> ret = CollectionUtils.<JSONObject>jsonArrayToList(result.optJSONArray(Keys.RESULTS));
+            final JSONArray articles = result.optJSONArray(Keys.RESULTS);
+            final Map<String, JSONObject> loaded = new HashMap<String, JSONObject>();
+            for (int i = 0; i < articles.length(); i++) {
+                final JSONObject article = articles.optJSONObject(i);
+                loaded.put(article.optString(Keys.OBJECT_ID), article);
+            }
+
+            final List<JSONObject> ret = new ArrayList<JSONObject>();
+            for (final String articleId : articleIds) { // Keeps the order of the index
+                final JSONObject article = loaded.get(articleId);
+                if (null != article) {
+                    ret.add(article);
+                }
+            }
 
             organizeArticles(ret);
 
+            final Map<String, JSONObject> authors = getAuthors(ret); // Loaded while organizing already
             for (final JSONObject article : ret) {
                 final String authorId = article.optString(Article.ARTICLE_AUTHOR_ID);
-                final JSONObject author = userRepository.get(authorId);
-                if (UserExt.USER_STATUS_C_INVALID == author.optInt(UserExt.USER_STATUS)) {
+                final JSONObject author = authors.get(authorId);
+                if (null != author && UserExt.USER_STATUS_C_INVALID == author.optInt(UserExt.USER_STATUS)) {
                     article.put(Article.ARTICLE_TITLE, langPropsService.get("articleTitleBlockLabel"));
                 }
             }
@@ -554,15 +580,22 @@ public class ArticleQueryService {
      * <li>converts create/update/latest comment time (long) to date type</li>
      * <li>generates author thumbnail URL</li>
      * <li>generates author name</li>
+     * <li>adds the unflushed view count</li>
      * <li>escapes article title &lt; and &gt;</li>
      * </ul>
      *
+     * <p>
+     * Authors of the specified articles will be loaded in batch.
+     * </p>
+     *
      * @param articles the specified articles
      * @throws RepositoryException repository exception
      */
     private void organizeArticles(final List<JSONObject> articles) throws RepositoryException {
+        final Map<String, JSONObject> authors = getAuthors(articles);
+
         for (final JSONObject article : articles) {
-            organizeArticle(article);
+            organizeArticle(article, authors);
         }
     }
 
@@ -573,6 +606,7 @@ public class ArticleQueryService {
      * <li>converts create/update/latest comment time (long) to date type</li>
      * <li>generates author thumbnail URL</li>
      * <li>generates author name</li>
+     * <li>adds the unflushed view count</li>
      * <li>escapes article title &lt; and &gt;</li>
      * </ul>
      *
@@ -580,8 +614,25 @@ public class ArticleQueryService {
      * @throws RepositoryException repository exception
      */
     private void organizeArticle(final JSONObject article) throws RepositoryException {
+        organizeArticle(article, getAuthors(Collections.singletonList(article)));
+    }
+
+    /**
+     * Organizes the specified article with the specified authors.
+     *
+     * @param article the specified article
+     * @param authors the specified authors, &lt;userId, user&gt;
+     * @throws RepositoryException repository exception
+     * @see #organizeArticle(org.json.JSONObject)
+     */
+    private void organizeArticle(final JSONObject article, final Map<String, JSONObject> authors) throws RepositoryException {
         toArticleDate(article);
-        genArticleAuthor(article);
+        genArticleAuthor(article, authors);
+
+        if (article.has(Article.ARTICLE_VIEW_CNT)) { // Adds the unflushed view count
+            final long viewCnt = article.optLong(Article.ARTICLE_VIEW_CNT);
+            article.put(Article.ARTICLE_VIEW_CNT, viewCnt + articleViewCountBuffer.get(article.optString(Keys.OBJECT_ID)));
+        }
 
         final String title = article.optString(Article.ARTICLE_TITLE).replace("<", "&lt;").replace(">", "&gt;");
         article.put(Article.ARTICLE_TITLE, title);
@@ -603,22 +654,46 @@ public class ArticleQueryService {
         article.put(Article.ARTICLE_LATEST_CMT_TIME, new Date(article.optLong(Article.ARTICLE_LATEST_CMT_TIME)));
     }
 
+    /**
+     * Gets authors of the specified articles.
+     *
+     * @param articles the specified articles
+     * @return authors, &lt;userId, user&gt;
+     * @throws RepositoryException repository exception
+     */
+    private Map<String, JSONObject> getAuthors(final List<JSONObject> articles) throws RepositoryException {
+        final Set<String> authorIds = new HashSet<String>();
+        for (final JSONObject article : articles) {
+            final String authorId = article.optString(Article.ARTICLE_AUTHOR_ID);
+
+            if (!Strings.isEmptyOrNull(authorId)) {
+                authorIds.add(authorId);
+            }
+        }
+
+        return requestUserCache.getUsers(authorIds);
+    }
+
     /**
      * Generates the specified article author name and thumbnail URL.
      *
      * @param article the specified article
+     * @param authors the specified authors, &lt;userId, user&gt;
      * @throws RepositoryException repository exception
      */
-    private void genArticleAuthor(final JSONObject article) throws RepositoryException {
+    private void genArticleAuthor(final JSONObject article, final Map<String, JSONObject> authors) throws RepositoryException {
         final String authorEmail = article.optString(Article.ARTICLE_AUTHOR_EMAIL);
 
         if (Strings.isEmptyOrNull(authorEmail)) {
             return;
         }
 
-        article.put(Article.ARTICLE_T_AUTHOR_THUMBNAIL_URL, thumbnailQueryService.getAvatarURL(authorEmail, "140"));
+        JSONObject author = authors.get(article.optString(Article.ARTICLE_AUTHOR_ID));
+        if (null == author) { // The author id may be not projected
+            author = userRepository.getByEmail(authorEmail);
+        }
 
-        final JSONObject author = userRepository.getByEmail(authorEmail);
+        article.put(Article.ARTICLE_T_AUTHOR_THUMBNAIL_URL, thumbnailQueryService.getAvatarURLByUser(author, "140"));
         article.put(Article.ARTICLE_T_AUTHOR_NAME, author.optString(User.USER_NAME));
     }
 
@@ -630,12 +705,19 @@ public class ArticleQueryService {
      * @throws ServiceException service exception
      */
     private void genParticipants(final List<JSONObject> articles, final Integer participantsCnt) throws ServiceException {
+        final List<String> articleIds = new ArrayList<String>();
+        for (final JSONObject article : articles) {
+            articleIds.add(article.optString(Keys.OBJECT_ID));
+        }
+
+        final Map<String, List<JSONObject>> participants
+                = commentQueryService.getArticlesLatestParticipants(articleIds, participantsCnt);
+
         for (final JSONObject article : articles) {
             final String participantName = "";
             final String participantThumbnailURL = "";
 
-            final List<JSONObject> articleParticipants
-                                   = commentQueryService.getArticleLatestParticipants(article.optString(Keys.OBJECT_ID), participantsCnt);
+            final List<JSONObject> articleParticipants = participants.get(article.optString(Keys.OBJECT_ID));
             article.put(Article.ARTICLE_T_PARTICIPANTS, (Object) articleParticipants);
 
             article.put(Article.ARTICLE_T_PARTICIPANT_NAME, participantName);
@@ -647,11 +729,8 @@ public class ArticleQueryService {
      * Processes the specified article content.
      *
      * <ul>
-     * <li>Generates &#64;username home URL</li>
-     * <li>Markdowns</li>
-     * <li>Generates secured article content</li>
      * <li>Blocks the article if need</li>
-     * <li>Generates emotion images</li>
+     * <li>Renders the content with {@link ContentRenderer}, the rendered content will be cached</li>
      * </ul>
      *
      * @param article the specified article, for example,
@@ -675,24 +754,35 @@ public class ArticleQueryService {
             return;
         }
 
-        String articleContent = article.optString(Article.ARTICLE_CONTENT);
-        try {
-            // XXX: [Performance Issue] genArticleContentUserName
-            final Set<String> userNames = userQueryService.getUserNames(articleContent);
-            for (final String userName : userNames) {
-                articleContent = articleContent.replace('@' + userName, "@<a href='" + Latkes.getStaticServePath()
-                                                                        + "/member/" + userName + "'>" + userName + "</a>");
-            }
-        } catch (final ServiceException e) {
-            final String errMsg = "Generates @username home URL for article content failed";
-            LOGGER.log(Level.ERROR, errMsg, e);
-            throw new ServiceException(errMsg);
+        final String articleId = article.optString(Keys.OBJECT_ID);
+        final long updateTime = getUpdateTime(article);
+        final String cachedContent = articleContentCache.get(articleId, updateTime);
+        if (null != cachedContent) {
+            article.put(Article.ARTICLE_CONTENT, cachedContent);
+
+            return;
         }
 
-        articleContent = Emotions.convert(articleContent);
+        final String articleContent = contentRenderer.render(article.optString(Article.ARTICLE_CONTENT),
+                                                             Latkes.getServePath() + article.optString(Article.ARTICLE_PERMALINK));
         article.put(Article.ARTICLE_CONTENT, articleContent);
 
-        markdown(article);
+        articleContentCache.put(articleId, updateTime, articleContent);
+    }
+
+    /**
+     * Gets the update time of the specified article.
+     *
+     * @param article the specified article, the update time may be a {@link Date} if it has been organized
+     * @return update time in milliseconds
+     */
+    private static long getUpdateTime(final JSONObject article) {
+        final Object updateTime = article.opt(Article.ARTICLE_UPDATE_TIME);
+        if (updateTime instanceof Date) {
+            return ((Date) updateTime).getTime();
+        }
+
+        return article.optLong(Article.ARTICLE_UPDATE_TIME);
     }
 
     /**
@@ -778,23 +868,4 @@ public class ArticleQueryService {
 
         return ret;
     }
-
-    /**
-     * Markdowns the specified article content.
-     *
-     * <ul>
-     * <li>Markdowns article content</li>
-     * <li>Generates secured article content</li>
-     * </ul>
-     *
-     * @param article the specified article content
-     */
-    private void markdown(final JSONObject article) {
-        String content = article.optString(Article.ARTICLE_CONTENT);
-
-        content = Markdowns.toHTML(content);
-        content = Markdowns.clean(content, Latkes.getServePath() + article.optString(Article.ARTICLE_PERMALINK));
-
-        article.put(Article.ARTICLE_CONTENT, content);
-    }
 }
@@ -15,6 +15,10 @@
  */
 package org.b3log.symphony.service;
 
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 import javax.inject.Inject;
 import org.b3log.latke.Keys;
 import org.b3log.latke.event.Event;
@@ -30,12 +34,16 @@ import org.b3log.latke.service.LangPropsService;
 import org.b3log.latke.service.ServiceException;
 import org.b3log.latke.service.annotation.Service;
 import org.b3log.latke.util.Ids;
+import org.b3log.symphony.cache.LatestCommentRing;
+import org.b3log.symphony.cache.PageCache;
+import org.b3log.symphony.cache.StatisticCounter;
+import org.b3log.symphony.cache.TagCache;
+import org.b3log.symphony.cache.UserCache;
 import org.b3log.symphony.event.EventTypes;
 import org.b3log.symphony.model.Article;
 import org.b3log.symphony.model.Comment;
 import org.b3log.symphony.model.Common;
 import org.b3log.symphony.model.Option;
-import org.b3log.symphony.model.Tag;
 import org.b3log.symphony.model.UserExt;
 import org.b3log.symphony.repository.ArticleRepository;
 import org.b3log.symphony.repository.CommentRepository;
@@ -49,7 +57,7 @@ import org.json.JSONObject;
  * Comment management service.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.2.1.15, Apr 21, 2015
+ * @version 1.2.5.18, Jun 8, 2015
  * @since 0.2.0
  */
 @Service
@@ -102,6 +110,36 @@ public class CommentMgmtService {
     @Inject
     private LangPropsService langPropsService;
 
+    /**
+     * User cache.
+     */
+    @Inject
+    private UserCache userCache;
+
+    /**
+     * Statistic counter.
+     */
+    @Inject
+    private StatisticCounter statisticCounter;
+
+    /**
+     * Latest comment ring.
+     */
+    @Inject
+    private LatestCommentRing latestCommentRing;
+
+    /**
+     * Page cache.
+     */
+    @Inject
+    private PageCache pageCache;
+
+    /**
+     * Tag cache.
+     */
+    @Inject
+    private TagCache tagCache;
+
     /**
      * Adds a comment with the specified request json object.
      *
@@ -184,21 +222,19 @@ public class CommentMgmtService {
             comment.put(Comment.COMMENT_SHARP_URL, "/article/" + articleId + "#" + ret);
             comment.put(Comment.COMMENT_STATUS, 0);
 
-            final JSONObject cmtCntOption = optionRepository.get(Option.ID_C_STATISTIC_CMT_COUNT);
-            final int cmtCnt = cmtCntOption.optInt(Option.OPTION_VALUE);
-            cmtCntOption.put(Option.OPTION_VALUE, String.valueOf(cmtCnt + 1));
-
             articleRepository.update(articleId, article); // Updates article comment count
-            optionRepository.update(Option.ID_C_STATISTIC_CMT_COUNT, cmtCntOption); // Updates global comment count
-            // Updates tag comment count and User-Tag relation
+            // Updates tag comment count
             final String tagsString = article.optString(Article.ARTICLE_TAGS);
             final String[] tagStrings = tagsString.split(",");
+            final Set<String> tagTitles = new LinkedHashSet<String>();
             for (int i = 0; i < tagStrings.length; i++) {
-                final String tagTitle = tagStrings[i].trim();
-                final JSONObject tag = tagRepository.getByTitle(tagTitle);
-                tag.put(Tag.TAG_COMMENT_CNT, tag.optInt(Tag.TAG_COMMENT_CNT) + 1);
-                tagRepository.update(tag.optString(Keys.OBJECT_ID), tag);
+                tagTitles.add(tagStrings[i].trim());
+            }
+            final List<String> tagIds = new ArrayList<String>();
+            for (final JSONObject tag : tagRepository.getByTitles(tagTitles)) {
+                tagIds.add(tag.optString(Keys.OBJECT_ID));
             }
+            tagRepository.incCommentCount(tagIds);
 
             // Updates user comment count, latest comment time
             commenter.put(UserExt.USER_COMMENT_COUNT, commenter.optInt(UserExt.USER_COMMENT_COUNT) + 1);
@@ -210,6 +246,12 @@ public class CommentMgmtService {
 
             transaction.commit();
 
+            statisticCounter.inc(Option.ID_C_STATISTIC_CMT_COUNT); // Updates global comment count
+            userCache.removeUser(commenter.optString(Keys.OBJECT_ID));
+            for (final String tagId : tagIds) { // Tag comment count changed
+                tagCache.incCommentCount(tagId);
+            }
+
             final JSONObject eventData = new JSONObject();
             eventData.put(Comment.COMMENT, comment);
             eventData.put(Common.FROM_CLIENT, fromClient);
@@ -246,6 +288,9 @@ public class CommentMgmtService {
             commentRepository.update(commentId, comment);
 
             transaction.commit();
+
+            latestCommentRing.expireComment(commentId);
+            pageCache.removeArticle(comment.optString(Comment.COMMENT_ON_ARTICLE_ID));
         } catch (final RepositoryException e) {
             if (transaction.isActive()) {
                 transaction.rollback();
@@ -16,7 +16,10 @@
 package org.b3log.symphony.service;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -37,14 +40,18 @@ import org.b3log.latke.service.ServiceException;
 import org.b3log.latke.service.annotation.Service;
 import org.b3log.latke.util.CollectionUtils;
 import org.b3log.latke.util.Paginator;
+import org.b3log.symphony.cache.ArticleParticipantCache;
+import org.b3log.symphony.cache.Caches;
+import org.b3log.symphony.cache.LatestCommentRing;
+import org.b3log.symphony.cache.RequestUserCache;
 import org.b3log.symphony.model.Article;
 import org.b3log.symphony.model.Comment;
 import org.b3log.symphony.model.UserExt;
 import org.b3log.symphony.repository.ArticleRepository;
 import org.b3log.symphony.repository.CommentRepository;
 import org.b3log.symphony.repository.UserRepository;
+import org.b3log.symphony.util.ContentRenderer;
 import org.b3log.symphony.util.Emotions;
-import org.b3log.symphony.util.Markdowns;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.jsoup.Jsoup;
@@ -54,7 +61,7 @@ import org.jsoup.safety.Whitelist;
  * Comment management service.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.1.2.15, Apr 17, 2015
+ * @version 1.2.4.18, Jun 8, 2015
  * @since 0.2.0
  */
 @Service
@@ -65,6 +72,11 @@ public class CommentQueryService {
      */
     private static final Logger LOGGER = Logger.getLogger(CommentQueryService.class.getName());
 
+    /**
+     * Comments to fetch for seeding participants of an article, times of the participants capacity.
+     */
+    private static final int PARTICIPANTS_SEED_FACTOR = 3;
+
     /**
      * Comment repository.
      */
@@ -84,10 +96,28 @@ public class CommentQueryService {
     private UserRepository userRepository;
 
     /**
-     * User query service.
+     * Content renderer.
+     */
+    @Inject
+    private ContentRenderer contentRenderer;
+
+    /**
+     * Article participant cache.
+     */
+    @Inject
+    private ArticleParticipantCache articleParticipantCache;
+
+    /**
+     * Request user cache.
+     */
+    @Inject
+    private RequestUserCache requestUserCache;
+
+    /**
+     * Latest comment ring.
      */
     @Inject
-    private UserQueryService userQueryService;
+    private LatestCommentRing latestCommentRing;
 
     /**
      * Thumbnail query service.
@@ -152,7 +182,8 @@ public class CommentQueryService {
      * Gets the latest comments with the specified fetch size.
      *
      * <p>
-     * The returned comments content is plain text.
+     * The returned comments content is plain text. The comments are served from {@link LatestCommentRing} if the
+     * specified fetch size is not greater than its capacity.
      * </p>
      *
      * @param fetchSize the specified fetch size
@@ -160,6 +191,58 @@ public class CommentQueryService {
      * @throws ServiceException service exception
      */
     public List<JSONObject> getLatestComments(final int fetchSize) throws ServiceException {
+        if (fetchSize > latestCommentRing.getCapacity()) {
+            return loadLatestComments(fetchSize);
+        }
+
+        if (!latestCommentRing.isLoaded()) {
+            rebuildLatestComments();
+        }
+
+        return latestCommentRing.get(fetchSize);
+    }
+
+    /**
+     * Rebuilds the {@link LatestCommentRing latest comment ring} from repository.
+     *
+     * @throws ServiceException service exception
+     */
+    public void rebuildLatestComments() throws ServiceException {
+        final long generation = latestCommentRing.getGeneration();
+
+        latestCommentRing.reset(loadLatestComments(latestCommentRing.getCapacity()), generation);
+    }
+
+    /**
+     * Adds the specified comment of the specified article into the {@link LatestCommentRing latest comment ring}.
+     *
+     * @param comment the specified comment
+     * @param article the specified article
+     * @throws ServiceException service exception
+     */
+    public void addLatestComment(final JSONObject comment, final JSONObject article) throws ServiceException {
+        if (!latestCommentRing.isLoaded()) {
+            return;
+        }
+
+        try {
+            final JSONObject commenter = userRepository.get(comment.optString(Comment.COMMENT_AUTHOR_ID));
+
+            latestCommentRing.add(organizeLatestComment(Caches.copy(comment), article, commenter));
+        } catch (final RepositoryException e) {
+            LOGGER.log(Level.ERROR, "Adds a latest comment failed", e);
+            throw new ServiceException(e);
+        }
+    }
+
+    /**
+     * Loads the latest comments with the specified fetch size from repository.
+     *
+     * @param fetchSize the specified fetch size
+     * @return the latest comments, returns an empty list if not found
+     * @throws ServiceException service exception
+     */
+    private List<JSONObject> loadLatestComments(final int fetchSize) throws ServiceException {
         final Query query = new Query().addSort(Comment.COMMENT_CREATE_TIME, SortDirection.DESCENDING)
                 .setCurrentPageNum(1).setPageSize(fetchSize).setPageCount(1);
         try {
@@ -167,41 +250,67 @@ public class CommentQueryService {
             final List<JSONObject> ret = CollectionUtils.<JSONObject>jsonArrayToList(result.optJSONArray(Keys.RESULTS));
 
             for (final JSONObject comment : ret) {
-                comment.put(Comment.COMMENT_CREATE_TIME, comment.optLong(Comment.COMMENT_CREATE_TIME));
-                final String articleId = comment.optString(Comment.COMMENT_ON_ARTICLE_ID);
-                final JSONObject article = articleRepository.get(articleId);
-                comment.put(Comment.COMMENT_T_ARTICLE_TITLE, article.optString(Article.ARTICLE_TITLE));
-                comment.put(Comment.COMMENT_T_ARTICLE_PERMALINK, article.optString(Article.ARTICLE_PERMALINK));
-
-                final String commenterId = comment.optString(Comment.COMMENT_AUTHOR_ID);
-                final JSONObject commenter = userRepository.get(commenterId);
-
-                if (UserExt.USER_STATUS_C_INVALID == commenter.optInt(UserExt.USER_STATUS)
-                    || Comment.COMMENT_STATUS_C_INVALID == comment.optInt(Comment.COMMENT_STATUS)) {
-                    comment.put(Comment.COMMENT_CONTENT, langPropsService.get("commentContentBlockLabel"));
-                }
-
-                String content = Emotions.clear(comment.optString(Comment.COMMENT_CONTENT));
-                content = Jsoup.clean(content, Whitelist.none());
-                comment.put(Comment.COMMENT_CONTENT, content);
+                final JSONObject article = articleRepository.get(comment.optString(Comment.COMMENT_ON_ARTICLE_ID));
+                final JSONObject commenter = userRepository.get(comment.optString(Comment.COMMENT_AUTHOR_ID));
 
-                final String commenterEmail = comment.optString(Comment.COMMENT_AUTHOR_EMAIL);
-                String thumbnailURL = Latkes.getStaticServePath() + "/images/user-thumbnail.png";
-                if (!UserExt.DEFAULT_CMTER_EMAIL.equals(commenterEmail)) {
-                    thumbnailURL = thumbnailQueryService.getAvatarURL(commenterEmail, "140");
-                }
-                commenter.put(UserExt.USER_T_THUMBNAIL_URL, thumbnailURL);
-
-                comment.put(Comment.COMMENT_T_COMMENTER, commenter);
+                organizeLatestComment(comment, article, commenter);
             }
 
             return ret;
         } catch (final RepositoryException e) {
-            LOGGER.log(Level.ERROR, "Gets user comments failed", e);
+            LOGGER.log(Level.ERROR, "Gets latest comments failed", e);
             throw new ServiceException(e);
         }
     }
 
+    /**
+     * Organizes the specified latest comment with the specified article and commenter.
+     *
+     * <ul>
+     * <li>Blocks the content if the commenter, the comment or the article has been blocked</li>
+     * <li>Blocks the article title if the article has been blocked</li>
+     * <li>Converts the content to plain text</li>
+     * <li>Generates the commenter thumbnail URL</li>
+     * </ul>
+     *
+     * @param comment the specified comment
+     * @param article the specified article
+     * @param commenter the specified commenter
+     * @return the specified comment
+     */
+    private JSONObject organizeLatestComment(final JSONObject comment, final JSONObject article, final JSONObject commenter) {
+        comment.put(Comment.COMMENT_CREATE_TIME, comment.optLong(Comment.COMMENT_CREATE_TIME));
+
+        final boolean articleBlocked = Article.ARTICLE_STATUS_C_INVALID == article.optInt(Article.ARTICLE_STATUS);
+        comment.put(Comment.COMMENT_T_ARTICLE_TITLE,
+                    articleBlocked ? langPropsService.get("articleTitleBlockLabel") : article.optString(Article.ARTICLE_TITLE));
+        comment.put(Comment.COMMENT_T_ARTICLE_PERMALINK, article.optString(Article.ARTICLE_PERMALINK));
+
+        if (articleBlocked || UserExt.USER_STATUS_C_INVALID == commenter.optInt(UserExt.USER_STATUS)
+            || Comment.COMMENT_STATUS_C_INVALID == comment.optInt(Comment.COMMENT_STATUS)) {
+            comment.put(Comment.COMMENT_CONTENT, langPropsService.get("commentContentBlockLabel"));
+        }
+
+        String content = Emotions.clear(comment.optString(Comment.COMMENT_CONTENT));
+        content = Jsoup.clean(content, Whitelist.none());
+        comment.put(Comment.COMMENT_CONTENT, content);
+
+        final String commenterEmail = comment.optString(Comment.COMMENT_AUTHOR_EMAIL);
+        String thumbnailURL = Latkes.getStaticServePath() + "/images/user-thumbnail.png";
+        if (!UserExt.DEFAULT_CMTER_EMAIL.equals(commenterEmail)) {
+            thumbnailURL = thumbnailQueryService.getAvatarURL(commenterEmail, "140");
+        }
+
+        final JSONObject commenterBrief = new JSONObject();
+        commenterBrief.put(Keys.OBJECT_ID, commenter.optString(Keys.OBJECT_ID));
+        commenterBrief.put(User.USER_NAME, commenter.optString(User.USER_NAME));
+        commenterBrief.put(UserExt.USER_STATUS, commenter.optInt(UserExt.USER_STATUS));
+        commenterBrief.put(UserExt.USER_T_THUMBNAIL_URL, thumbnailURL);
+        comment.put(Comment.COMMENT_T_COMMENTER, commenterBrief);
+
+        return comment;
+    }
+
     /**
      * Gets the user comments with the specified user id, page number and page size.
      *
@@ -254,7 +363,7 @@ public class CommentQueryService {
     }
 
     /**
-     * Gets the article participants (commenters) with the specified article article id and fetch size.
+     * Gets the article latest distinct participants (commenters) with the specified article article id and fetch size.
      *
      * @param articleId the specified article id
      * @param fetchSize the specified fetch size
@@ -272,41 +381,104 @@ public class CommentQueryService {
      * @throws ServiceException service exception
      */
     public List<JSONObject> getArticleLatestParticipants(final String articleId, final int fetchSize) throws ServiceException {
-        final Query query = new Query().addSort(Comment.COMMENT_CREATE_TIME, SortDirection.DESCENDING)
-                .setFilter(new PropertyFilter(Comment.COMMENT_ON_ARTICLE_ID, FilterOperator.EQUAL, articleId))
-                .addProjection(Comment.COMMENT_AUTHOR_EMAIL, String.class).addProjection(Keys.OBJECT_ID, String.class)
-                .setPageCount(1).setCurrentPageNum(1).setPageSize(fetchSize);
-        final List<JSONObject> ret = new ArrayList<JSONObject>();
+        return getArticlesLatestParticipants(Collections.singletonList(articleId), fetchSize).get(articleId);
+    }
+
+    /**
+     * Gets the latest distinct participants (commenters) of the specified articles.
+     *
+     * <p>
+     * Participants are read from {@link ArticleParticipantCache} (seeded from repository if need), and all
+     * participants of the specified articles are loaded in batch.
+     * </p>
+     *
+     * @param articleIds the specified article ids
+     * @param fetchSize the specified fetch size of each article, at most {@link ArticleParticipantCache#CAPACITY}
+     * @return article participants, &lt;articleId, participants&gt;, see
+     * {@link #getArticleLatestParticipants(java.lang.String, int)} for the participants format
+     * @throws ServiceException service exception
+     */
+    public Map<String, List<JSONObject>> getArticlesLatestParticipants(final List<String> articleIds, final int fetchSize)
+            throws ServiceException {
+        final Map<String, List<JSONObject>> ret = new HashMap<String, List<JSONObject>>();
 
         try {
-            final JSONObject result = commentRepository.get(query);
-            final List<JSONObject> comments = CollectionUtils.<JSONObject>jsonArrayToList(result.optJSONArray(Keys.RESULTS));
+            final Map<String, List<JSONObject>> articleParticipants = new HashMap<String, List<JSONObject>>();
+            final Set<String> authorIds = new HashSet<String>();
 
-            for (final JSONObject comment : comments) {
-                final String email = comment.optString(Comment.COMMENT_AUTHOR_EMAIL);
-                final JSONObject commenter = userRepository.getByEmail(email);
+            for (final String articleId : articleIds) {
+                List<JSONObject> participants = articleParticipantCache.get(articleId);
+                if (null == participants) {
+                    participants = seedArticleParticipants(articleId);
+                }
 
-                String thumbnailURL = Latkes.getStaticServePath() + "/images/user-thumbnail.png";
-                if (!UserExt.DEFAULT_CMTER_EMAIL.equals(email)) {
-                    thumbnailURL = thumbnailQueryService.getAvatarURL(email, "140");
+                participants = participants.subList(0, Math.min(fetchSize, participants.size()));
+                articleParticipants.put(articleId, participants);
+
+                for (final JSONObject participant : participants) {
+                    authorIds.add(participant.optString(Comment.COMMENT_AUTHOR_ID));
                 }
+            }
 
-                final JSONObject participant = new JSONObject();
-                participant.put(Article.ARTICLE_T_PARTICIPANT_NAME, commenter.optString(User.USER_NAME));
-                participant.put(Article.ARTICLE_T_PARTICIPANT_THUMBNAIL_URL, thumbnailURL);
-                participant.put(Article.ARTICLE_T_PARTICIPANT_URL, commenter.optString(User.USER_URL));
-                participant.put(Comment.COMMENT_T_ID, comment.optString(Keys.OBJECT_ID));
+            final Map<String, JSONObject> commenters = requestUserCache.getUsers(authorIds);
 
-                ret.add(participant);
+            for (final Map.Entry<String, List<JSONObject>> entry : articleParticipants.entrySet()) {
+                final List<JSONObject> participants = new ArrayList<JSONObject>();
+
+                for (final JSONObject comment : entry.getValue()) {
+                    final JSONObject commenter = commenters.get(comment.optString(Comment.COMMENT_AUTHOR_ID));
+                    if (null == commenter) {
+                        continue;
+                    }
+
+                    final String email = comment.optString(Comment.COMMENT_AUTHOR_EMAIL);
+                    String thumbnailURL = Latkes.getStaticServePath() + "/images/user-thumbnail.png";
+                    if (!UserExt.DEFAULT_CMTER_EMAIL.equals(email)) {
+                        thumbnailURL = thumbnailQueryService.getAvatarURLByUser(commenter, "140");
+                    }
+
+                    final JSONObject participant = new JSONObject();
+                    participant.put(Article.ARTICLE_T_PARTICIPANT_NAME, commenter.optString(User.USER_NAME));
+                    participant.put(Article.ARTICLE_T_PARTICIPANT_THUMBNAIL_URL, thumbnailURL);
+                    participant.put(Article.ARTICLE_T_PARTICIPANT_URL, commenter.optString(User.USER_URL));
+                    participant.put(Comment.COMMENT_T_ID, comment.optString(Keys.OBJECT_ID));
+
+                    participants.add(participant);
+                }
+
+                ret.put(entry.getKey(), participants);
             }
 
             return ret;
         } catch (final RepositoryException e) {
-            LOGGER.log(Level.ERROR, "Gets article [" + articleId + "] participants failed", e);
+            LOGGER.log(Level.ERROR, "Gets articles " + articleIds + " participants failed", e);
             throw new ServiceException(e);
         }
     }
 
+    /**
+     * Seeds the latest participants of an article specified by the given article id from repository.
+     *
+     * @param articleId the given article id
+     * @return the seeded participants
+     * @throws RepositoryException repository exception
+     */
+    private List<JSONObject> seedArticleParticipants(final String articleId) throws RepositoryException {
+        articleParticipantCache.beginSeed(articleId);
+
+        // Fetches more comments than capacity since a participant may comment many times
+        final Query query = new Query().addSort(Comment.COMMENT_CREATE_TIME, SortDirection.DESCENDING)
+                .setFilter(new PropertyFilter(Comment.COMMENT_ON_ARTICLE_ID, FilterOperator.EQUAL, articleId))
+                .addProjection(Comment.COMMENT_AUTHOR_ID, String.class)
+                .addProjection(Comment.COMMENT_AUTHOR_EMAIL, String.class).addProjection(Keys.OBJECT_ID, String.class)
+                .setPageCount(1).setCurrentPageNum(1).setPageSize(ArticleParticipantCache.CAPACITY * PARTICIPANTS_SEED_FACTOR);
+
+        final JSONObject result = commentRepository.get(query);
+        final List<JSONObject> comments = CollectionUtils.<JSONObject>jsonArrayToList(result.optJSONArray(Keys.RESULTS));
+
+        return articleParticipantCache.put(articleId, comments);
+    }
+
     /**
      * Gets the article comments with the specified article id, page number and page size.
      *
@@ -490,10 +662,8 @@ public class CommentQueryService {
      * Processes the specified comment content.
      *
      * <ul>
-     * <li>Generates &#64;username home URL</li>
-     * <li>Markdowns</li>
      * <li>Blocks comment if need</li>
-     * <li>Generates emotion images</li>
+     * <li>Renders the content with {@link ContentRenderer}</li>
      * </ul>
      *
      * @param comment the specified comment, for example,
@@ -515,36 +685,7 @@ public class CommentQueryService {
             return;
         }
 
-        genCommentContentUserName(comment);
-
-        String commentContent = comment.optString(Comment.COMMENT_CONTENT);
-
-        commentContent = Emotions.convert(commentContent);
-
-        commentContent = Markdowns.toHTML(commentContent);
-        commentContent = Markdowns.clean(commentContent, "");
-
-        comment.put(Comment.COMMENT_CONTENT, commentContent);
-    }
-
-    /**
-     * Generates &#64;username home URL for the specified comment content.
-     *
-     * @param comment the specified comment
-     */
-    // XXX: [Performance Issue] genCommentContentUserName
-    private void genCommentContentUserName(final JSONObject comment) {
-        String commentContent = comment.optString(Comment.COMMENT_CONTENT);
-        try {
-            final Set<String> userNames = userQueryService.getUserNames(commentContent);
-            for (final String userName : userNames) {
-                commentContent = commentContent.replace('@' + userName,
-                                                        "@<a href='" + Latkes.getStaticServePath()
-                                                        + "/member/" + userName + "'>" + userName + "</a>");
-            }
-        } catch (final ServiceException e) {
-            LOGGER.log(Level.ERROR, "Generates @username home URL for comment content failed", e);
-        }
+        final String commentContent = contentRenderer.render(comment.optString(Comment.COMMENT_CONTENT), "");
 
         comment.put(Comment.COMMENT_CONTENT, commentContent);
     }
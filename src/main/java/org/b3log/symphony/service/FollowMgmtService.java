@@ -19,9 +19,12 @@ import javax.inject.Inject;
 import org.b3log.latke.logging.Level;
 import org.b3log.latke.logging.Logger;
 import org.b3log.latke.repository.RepositoryException;
+import org.b3log.latke.repository.Transaction;
 import org.b3log.latke.repository.annotation.Transactional;
 import org.b3log.latke.service.ServiceException;
 import org.b3log.latke.service.annotation.Service;
+import org.b3log.symphony.cache.TagCache;
+import org.b3log.symphony.cache.UnreadNotificationCounter;
 import org.b3log.symphony.model.Follow;
 import org.b3log.symphony.model.Tag;
 import org.b3log.symphony.repository.FollowRepository;
@@ -32,7 +35,7 @@ import org.json.JSONObject;
  * Follow management service.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.2.0.0, Jun 3, 2015
+ * @version 1.2.2.1, Jun 8, 2015
  * @since 0.2.5
  */
 @Service
@@ -55,6 +58,18 @@ public class FollowMgmtService {
     @Inject
     private TagRepository tagRepository;
 
+    /**
+     * Tag cache.
+     */
+    @Inject
+    private TagCache tagCache;
+
+    /**
+     * Unread notification counter.
+     */
+    @Inject
+    private UnreadNotificationCounter unreadNotificationCounter;
+
     /**
      * The specified follower follows the specified following tag.
      *
@@ -62,16 +77,25 @@ public class FollowMgmtService {
      * @param followingTagId the specified following tag id
      * @throws ServiceException service exception
      */
-    @Transactional
     public void followTag(final String followerId, final String followingTagId) throws ServiceException {
+        final Transaction transaction = followRepository.beginTransaction();
+
         try {
             follow(followerId, followingTagId, Follow.FOLLOWING_TYPE_C_TAG);
+
+            transaction.commit();
         } catch (final RepositoryException e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+
             final String msg = "User[id=" + followerId + "] follows a tag[id=" + followingTagId + "] failed";
             LOGGER.log(Level.ERROR, msg, e);
 
             throw new ServiceException(msg);
         }
+
+        tagCache.removeTag(followingTagId); // Tag follower count changed
     }
 
     /**
@@ -81,16 +105,25 @@ public class FollowMgmtService {
      * @param followingUserId the specified following user id
      * @throws ServiceException service exception
      */
-    @Transactional
     public void followUser(final String followerId, final String followingUserId) throws ServiceException {
+        final Transaction transaction = followRepository.beginTransaction();
+
         try {
             follow(followerId, followingUserId, Follow.FOLLOWING_TYPE_C_USER);
+
+            transaction.commit();
         } catch (final RepositoryException e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+
             final String msg = "User[id=" + followerId + "] follows a user[id=" + followingUserId + "] failed";
             LOGGER.log(Level.ERROR, msg, e);
 
             throw new ServiceException(msg);
         }
+
+        unreadNotificationCounter.removePulled(followerId); // Pulled activities changed
     }
 
     /**
@@ -119,16 +152,25 @@ public class FollowMgmtService {
      * @param followingTagId the specified following tag id
      * @throws ServiceException service exception
      */
-    @Transactional
     public void unfollowTag(final String followerId, final String followingTagId) throws ServiceException {
+        final Transaction transaction = followRepository.beginTransaction();
+
         try {
             unfollow(followerId, followingTagId, Follow.FOLLOWING_TYPE_C_TAG);
+
+            transaction.commit();
         } catch (final RepositoryException e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+
             final String msg = "User[id=" + followerId + "] unfollows a tag[id=" + followingTagId + "] failed";
             LOGGER.log(Level.ERROR, msg, e);
 
             throw new ServiceException(msg);
         }
+
+        tagCache.removeTag(followingTagId); // Tag follower count changed
     }
 
     /**
@@ -138,16 +180,25 @@ public class FollowMgmtService {
      * @param followingUserId the specified following user id
      * @throws ServiceException service exception
      */
-    @Transactional
     public void unfollowUser(final String followerId, final String followingUserId) throws ServiceException {
+        final Transaction transaction = followRepository.beginTransaction();
+
         try {
             unfollow(followerId, followingUserId, Follow.FOLLOWING_TYPE_C_USER);
+
+            transaction.commit();
         } catch (final RepositoryException e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+
             final String msg = "User[id=" + followerId + "] unfollows a user[id=" + followingUserId + "] failed";
             LOGGER.log(Level.ERROR, msg, e);
 
             throw new ServiceException(msg);
         }
+
+        unreadNotificationCounter.removePulled(followerId); // Pulled activities changed
     }
 
     /**
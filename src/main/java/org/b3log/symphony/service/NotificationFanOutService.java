@@ -0,0 +1,426 @@
+/*
+ * Copyright (c) 2012-2015, b3log.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.symphony.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Inject;
+import org.b3log.latke.Keys;
+import org.b3log.latke.logging.Level;
+import org.b3log.latke.logging.Logger;
+import org.b3log.latke.model.Pagination;
+import org.b3log.latke.repository.CompositeFilter;
+import org.b3log.latke.repository.CompositeFilterOperator;
+import org.b3log.latke.repository.Filter;
+import org.b3log.latke.repository.FilterOperator;
+import org.b3log.latke.repository.PropertyFilter;
+import org.b3log.latke.repository.Query;
+import org.b3log.latke.repository.RepositoryException;
+import org.b3log.latke.repository.SortDirection;
+import org.b3log.latke.repository.Transaction;
+import org.b3log.latke.repository.jdbc.JdbcRepository;
+import org.b3log.latke.service.annotation.Service;
+import org.b3log.symphony.cache.NotificationChannel;
+import org.b3log.symphony.cache.UnreadNotificationCounter;
+import org.b3log.symphony.model.Activity;
+import org.b3log.symphony.model.Follow;
+import org.b3log.symphony.model.Notification;
+import org.b3log.symphony.repository.ActivityRepository;
+import org.b3log.symphony.repository.FollowRepository;
+import org.b3log.symphony.repository.NotificationRepository;
+import org.b3log.symphony.util.Symphonys;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Notification fan-out service.
+ *
+ * <p>
+ * Fans out 'followingUser' notifications of an article to the followers of the article author in a background worker.
+ * Fan-out tasks are queued in a bounded queue, the worker pages followers and adds the notifications of each page in
+ * one JDBC batch. If the queue is still full after waiting {@code notificationFanOutOfferTimeout} milliseconds, the
+ * task will be run in the caller thread (backpressure), so no notification will be dropped.
+ * </p>
+ *
+ * <p>
+ * Authors who have at least {@code notificationPullFollowerThreshold} followers will not be fanned out, an author
+ * activity will be published instead, and be pulled by the followers at reading, see
+ * {@link NotificationQueryService#getFollowingUserNotifications(java.lang.String, int, int)}.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.2.0.1, Jun 8, 2015
+ * @since 1.3.0
+ */
+@Service
+public class NotificationFanOutService {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(NotificationFanOutService.class.getName());
+
+    /**
+     * Queue capacity.
+     */
+    private static final int QUEUE_CAPACITY = Symphonys.getInt("notificationFanOutQueueCapacity");
+
+    /**
+     * Batch size, count of followers per page and notifications per JDBC batch.
+     */
+    private static final int BATCH_SIZE = Symphonys.getInt("notificationFanOutBatchSize");
+
+    /**
+     * Follower count threshold of publishing author activities instead of fanning out.
+     */
+    private static final int PULL_FOLLOWER_THRESHOLD = Symphonys.getInt("notificationPullFollowerThreshold");
+
+    /**
+     * Milliseconds to wait for the queue when it is full.
+     */
+    private static final long OFFER_TIMEOUT = Symphonys.getLong("notificationFanOutOfferTimeout");
+
+    /**
+     * Milliseconds to wait for the worker draining the queue while stopping.
+     */
+    private static final long STOP_TIMEOUT = 30000;
+
+    /**
+     * Milliseconds of the worker polling the queue.
+     */
+    private static final long POLL_TIMEOUT = 1000;
+
+    /**
+     * Fan-out tasks.
+     */
+    private static final BlockingQueue<Task> TASKS = new ArrayBlockingQueue<Task>(QUEUE_CAPACITY);
+
+    /**
+     * Worker thread, {@code null} if not started.
+     */
+    private static Thread worker;
+
+    /**
+     * Whether the worker is running.
+     */
+    private static volatile boolean running;
+
+    /**
+     * Follow repository.
+     */
+    @Inject
+    private FollowRepository followRepository;
+
+    /**
+     * Notification repository.
+     */
+    @Inject
+    private NotificationRepository notificationRepository;
+
+    /**
+     * Author activity repository.
+     */
+    @Inject
+    private ActivityRepository activityRepository;
+
+    /**
+     * Unread notification counter.
+     */
+    @Inject
+    private UnreadNotificationCounter unreadNotificationCounter;
+
+    /**
+     * Notification channel.
+     */
+    @Inject
+    private NotificationChannel notificationChannel;
+
+    /**
+     * Fans out 'followingUser' notifications of an article specified by the given article id to the followers of the
+     * specified author.
+     *
+     * <p>
+     * Runs in the caller thread if the worker is not running or the queue is full.
+     * </p>
+     *
+     * @param authorId the specified author id
+     * @param articleId the given article id
+     * @param excludedUserIds the ids of followers need not to be notified, for example, the users &#64;ed in the article
+     */
+    public void fanOutFollowingUserNotification(final String authorId, final String articleId, final Set<String> excludedUserIds) {
+        final Task task = new Task(authorId, articleId, excludedUserIds);
+
+        if (running) {
+            try {
+                if (TASKS.offer(task, OFFER_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            LOGGER.log(Level.WARN, "Notification fan-out queue is full [depth={0}], fans out in the caller thread", TASKS.size());
+        }
+
+        fanOut(task);
+    }
+
+    /**
+     * Gets the count of fan-out tasks waiting in the queue.
+     *
+     * @return queue depth
+     */
+    public int getQueueDepth() {
+        return TASKS.size();
+    }
+
+    /**
+     * Starts the worker, does nothing if it has been started.
+     */
+    public void start() {
+        synchronized (TASKS) {
+            if (null != worker) {
+                return;
+            }
+
+            running = true;
+            worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (running || !TASKS.isEmpty()) {
+                        try {
+                            final Task task = TASKS.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+                            if (null == task) {
+                                continue;
+                            }
+
+                            fanOut(task);
+                        } catch (final InterruptedException e) {
+                            LOGGER.log(Level.WARN, "Notification fan-out worker has been interrupted");
+
+                            return;
+                        } finally {
+                            JdbcRepository.dispose();
+                        }
+                    }
+                }
+            }, "NotificationFanOut");
+
+            worker.setDaemon(true);
+            worker.start();
+        }
+
+        LOGGER.info("Started the notification fan-out worker");
+    }
+
+    /**
+     * Stops the worker after the queued tasks have been run, waits at most {@value #STOP_TIMEOUT} milliseconds.
+     */
+    public void stop() {
+        final Thread stopping;
+
+        synchronized (TASKS) {
+            if (null == worker) {
+                return;
+            }
+
+            running = false;
+            stopping = worker;
+            worker = null;
+        }
+
+        try {
+            stopping.join(STOP_TIMEOUT);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (!TASKS.isEmpty()) {
+            LOGGER.log(Level.WARN, "Stopped the notification fan-out worker with [{0}] tasks not run", TASKS.size());
+        } else {
+            LOGGER.info("Stopped the notification fan-out worker");
+        }
+    }
+
+    /**
+     * Runs the specified task.
+     *
+     * @param task the specified task
+     */
+    private void fanOut(final Task task) {
+        final List<Filter> filters = new ArrayList<Filter>();
+        filters.add(new PropertyFilter(Follow.FOLLOWING_ID, FilterOperator.EQUAL, task.authorId));
+        filters.add(new PropertyFilter(Follow.FOLLOWING_TYPE, FilterOperator.EQUAL, Follow.FOLLOWING_TYPE_C_USER));
+
+        int cnt = 0;
+
+        try {
+            final Query countQuery = new Query().setFilter(new CompositeFilter(CompositeFilterOperator.AND, filters)).
+                    addProjection(Keys.OBJECT_ID, String.class).setCurrentPageNum(1).setPageSize(1);
+            final int followerCnt = followRepository.get(countQuery).optJSONObject(Pagination.PAGINATION).
+                    optInt(Pagination.PAGINATION_RECORD_COUNT);
+            if (followerCnt >= PULL_FOLLOWER_THRESHOLD) {
+                publishActivity(task);
+
+                return;
+            }
+
+            for (int pageNum = 1;; pageNum++) {
+                final Query query = new Query().setFilter(new CompositeFilter(CompositeFilterOperator.AND, filters)).
+                        addProjection(Follow.FOLLOWER_ID, String.class).addSort(Keys.OBJECT_ID, SortDirection.ASCENDING).
+                        setCurrentPageNum(pageNum).setPageSize(BATCH_SIZE).setPageCount(1);
+                final JSONArray follows = followRepository.get(query).optJSONArray(Keys.RESULTS);
+
+                final List<JSONObject> notifications = new ArrayList<JSONObject>();
+                for (int i = 0; i < follows.length(); i++) {
+                    final String followerId = follows.optJSONObject(i).optString(Follow.FOLLOWER_ID);
+                    if (task.excludedUserIds.contains(followerId)) {
+                        continue;
+                    }
+
+                    final JSONObject notification = new JSONObject();
+                    notification.put(Notification.NOTIFICATION_HAS_READ, false);
+                    notification.put(Notification.NOTIFICATION_USER_ID, followerId);
+                    notification.put(Notification.NOTIFICATION_DATA_ID, task.articleId);
+                    notification.put(Notification.NOTIFICATION_DATA_TYPE, Notification.DATA_TYPE_C_FOLLOWING_USER);
+
+                    notifications.add(notification);
+                }
+
+                addNotifications(notifications);
+                cnt += notifications.size();
+
+                if (follows.length() < BATCH_SIZE) {
+                    break;
+                }
+            }
+
+            LOGGER.log(Level.DEBUG, "Fanned out [{0}] notifications of article [id={1}]", new Object[]{cnt, task.articleId});
+        } catch (final RepositoryException e) {
+            LOGGER.log(Level.ERROR, "Fans out notifications of article [id=" + task.articleId + "] failed, [" + cnt
+                                    + "] notifications have been added", e);
+        }
+    }
+
+    /**
+     * Publishes an author activity for the specified task.
+     *
+     * <p>
+     * The excluded users of the task are not stored with the activity, they are the users &#64;ed in the article, so
+     * the activity will be skipped at pulling by their 'at' notifications.
+     * </p>
+     *
+     * @param task the specified task
+     * @throws RepositoryException repository exception
+     */
+    private void publishActivity(final Task task) throws RepositoryException {
+        final JSONObject activity = new JSONObject();
+        activity.put(Activity.ACTIVITY_AUTHOR_ID, task.authorId);
+        activity.put(Activity.ACTIVITY_DATA_ID, task.articleId);
+
+        final Transaction transaction = activityRepository.beginTransaction();
+
+        try {
+            activityRepository.add(activity);
+
+            transaction.commit();
+        } catch (final RepositoryException e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+
+            throw e;
+        }
+
+        unreadNotificationCounter.activityPublished();
+        notificationChannel.signalAll();
+
+        LOGGER.log(Level.DEBUG, "Published an activity of article [id={0}]", task.articleId);
+    }
+
+    /**
+     * Adds the specified notifications in a transaction, and then counts them as unread.
+     *
+     * @param notifications the specified notifications
+     * @throws RepositoryException repository exception
+     */
+    private void addNotifications(final List<JSONObject> notifications) throws RepositoryException {
+        if (notifications.isEmpty()) {
+            return;
+        }
+
+        final Transaction transaction = notificationRepository.beginTransaction();
+
+        try {
+            notificationRepository.addBatch(notifications);
+
+            transaction.commit();
+        } catch (final RepositoryException e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+
+            throw e;
+        }
+
+        for (final JSONObject notification : notifications) {
+            final String userId = notification.optString(Notification.NOTIFICATION_USER_ID);
+
+            unreadNotificationCounter.add(userId, Notification.DATA_TYPE_C_FOLLOWING_USER, 1);
+            notificationChannel.signal(userId);
+        }
+    }
+
+    /**
+     * Fan-out task.
+     */
+    private static final class Task {
+
+        /**
+         * Author id.
+         */
+        private final String authorId;
+
+        /**
+         * Article id.
+         */
+        private final String articleId;
+
+        /**
+         * Ids of users need not to be notified.
+         */
+        private final Set<String> excludedUserIds;
+
+        /**
+         * Constructs a task with the specified author id, article id and excluded user ids.
+         *
+         * @param authorId the specified author id
+         * @param articleId the specified article id
+         * @param excludedUserIds the specified excluded user ids
+         */
+        private Task(final String authorId, final String articleId, final Set<String> excludedUserIds) {
+            this.authorId = authorId;
+            this.articleId = articleId;
+            this.excludedUserIds = Collections.unmodifiableSet(new HashSet<String>(excludedUserIds));
+        }
+    }
+}
@@ -15,24 +15,44 @@
  */
 package org.b3log.symphony.service;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import javax.inject.Inject;
 import org.b3log.latke.Keys;
 import org.b3log.latke.logging.Level;
 import org.b3log.latke.logging.Logger;
+import org.b3log.latke.repository.CompositeFilter;
+import org.b3log.latke.repository.CompositeFilterOperator;
+import org.b3log.latke.repository.Filter;
+import org.b3log.latke.repository.FilterOperator;
+import org.b3log.latke.repository.PropertyFilter;
+import org.b3log.latke.repository.Query;
 import org.b3log.latke.repository.RepositoryException;
-import org.b3log.latke.repository.annotation.Transactional;
+import org.b3log.latke.repository.Transaction;
 import org.b3log.latke.service.ServiceException;
 import org.b3log.latke.service.annotation.Service;
+import org.b3log.symphony.cache.NotificationChannel;
+import org.b3log.symphony.cache.UnreadNotificationCounter;
 import org.b3log.symphony.model.Notification;
+import org.b3log.symphony.repository.ActivityCursorRepository;
 import org.b3log.symphony.repository.NotificationRepository;
+import org.b3log.symphony.util.Symphonys;
+import org.json.JSONArray;
 import org.json.JSONObject;
 
 /**
  * Notification management service.
  *
+ * <p>
+ * Each write runs in its own transaction, the unread counters and the notification channel are updated only after
+ * the transaction committed, so a rolled back write never leaves a wrong count in memory.
+ * </p>
+ *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.0.0.3, Sep 2, 2013
+ * @version 1.5.1.0, Jun 8, 2015
  * @since 0.2.5
  */
 @Service
@@ -43,22 +63,233 @@ public class NotificationMgmtService {
      */
     private static final Logger LOGGER = Logger.getLogger(NotificationMgmtService.class.getName());
 
+    /**
+     * Milliseconds of one day.
+     */
+    private static final long DAY = 24L * 60 * 60 * 1000;
+
+    /**
+     * Days of read notifications kept in the notification table.
+     */
+    private static final int RETENTION_DAYS = Symphonys.getInt("notificationRetentionDays");
+
+    /**
+     * Count of notifications moved per archiving transaction.
+     */
+    private static final int ARCHIVE_CHUNK_SIZE = Symphonys.getInt("notificationArchiveChunkSize");
+
+    /**
+     * Max count of archiving transactions per run.
+     */
+    private static final int ARCHIVE_MAX_CHUNKS = Symphonys.getInt("notificationArchiveMaxChunks");
+
     /**
      * Notification repository.
      */
     @Inject
     private NotificationRepository notificationRepository;
 
+    /**
+     * Unread notification counter.
+     */
+    @Inject
+    private UnreadNotificationCounter unreadNotificationCounter;
+
+    /**
+     * Author activity read cursor repository.
+     */
+    @Inject
+    private ActivityCursorRepository activityCursorRepository;
+
+    /**
+     * Notification channel.
+     */
+    @Inject
+    private NotificationChannel notificationChannel;
+
     /**
      * Makes the specified notifications have been read.
      *
+     * <p>
+     * Notifications have been read (notification.hasRead equals to {@code true}) will be skipped, the others will be
+     * made read in batch, see {@link #makeReadByIds(java.util.Collection)}.
+     * </p>
+     *
      * @param notifications the specified notifications
      * @throws ServiceException service exception
      */
-    @Transactional
     public void makeRead(final Collection<JSONObject> notifications) throws ServiceException {
+        final List<String> ids = new ArrayList<String>();
+
+        for (final JSONObject notification : notifications) {
+            if (!notification.optBoolean(Notification.NOTIFICATION_HAS_READ)
+                && !notification.optBoolean(Notification.NOTIFICATION_T_PULLED)) {
+                ids.add(notification.optString(Keys.OBJECT_ID));
+            }
+        }
+
+        makeReadByIds(ids);
+    }
+
+    /**
+     * Makes the author activities in the specified notifications have been read by a user specified by the given user
+     * id.
+     *
+     * <p>
+     * Moves the read cursor of the user to the newest unread activity (notification.pulled equals to {@code true}) in
+     * the specified notifications, returns directly if there is no such activity.
+     * </p>
+     *
+     * @param userId the given user id
+     * @param notifications the specified notifications
+     * @throws ServiceException service exception
+     * @see NotificationQueryService#getFollowingUserNotifications(java.lang.String, int, int)
+     */
+    public void makeActivitiesRead(final String userId, final Collection<JSONObject> notifications) throws ServiceException {
+        String readId = null;
+
         for (final JSONObject notification : notifications) {
-            makeRead(notification);
+            if (notification.optBoolean(Notification.NOTIFICATION_HAS_READ)
+                || !notification.optBoolean(Notification.NOTIFICATION_T_PULLED)) {
+                continue;
+            }
+
+            final String activityId = notification.optString(Keys.OBJECT_ID);
+            if (null == readId || activityId.compareTo(readId) > 0) {
+                readId = activityId;
+            }
+        }
+
+        if (null == readId) {
+            return;
+        }
+
+        final Transaction transaction = activityCursorRepository.beginTransaction();
+
+        try {
+            activityCursorRepository.moveTo(userId, readId);
+
+            transaction.commit();
+        } catch (final RepositoryException e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+
+            final String msg = "Makes activities as read failed [userId=" + userId + "]";
+            LOGGER.log(Level.ERROR, msg, e);
+
+            throw new ServiceException(msg);
+        }
+
+        unreadNotificationCounter.removePulled(userId);
+        notificationChannel.signal(userId);
+    }
+
+    /**
+     * Makes the notifications specified by the given ids have been read.
+     *
+     * <p>
+     * The unread ones of the notifications will be read in one query and updated in one statement, returns directly
+     * if the specified ids is empty.
+     * </p>
+     *
+     * @param ids the given ids
+     * @throws ServiceException service exception
+     */
+    public void makeReadByIds(final Collection<String> ids) throws ServiceException {
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        final Transaction transaction = notificationRepository.beginTransaction();
+        final JSONArray unreads;
+        final int cnt;
+
+        try {
+            final List<Filter> filters = new ArrayList<Filter>();
+            filters.add(new PropertyFilter(Keys.OBJECT_ID, FilterOperator.IN, ids));
+            filters.add(new PropertyFilter(Notification.NOTIFICATION_HAS_READ, FilterOperator.EQUAL, false));
+
+            final Query query = new Query().setFilter(new CompositeFilter(CompositeFilterOperator.AND, filters)).
+                    addProjection(Notification.NOTIFICATION_USER_ID, String.class).
+                    addProjection(Notification.NOTIFICATION_DATA_TYPE, Integer.class);
+            unreads = notificationRepository.get(query).optJSONArray(Keys.RESULTS);
+            if (0 == unreads.length()) {
+                transaction.rollback();
+
+                return;
+            }
+
+            cnt = notificationRepository.makeRead(ids);
+
+            transaction.commit();
+        } catch (final RepositoryException e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+
+            final String msg = "Makes notifications as read failed";
+            LOGGER.log(Level.ERROR, msg, e);
+
+            throw new ServiceException(msg);
+        }
+
+        final Set<String> userIds = new HashSet<String>();
+        for (int i = 0; i < unreads.length(); i++) {
+            userIds.add(unreads.optJSONObject(i).optString(Notification.NOTIFICATION_USER_ID));
+        }
+
+        if (cnt == unreads.length()) {
+            for (int i = 0; i < unreads.length(); i++) {
+                final JSONObject unread = unreads.optJSONObject(i);
+
+                unreadNotificationCounter.add(unread.optString(Notification.NOTIFICATION_USER_ID),
+                        unread.optInt(Notification.NOTIFICATION_DATA_TYPE), -1);
+            }
+        } else { // Some have been made read concurrently, reloads the counters
+            for (final String userId : userIds) {
+                unreadNotificationCounter.remove(userId);
+            }
+        }
+
+        for (final String userId : userIds) {
+            notificationChannel.signal(userId);
+        }
+    }
+
+    /**
+     * Makes all notifications with the specified data type of a user specified by the given user id have been read in
+     * one statement.
+     *
+     * @param userId the given user id
+     * @param dataType the specified data type
+     * @throws ServiceException service exception
+     * @see Notification#DATA_TYPE_C_AT
+     * @see Notification#DATA_TYPE_C_COMMENTED
+     * @see Notification#DATA_TYPE_C_FOLLOWING_USER
+     */
+    public void makeAllRead(final String userId, final int dataType) throws ServiceException {
+        final Transaction transaction = notificationRepository.beginTransaction();
+        final int cnt;
+
+        try {
+            cnt = notificationRepository.makeRead(userId, dataType);
+
+            transaction.commit();
+        } catch (final RepositoryException e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+
+            final String msg = "Makes notifications as read failed [userId=" + userId + ", dataType=" + dataType + "]";
+            LOGGER.log(Level.ERROR, msg, e);
+
+            throw new ServiceException(msg);
+        }
+
+        if (0 < cnt) {
+            unreadNotificationCounter.add(userId, dataType, -cnt);
+            notificationChannel.signal(userId);
         }
     }
 
@@ -69,26 +300,88 @@ public class NotificationMgmtService {
      * {@code true})
      * @throws ServiceException service exception
      */
-    @Transactional
     public void makeRead(final JSONObject notification) throws ServiceException {
         if (notification.optBoolean(Notification.NOTIFICATION_HAS_READ)) {
             return;
         }
 
         final String id = notification.optString(Keys.OBJECT_ID);
+        final Transaction transaction = notificationRepository.beginTransaction();
+        final JSONObject record;
 
         try {
-            final JSONObject record = notificationRepository.get(id);
+            record = notificationRepository.get(id);
+            if (null == record || record.optBoolean(Notification.NOTIFICATION_HAS_READ)) {
+                transaction.rollback();
+
+                return;
+            }
 
             record.put(Notification.NOTIFICATION_HAS_READ, true);
 
             notificationRepository.update(id, record);
+
+            transaction.commit();
         } catch (final RepositoryException e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+
             final String msg = "Makes notification as read failed";
             LOGGER.log(Level.ERROR, msg, e);
 
             throw new ServiceException(msg);
         }
+
+        unreadNotificationCounter.add(record.optString(Notification.NOTIFICATION_USER_ID),
+                record.optInt(Notification.NOTIFICATION_DATA_TYPE), -1);
+        notificationChannel.signal(record.optString(Notification.NOTIFICATION_USER_ID));
+    }
+
+    /**
+     * Archives read notifications older than {@code notificationRetentionDays} days.
+     *
+     * <p>
+     * The notifications are moved into the archive table in chunks, each chunk ({@code notificationArchiveChunkSize}
+     * notifications) in a transaction, at most {@code notificationArchiveMaxChunks} chunks per run, the rest will be
+     * moved in the next run. Unread notifications are never archived, so the unread counters are not affected.
+     * </p>
+     *
+     * @return count of notifications moved
+     * @throws ServiceException service exception
+     */
+    public int archiveNotifications() throws ServiceException {
+        final String beforeId = String.valueOf(System.currentTimeMillis() - RETENTION_DAYS * DAY);
+        int ret = 0;
+
+        for (int i = 0; i < ARCHIVE_MAX_CHUNKS; i++) {
+            final Transaction transaction = notificationRepository.beginTransaction();
+
+            try {
+                final List<String> ids = notificationRepository.getReadIdsBefore(beforeId, ARCHIVE_CHUNK_SIZE);
+                final int moved = notificationRepository.archive(ids);
+
+                transaction.commit();
+
+                ret += moved;
+
+                if (ids.size() < ARCHIVE_CHUNK_SIZE) {
+                    break;
+                }
+            } catch (final RepositoryException e) {
+                if (transaction.isActive()) {
+                    transaction.rollback();
+                }
+
+                LOGGER.log(Level.ERROR, "Archives notifications failed, [" + ret + "] notifications have been moved", e);
+
+                throw new ServiceException(e);
+            }
+        }
+
+        LOGGER.log(Level.INFO, "Archived [{0}] notifications", ret);
+
+        return ret;
     }
 
     /**
@@ -104,7 +397,6 @@ public class NotificationMgmtService {
      *
      * @throws ServiceException service exception
      */
-    @Transactional
     public void addCommentNotification(final JSONObject requestJSONObject) throws ServiceException {
         try {
             requestJSONObject.put(Notification.NOTIFICATION_DATA_TYPE, Notification.DATA_TYPE_C_COMMENT);
@@ -131,7 +423,6 @@ public class NotificationMgmtService {
      *
      * @throws ServiceException  service exception
      */
-    @Transactional
     public void addAtNotification(final JSONObject requestJSONObject) throws ServiceException {
         try {
             requestJSONObject.put(Notification.NOTIFICATION_DATA_TYPE, Notification.DATA_TYPE_C_AT);
@@ -158,7 +449,6 @@ public class NotificationMgmtService {
      *
      * @throws ServiceException service exception 
      */
-    @Transactional
     public void addArticleNotification(final JSONObject requestJSONObject) throws ServiceException {
         try {
             requestJSONObject.put(Notification.NOTIFICATION_DATA_TYPE, Notification.DATA_TYPE_C_ARTICLE);
@@ -185,7 +475,6 @@ public class NotificationMgmtService {
      *
      * @throws ServiceException service exception
      */
-    @Transactional
     public void addFollowingUserNotification(final JSONObject requestJSONObject) throws ServiceException {
         try {
             requestJSONObject.put(Notification.NOTIFICATION_DATA_TYPE, Notification.DATA_TYPE_C_FOLLOWING_USER);
@@ -212,7 +501,6 @@ public class NotificationMgmtService {
      *
      * @throws ServiceException service exception
      */
-    @Transactional
     public void addCommentedNotification(final JSONObject requestJSONObject) throws ServiceException {
         try {
             requestJSONObject.put(Notification.NOTIFICATION_DATA_TYPE, Notification.DATA_TYPE_C_COMMENTED);
@@ -227,7 +515,7 @@ public class NotificationMgmtService {
     }
 
     /**
-     * Adds a notification with the specified request json object.
+     * Adds a notification with the specified request json object in a transaction.
      *
      * @param requestJSONObject the specified request json object, for example,
      * <pre>
@@ -248,6 +536,22 @@ public class NotificationMgmtService {
         notification.put(Notification.NOTIFICATION_DATA_ID, requestJSONObject.optString(Notification.NOTIFICATION_DATA_ID));
         notification.put(Notification.NOTIFICATION_DATA_TYPE, requestJSONObject.optInt(Notification.NOTIFICATION_DATA_TYPE));
 
-        notificationRepository.add(notification);
+        final Transaction transaction = notificationRepository.beginTransaction();
+
+        try {
+            notificationRepository.add(notification);
+
+            transaction.commit();
+        } catch (final RepositoryException e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+
+            throw e;
+        }
+
+        unreadNotificationCounter.add(notification.optString(Notification.NOTIFICATION_USER_ID),
+                notification.optInt(Notification.NOTIFICATION_DATA_TYPE), 1);
+        notificationChannel.signal(notification.optString(Notification.NOTIFICATION_USER_ID));
     }
 }
@@ -16,8 +16,15 @@
 package org.b3log.symphony.service;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import javax.inject.Inject;
 import org.b3log.latke.Keys;
 import org.b3log.latke.logging.Level;
@@ -32,15 +39,27 @@ import org.b3log.latke.repository.PropertyFilter;
 import org.b3log.latke.repository.Query;
 import org.b3log.latke.repository.RepositoryException;
 import org.b3log.latke.repository.SortDirection;
+import org.b3log.latke.service.LangPropsService;
 import org.b3log.latke.service.ServiceException;
 import org.b3log.latke.service.annotation.Service;
+import org.b3log.latke.util.CollectionUtils;
+import org.b3log.symphony.cache.RequestUserCache;
+import org.b3log.symphony.cache.UnreadNotificationCounter;
+import org.b3log.symphony.model.Activity;
 import org.b3log.symphony.model.Article;
 import org.b3log.symphony.model.Comment;
 import org.b3log.symphony.model.Common;
+import org.b3log.symphony.model.Follow;
 import org.b3log.symphony.model.Notification;
+import org.b3log.symphony.model.UserExt;
+import org.b3log.symphony.repository.ActivityCursorRepository;
+import org.b3log.symphony.repository.ActivityRepository;
 import org.b3log.symphony.repository.ArticleRepository;
+import org.b3log.symphony.repository.CommentRepository;
+import org.b3log.symphony.repository.FollowRepository;
 import org.b3log.symphony.repository.NotificationRepository;
-import org.b3log.symphony.repository.UserRepository;
+import org.b3log.symphony.util.Markdowns;
+import org.b3log.symphony.util.Symphonys;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
@@ -48,7 +67,7 @@ import org.json.JSONObject;
  * Notification query service.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.0.0.3, Nov 14, 2013
+ * @version 1.3.1.0, Jun 8, 2015
  * @since 0.2.5
  */
 @Service
@@ -59,6 +78,37 @@ public class NotificationQueryService {
      */
     private static final Logger LOGGER = Logger.getLogger(NotificationQueryService.class.getName());
 
+    /**
+     * Max count of author activities pulled by a user.
+     */
+    private static final int PULL_CNT = Symphonys.getInt("notificationPullCnt");
+
+    /**
+     * Max length of comment content snippets.
+     */
+    private static final int SNIPPET_LENGTH = 256;
+
+    /**
+     * Maximum times of loading unread notification counters of a user.
+     */
+    private static final int LOAD_UNREAD_RETRIES = 3;
+
+    /**
+     * Notification comparator, unread first, and then the newer first.
+     */
+    private static final Comparator<JSONObject> NOTIFICATION_COMPARATOR = new Comparator<JSONObject>() {
+        @Override
+        public int compare(final JSONObject notification1, final JSONObject notification2) {
+            final boolean hasRead1 = notification1.optBoolean(Notification.NOTIFICATION_HAS_READ);
+            final boolean hasRead2 = notification2.optBoolean(Notification.NOTIFICATION_HAS_READ);
+            if (hasRead1 != hasRead2) {
+                return hasRead1 ? 1 : -1;
+            }
+
+            return notification2.optString(Keys.OBJECT_ID).compareTo(notification1.optString(Keys.OBJECT_ID));
+        }
+    };
+
     /**
      * Notification repository.
      */
@@ -72,16 +122,22 @@ public class NotificationQueryService {
     private ArticleRepository articleRepository;
 
     /**
-     * Comment query service.
+     * Comment repository.
      */
     @Inject
-    private CommentQueryService commentQueryService;
+    private CommentRepository commentRepository;
 
     /**
-     * User repository.
+     * Request scoped user cache.
      */
     @Inject
-    private UserRepository userRepository;
+    private RequestUserCache requestUserCache;
+
+    /**
+     * Language service.
+     */
+    @Inject
+    private LangPropsService langPropsService;
 
     /**
      * Thumbnail query service.
@@ -89,31 +145,42 @@ public class NotificationQueryService {
     @Inject
     private ThumbnailQueryService thumbnailQueryService;
 
+    /**
+     * Unread notification counter.
+     */
+    @Inject
+    private UnreadNotificationCounter unreadNotificationCounter;
+
+    /**
+     * Follow repository.
+     */
+    @Inject
+    private FollowRepository followRepository;
+
+    /**
+     * Author activity repository.
+     */
+    @Inject
+    private ActivityRepository activityRepository;
+
+    /**
+     * Author activity read cursor repository.
+     */
+    @Inject
+    private ActivityCursorRepository activityCursorRepository;
+
     /**
      * Gets the count of unread notifications of a user specified with the given user id.
      *
      * @param userId the given user id
      * @return count of unread notifications, returns {@code 0} if occurs exception
      */
-    // XXX: Performance Issue: count without result list
     public int getUnreadNotificationCount(final String userId) {
-        final List<Filter> filters = new ArrayList<Filter>();
-
-        filters.add(new PropertyFilter(Notification.NOTIFICATION_USER_ID, FilterOperator.EQUAL, userId));
-        filters.add(new PropertyFilter(Notification.NOTIFICATION_HAS_READ, FilterOperator.EQUAL, false));
-
-        final Query query = new Query();
-        query.setFilter(new CompositeFilter(CompositeFilterOperator.AND, filters)).addProjection(Keys.OBJECT_ID, String.class);
-
-        try {
-            final JSONObject result = notificationRepository.get(query);
-
-            return result.optJSONObject(Pagination.PAGINATION).optInt(Pagination.PAGINATION_RECORD_COUNT);
-        } catch (final RepositoryException e) {
-            LOGGER.log(Level.ERROR, "Gets unread notification count failed [userId=" + userId + "]", e);
-
+        if (!loadUnreadNotificationCount(userId)) {
             return 0;
         }
+
+        return Math.max(0, unreadNotificationCounter.get(userId)) + getUnreadPulledCount(userId);
     }
 
     /**
@@ -127,25 +194,228 @@ public class NotificationQueryService {
      * @see Notification#DATA_TYPE_C_COMMENT
      * @see Notification#DATA_TYPE_C_COMMENTED
      */
-    // XXX: Performance Issue: count type notification
     public int getUnreadNotificationCountByType(final String userId, final int notificationDataType) {
+        if (!loadUnreadNotificationCount(userId)) {
+            return 0;
+        }
+
+        final int ret = Math.max(0, unreadNotificationCounter.get(userId, notificationDataType));
+        if (Notification.DATA_TYPE_C_FOLLOWING_USER != notificationDataType) {
+            return ret;
+        }
+
+        return ret + getUnreadPulledCount(userId);
+    }
+
+    /**
+     * Gets the count of unread author activities pulled by a user specified with the given user id.
+     *
+     * @param userId the given user id
+     * @return count of unread pulled activities, returns {@code 0} if occurs exception
+     */
+    private int getUnreadPulledCount(final String userId) {
+        final int cached = unreadNotificationCounter.getPulled(userId);
+        if (0 <= cached) {
+            return cached;
+        }
+
+        final long activityVersion = unreadNotificationCounter.getActivityVersion();
+
+        try {
+            int ret = 0;
+            for (final JSONObject activity : getPulledActivities(userId)) {
+                if (!activity.optBoolean(Notification.NOTIFICATION_HAS_READ)) {
+                    ret++;
+                }
+            }
+
+            unreadNotificationCounter.putPulled(userId, activityVersion, ret);
+
+            return ret;
+        } catch (final RepositoryException e) {
+            LOGGER.log(Level.ERROR, "Gets unread pulled activity count failed [userId=" + userId + "]", e);
+
+            return 0;
+        }
+    }
+
+    /**
+     * Gets the author activities pulled by a user specified with the given user id.
+     *
+     * <p>
+     * Pulls activities of the users followed by the specified user, published after following, at most
+     * {@code notificationPullCnt} activities. The activities not newer than the read cursor of the user have been
+     * read. The activities of articles which have &#64;ed the user are skipped as the fan out does, the user has got
+     * an 'at' notification of them.
+     * </p>
+     *
+     * @param userId the given user id
+     * @return activities as 'followingUser' notifications, for example,
+     * <pre>
+     * [{
+     *     "oId": "", // activity id
+     *     "dataId": "", // article id
+     *     "hasRead": boolean,
+     *     "pulled": true
+     * }, ....]
+     * </pre>, returns an empty list if not found
+     * @throws RepositoryException repository exception
+     */
+    private List<JSONObject> getPulledActivities(final String userId) throws RepositoryException {
+        final List<JSONObject> ret = new ArrayList<JSONObject>();
+
+        final List<Filter> filters = new ArrayList<Filter>();
+        filters.add(new PropertyFilter(Follow.FOLLOWER_ID, FilterOperator.EQUAL, userId));
+        filters.add(new PropertyFilter(Follow.FOLLOWING_TYPE, FilterOperator.EQUAL, Follow.FOLLOWING_TYPE_C_USER));
+
+        final Query query = new Query().setFilter(new CompositeFilter(CompositeFilterOperator.AND, filters)).
+                addProjection(Keys.OBJECT_ID, String.class).addProjection(Follow.FOLLOWING_ID, String.class).setPageCount(1);
+        final JSONArray follows = followRepository.get(query).optJSONArray(Keys.RESULTS);
+        if (0 == follows.length()) {
+            return ret;
+        }
+
+        final Map<String, String> followTimes = new HashMap<String, String>(); // <authorId, followId>
+        String since = null;
+        for (int i = 0; i < follows.length(); i++) {
+            final JSONObject follow = follows.optJSONObject(i);
+            final String followId = follow.optString(Keys.OBJECT_ID);
+
+            followTimes.put(follow.optString(Follow.FOLLOWING_ID), followId);
+            if (null == since || followId.compareTo(since) < 0) {
+                since = followId;
+            }
+        }
+
+        final List<JSONObject> activities = activityRepository.getByAuthorIds(followTimes.keySet(), since, PULL_CNT);
+        if (activities.isEmpty()) {
+            return ret;
+        }
+
+        final String readId = activityCursorRepository.getReadId(userId);
+
+        final Set<String> dataIds = new HashSet<String>();
+        for (final JSONObject activity : activities) {
+            dataIds.add(activity.optString(Activity.ACTIVITY_DATA_ID));
+        }
+        final Set<String> atDataIds = getAtDataIds(userId, dataIds);
+
+        for (final JSONObject activity : activities) {
+            final String activityId = activity.optString(Keys.OBJECT_ID);
+            if (activityId.compareTo(followTimes.get(activity.optString(Activity.ACTIVITY_AUTHOR_ID))) <= 0) {
+                continue; // Published before following
+            }
+
+            final String dataId = activity.optString(Activity.ACTIVITY_DATA_ID);
+            if (atDataIds.contains(dataId)) {
+                continue; // Notified by 'at'
+            }
+
+            final JSONObject notification = new JSONObject();
+            notification.put(Keys.OBJECT_ID, activityId);
+            notification.put(Notification.NOTIFICATION_DATA_ID, dataId);
+            notification.put(Notification.NOTIFICATION_HAS_READ, activityId.compareTo(readId) <= 0);
+            notification.put(Notification.NOTIFICATION_T_PULLED, true);
+
+            ret.add(notification);
+        }
+
+        return ret;
+    }
+
+    /**
+     * Gets the data ids of 'at' notifications of a user specified with the given user id in the specified data ids.
+     *
+     * @param userId the given user id
+     * @param dataIds the specified data ids
+     * @return data ids &#64;ed the user, returns an empty set if not found
+     * @throws RepositoryException repository exception
+     */
+    private Set<String> getAtDataIds(final String userId, final Set<String> dataIds) throws RepositoryException {
+        final Set<String> ret = new HashSet<String>();
+
+        final List<Filter> filters = new ArrayList<Filter>();
+        filters.add(new PropertyFilter(Notification.NOTIFICATION_USER_ID, FilterOperator.EQUAL, userId));
+        filters.add(new PropertyFilter(Notification.NOTIFICATION_DATA_TYPE, FilterOperator.EQUAL, Notification.DATA_TYPE_C_AT));
+        filters.add(new PropertyFilter(Notification.NOTIFICATION_DATA_ID, FilterOperator.IN, dataIds));
+
+        final Query query = new Query().setFilter(new CompositeFilter(CompositeFilterOperator.AND, filters)).
+                addProjection(Notification.NOTIFICATION_DATA_ID, String.class).setPageCount(1);
+        final JSONArray results = notificationRepository.get(query).optJSONArray(Keys.RESULTS);
+
+        for (int i = 0; i < results.length(); i++) {
+            ret.add(results.optJSONObject(i).optString(Notification.NOTIFICATION_DATA_ID));
+        }
+
+        return ret;
+    }
+
+    /**
+     * Loads the unread notification counters of a user specified with the given user id if they have not been loaded.
+     *
+     * <p>
+     * Unread notifications of the user will be counted by data type in one query. The counts will be queried again if
+     * the counters of the user have been changed while querying, at most {@value #LOAD_UNREAD_RETRIES} times.
+     * </p>
+     *
+     * @param userId the given user id
+     * @return {@code true} if the counters have been loaded, returns {@code false} if occurs exception
+     */
+    private boolean loadUnreadNotificationCount(final String userId) {
+        for (int i = 0; i < LOAD_UNREAD_RETRIES; i++) {
+            if (unreadNotificationCounter.isLoaded(userId)) {
+                return true;
+            }
+
+            final Object token = unreadNotificationCounter.beginLoad(userId);
+            final int[] counts = countUnreadNotifications(userId);
+            if (null == counts) {
+                return false;
+            }
+
+            if (unreadNotificationCounter.load(userId, token, counts)) {
+                return true;
+            }
+        }
+
+        LOGGER.log(Level.WARN, "Loads unread notification count failed, changed concurrently [userId={0}]", userId);
+
+        return false;
+    }
+
+    /**
+     * Counts unread notifications of a user specified with the given user id by data type.
+     *
+     * @param userId the given user id
+     * @return counts indexed by data type, returns {@code null} if occurs exception
+     */
+    private int[] countUnreadNotifications(final String userId) {
         final List<Filter> filters = new ArrayList<Filter>();
 
         filters.add(new PropertyFilter(Notification.NOTIFICATION_USER_ID, FilterOperator.EQUAL, userId));
         filters.add(new PropertyFilter(Notification.NOTIFICATION_HAS_READ, FilterOperator.EQUAL, false));
-        filters.add(new PropertyFilter(Notification.NOTIFICATION_DATA_TYPE, FilterOperator.EQUAL, notificationDataType));
 
         final Query query = new Query();
-        query.setFilter(new CompositeFilter(CompositeFilterOperator.AND, filters)).addProjection(Keys.OBJECT_ID, String.class);
+        query.setFilter(new CompositeFilter(CompositeFilterOperator.AND, filters)).
+                addProjection(Notification.NOTIFICATION_DATA_TYPE, Integer.class);
 
         try {
-            final JSONObject result = notificationRepository.get(query);
+            final JSONArray results = notificationRepository.get(query).optJSONArray(Keys.RESULTS);
+            final int[] counts = new int[UnreadNotificationCounter.TYPE_CNT];
 
-            return result.optJSONObject(Pagination.PAGINATION).optInt(Pagination.PAGINATION_RECORD_COUNT);
+            for (int i = 0; i < results.length(); i++) {
+                final int dataType = results.optJSONObject(i).optInt(Notification.NOTIFICATION_DATA_TYPE, -1);
+
+                if (0 <= dataType && dataType < counts.length) {
+                    counts[dataType]++;
+                }
+            }
+
+            return counts;
         } catch (final RepositoryException e) {
-            LOGGER.log(Level.ERROR, "Gets [commented] notification count failed [userId=" + userId + "]", e);
+            LOGGER.log(Level.ERROR, "Gets unread notification count failed [userId=" + userId + "]", e);
 
-            return 0;
+            return null;
         }
     }
 
@@ -197,18 +467,24 @@ public class NotificationQueryService {
             ret.put(Pagination.PAGINATION_RECORD_COUNT,
                     queryResult.optJSONObject(Pagination.PAGINATION).optInt(Pagination.PAGINATION_RECORD_COUNT));
 
-            for (int i = 0; i < results.length(); i++) {
-                final JSONObject notification = results.optJSONObject(i);
+            final List<JSONObject> notifications = CollectionUtils.jsonArrayToList(results);
+            final Map<String, JSONObject> comments = getComments(notifications);
+            final Map<String, JSONObject> articles = getArticles(getCommentArticleIds(comments.values()));
+            final Map<String, JSONObject> users = getAuthors(comments.values(), articles.values());
+
+            for (final JSONObject notification : notifications) {
                 final String commentId = notification.optString(Notification.NOTIFICATION_DATA_ID);
+                final JSONObject comment = comments.get(commentId);
+                if (null == comment) {
+                    LOGGER.warn("Not found comment[id=" + commentId + ']');
 
-                final JSONObject comment = commentQueryService.getCommentById(commentId);
+                    continue;
+                }
 
-                final Query q = new Query().setPageCount(1).addProjection(Article.ARTICLE_TITLE, String.class).
-                        setFilter(new PropertyFilter(Keys.OBJECT_ID, FilterOperator.EQUAL,
-                                                     comment.optString(Comment.COMMENT_ON_ARTICLE_ID)));
-                final JSONArray rlts = articleRepository.get(q).optJSONArray(Keys.RESULTS);
-                final JSONObject article = rlts.optJSONObject(0);
-                final String articleTitle = article.optString(Article.ARTICLE_TITLE);
+                organizeComment(comment, users);
+
+                final JSONObject article = articles.get(comment.optString(Comment.COMMENT_ON_ARTICLE_ID));
+                final String articleTitle = null == article ? "" : article.optString(Article.ARTICLE_TITLE);
 
                 final JSONObject commentedNotification = new JSONObject();
                 commentedNotification.put(Keys.OBJECT_ID, notification.optString(Keys.OBJECT_ID));
@@ -282,18 +558,29 @@ public class NotificationQueryService {
             ret.put(Pagination.PAGINATION_RECORD_COUNT,
                     queryResult.optJSONObject(Pagination.PAGINATION).optInt(Pagination.PAGINATION_RECORD_COUNT));
 
-            for (int i = 0; i < results.length(); i++) {
-                final JSONObject notification = results.optJSONObject(i);
+            final List<JSONObject> notifications = CollectionUtils.jsonArrayToList(results);
+            final Map<String, JSONObject> comments = getComments(notifications);
+
+            final Set<String> articleIds = getCommentArticleIds(comments.values());
+            for (final JSONObject notification : notifications) {
+                final String dataId = notification.optString(Notification.NOTIFICATION_DATA_ID);
+                if (!comments.containsKey(dataId)) { // The 'at' in article content
+                    articleIds.add(dataId);
+                }
+            }
+
+            final Map<String, JSONObject> articles = getArticles(articleIds);
+            final Map<String, JSONObject> users = getAuthors(comments.values(), articles.values());
+
+            for (final JSONObject notification : notifications) {
                 final String commentId = notification.optString(Notification.NOTIFICATION_DATA_ID);
 
-                final JSONObject comment = commentQueryService.getCommentById(commentId);
+                final JSONObject comment = comments.get(commentId);
                 if (null != comment) {
-                    final Query q = new Query().setPageCount(1).addProjection(Article.ARTICLE_TITLE, String.class).
-                            setFilter(new PropertyFilter(Keys.OBJECT_ID, FilterOperator.EQUAL,
-                                                         comment.optString(Comment.COMMENT_ON_ARTICLE_ID)));
-                    final JSONArray rlts = articleRepository.get(q).optJSONArray(Keys.RESULTS);
-                    final JSONObject article = rlts.optJSONObject(0);
-                    final String articleTitle = article.optString(Article.ARTICLE_TITLE);
+                    organizeComment(comment, users);
+
+                    final JSONObject article = articles.get(comment.optString(Comment.COMMENT_ON_ARTICLE_ID));
+                    final String articleTitle = null == article ? "" : article.optString(Article.ARTICLE_TITLE);
 
                     final JSONObject atNotification = new JSONObject();
                     atNotification.put(Keys.OBJECT_ID, notification.optString(Keys.OBJECT_ID));
@@ -309,17 +596,20 @@ public class NotificationQueryService {
 
                     rslts.add(atNotification);
                 } else { // The 'at' in article content
-                    final JSONObject article = articleRepository.get(commentId);
+                    final JSONObject article = articles.get(commentId);
+                    if (null == article) {
+                        LOGGER.warn("Not found article[id=" + commentId + ']');
 
-                    final String articleAuthorId = article.optString(Article.ARTICLE_AUTHOR_ID);
-                    final JSONObject articleAuthor = userRepository.get(articleAuthorId);
+                        continue;
+                    }
+
+                    final JSONObject articleAuthor = users.get(article.optString(Article.ARTICLE_AUTHOR_ID));
 
                     final JSONObject atNotification = new JSONObject();
                     atNotification.put(Keys.OBJECT_ID, notification.optString(Keys.OBJECT_ID));
-                    atNotification.put(Common.AUTHOR_NAME, articleAuthor.optString(User.USER_NAME));
+                    atNotification.put(Common.AUTHOR_NAME, null == articleAuthor ? "" : articleAuthor.optString(User.USER_NAME));
                     atNotification.put(Common.CONTENT, "");
-                    final String thumbnailURL = thumbnailQueryService.getAvatarURL(articleAuthor.optString(User.USER_EMAIL), "140");
-                    atNotification.put(Common.THUMBNAIL_URL, thumbnailURL);
+                    atNotification.put(Common.THUMBNAIL_URL, thumbnailQueryService.getAvatarURLByUser(articleAuthor, "140"));
                     atNotification.put(Common.ARTICLE_TITLE, article.optString(Article.ARTICLE_TITLE));
                     atNotification.put(Common.URL, article.optString(Article.ARTICLE_PERMALINK));
                     atNotification.put(Common.CREATE_TIME, new Date(article.optLong(Article.ARTICLE_CREATE_TIME)));
@@ -360,12 +650,14 @@ public class NotificationQueryService {
      *         "url": "",
      *         "createTime": java.util.Date,
      *         "hasRead": boolean,
+     *         "pulled": boolean, // pulled from author activities
      *         "type": "", // article/comment
      *     }, ....]
      * }
      * </pre>
      *
      * @throws ServiceException service exception
+     * @see #getPulledActivities(java.lang.String)
      */
     public JSONObject getFollowingUserNotifications(final String userId, final int currentPageNum, final int pageSize)
             throws ServiceException {
@@ -378,31 +670,37 @@ public class NotificationQueryService {
         filters.add(new PropertyFilter(Notification.NOTIFICATION_USER_ID, FilterOperator.EQUAL, userId));
         filters.add(new PropertyFilter(Notification.NOTIFICATION_DATA_TYPE, FilterOperator.EQUAL, Notification.DATA_TYPE_C_FOLLOWING_USER));
 
-        final Query query = new Query().setCurrentPageNum(currentPageNum).setPageSize(pageSize).
+        // Pushed notifications and pulled activities are merged in memory, so fetches all of them until the current page
+        final int fetchSize = currentPageNum * pageSize;
+        final Query query = new Query().setCurrentPageNum(1).setPageSize(fetchSize).
                 setFilter(new CompositeFilter(CompositeFilterOperator.AND, filters)).
                 addSort(Notification.NOTIFICATION_HAS_READ, SortDirection.ASCENDING).
                 addSort(Keys.OBJECT_ID, SortDirection.DESCENDING);
 
         try {
             final JSONObject queryResult = notificationRepository.get(query);
-            final JSONArray results = queryResult.optJSONArray(Keys.RESULTS);
+            final List<JSONObject> notifications = CollectionUtils.jsonArrayToList(queryResult.optJSONArray(Keys.RESULTS));
+            final List<JSONObject> pulled = getPulledActivities(userId);
+            notifications.addAll(pulled);
+            Collections.sort(notifications, NOTIFICATION_COMPARATOR);
 
             ret.put(Pagination.PAGINATION_RECORD_COUNT,
-                    queryResult.optJSONObject(Pagination.PAGINATION).optInt(Pagination.PAGINATION_RECORD_COUNT));
+                    queryResult.optJSONObject(Pagination.PAGINATION).optInt(Pagination.PAGINATION_RECORD_COUNT) + pulled.size());
 
-            for (int i = 0; i < results.length(); i++) {
-                final JSONObject notification = results.optJSONObject(i);
-                final String articleId = notification.optString(Notification.NOTIFICATION_DATA_ID);
+            final List<JSONObject> results = notifications.subList(Math.min((currentPageNum - 1) * pageSize, notifications.size()),
+                                                                   Math.min(fetchSize, notifications.size()));
+
+            final Set<String> articleIds = new HashSet<String>();
+            for (final JSONObject notification : results) {
+                articleIds.add(notification.optString(Notification.NOTIFICATION_DATA_ID));
+            }
+
+            final Map<String, JSONObject> articles = getArticles(articleIds);
+            final Map<String, JSONObject> users = getAuthors(Collections.<JSONObject>emptyList(), articles.values());
 
-                final Query q = new Query().setPageCount(1).addProjection(Article.ARTICLE_TITLE, String.class).
-                        addProjection(Article.ARTICLE_AUTHOR_EMAIL, String.class).
-                        addProjection(Article.ARTICLE_PERMALINK, String.class).
-                        addProjection(Article.ARTICLE_CREATE_TIME, Long.class).
-                        addProjection(Article.ARTICLE_TAGS, String.class).
-                        addProjection(Article.ARTICLE_COMMENT_CNT, Integer.class).
-                        setFilter(new PropertyFilter(Keys.OBJECT_ID, FilterOperator.EQUAL, articleId));
-                final JSONArray rlts = articleRepository.get(q).optJSONArray(Keys.RESULTS);
-                final JSONObject article = rlts.optJSONObject(0);
+            for (final JSONObject notification : results) {
+                final String articleId = notification.optString(Notification.NOTIFICATION_DATA_ID);
+                final JSONObject article = articles.get(articleId);
 
                 if (null == article) {
                     LOGGER.warn("Not found article[id=" + articleId + ']');
@@ -411,11 +709,11 @@ public class NotificationQueryService {
                 }
 
                 final String articleTitle = article.optString(Article.ARTICLE_TITLE);
-                final String articleAuthorEmail = article.optString(Article.ARTICLE_AUTHOR_EMAIL);
-                final JSONObject author = userRepository.getByEmail(articleAuthorEmail);
+                final String articleAuthorId = article.optString(Article.ARTICLE_AUTHOR_ID);
+                final JSONObject author = users.get(articleAuthorId);
 
                 if (null == author) {
-                    LOGGER.warn("Not found user[email=" + articleAuthorEmail + ']');
+                    LOGGER.warn("Not found user[id=" + articleAuthorId + ']');
 
                     continue;
                 }
@@ -424,12 +722,14 @@ public class NotificationQueryService {
                 followingUserNotification.put(Keys.OBJECT_ID, notification.optString(Keys.OBJECT_ID));
                 followingUserNotification.put(Common.AUTHOR_NAME, author.optString(User.USER_NAME));
                 followingUserNotification.put(Common.CONTENT, "");
-                followingUserNotification.put(Common.THUMBNAIL_URL, thumbnailQueryService.getAvatarURL(articleAuthorEmail, "140"));
+                followingUserNotification.put(Common.THUMBNAIL_URL, thumbnailQueryService.getAvatarURLByUser(author, "140"));
                 followingUserNotification.put(Common.ARTICLE_TITLE, articleTitle);
                 followingUserNotification.put(Common.URL, article.optString(Article.ARTICLE_PERMALINK));
                 followingUserNotification.put(Common.CREATE_TIME, new Date(article.optLong(Article.ARTICLE_CREATE_TIME)));
                 followingUserNotification.put(Notification.NOTIFICATION_HAS_READ,
                                               notification.optBoolean(Notification.NOTIFICATION_HAS_READ));
+                followingUserNotification.put(Notification.NOTIFICATION_T_PULLED,
+                                              notification.optBoolean(Notification.NOTIFICATION_T_PULLED));
                 followingUserNotification.put(Common.TYPE, Article.ARTICLE);
                 followingUserNotification.put(Article.ARTICLE_TAGS, article.optString(Article.ARTICLE_TAGS));
                 followingUserNotification.put(Article.ARTICLE_COMMENT_CNT, article.optInt(Article.ARTICLE_COMMENT_CNT));
@@ -443,4 +743,119 @@ public class NotificationQueryService {
             throw new ServiceException(e);
         }
     }
+
+    /**
+     * Gets the comments of the specified notifications in one query.
+     *
+     * @param notifications the specified notifications, data id of each notification may be a comment id
+     * @return comments, &lt;commentId, comment&gt;, comments not found are absent
+     * @throws RepositoryException repository exception
+     */
+    private Map<String, JSONObject> getComments(final List<JSONObject> notifications) throws RepositoryException {
+        final Set<String> commentIds = new HashSet<String>();
+        for (final JSONObject notification : notifications) {
+            commentIds.add(notification.optString(Notification.NOTIFICATION_DATA_ID));
+        }
+
+        if (commentIds.isEmpty()) {
+            return new HashMap<String, JSONObject>();
+        }
+
+        return commentRepository.get(commentIds);
+    }
+
+    /**
+     * Gets the ids of articles the specified comments on.
+     *
+     * @param comments the specified comments
+     * @return article ids
+     */
+    private static Set<String> getCommentArticleIds(final Collection<JSONObject> comments) {
+        final Set<String> ret = new HashSet<String>();
+        for (final JSONObject comment : comments) {
+            ret.add(comment.optString(Comment.COMMENT_ON_ARTICLE_ID));
+        }
+
+        return ret;
+    }
+
+    /**
+     * Gets the articles specified by the given article ids in one query, only the fields displayed in notifications
+     * are fetched.
+     *
+     * @param articleIds the given article ids
+     * @return articles, &lt;articleId, article&gt;, articles not found are absent
+     * @throws RepositoryException repository exception
+     */
+    private Map<String, JSONObject> getArticles(final Set<String> articleIds) throws RepositoryException {
+        final Map<String, JSONObject> ret = new HashMap<String, JSONObject>();
+        if (articleIds.isEmpty()) {
+            return ret;
+        }
+
+        final Query query = new Query().setPageCount(1).addProjection(Keys.OBJECT_ID, String.class).
+                addProjection(Article.ARTICLE_TITLE, String.class).
+                addProjection(Article.ARTICLE_AUTHOR_ID, String.class).
+                addProjection(Article.ARTICLE_PERMALINK, String.class).
+                addProjection(Article.ARTICLE_CREATE_TIME, Long.class).
+                addProjection(Article.ARTICLE_TAGS, String.class).
+                addProjection(Article.ARTICLE_COMMENT_CNT, Integer.class).
+                setFilter(new PropertyFilter(Keys.OBJECT_ID, FilterOperator.IN, articleIds));
+        final JSONArray articles = articleRepository.get(query).optJSONArray(Keys.RESULTS);
+
+        for (int i = 0; i < articles.length(); i++) {
+            final JSONObject article = articles.optJSONObject(i);
+
+            ret.put(article.optString(Keys.OBJECT_ID), article);
+        }
+
+        return ret;
+    }
+
+    /**
+     * Gets the authors of the specified comments and articles in (at most) one query.
+     *
+     * @param comments the specified comments
+     * @param articles the specified articles
+     * @return authors, &lt;userId, user&gt;, users not found are absent
+     * @throws RepositoryException repository exception
+     */
+    private Map<String, JSONObject> getAuthors(final Collection<JSONObject> comments, final Collection<JSONObject> articles)
+            throws RepositoryException {
+        final Set<String> userIds = new HashSet<String>();
+        for (final JSONObject comment : comments) {
+            userIds.add(comment.optString(Comment.COMMENT_AUTHOR_ID));
+        }
+        for (final JSONObject article : articles) {
+            userIds.add(article.optString(Article.ARTICLE_AUTHOR_ID));
+        }
+
+        return requestUserCache.getUsers(userIds);
+    }
+
+    /**
+     * Organizes the specified comment for displaying in notifications.
+     *
+     * <p>
+     * Unlike {@link CommentQueryService#getCommentById(java.lang.String)}, the content is not rendered, a plain text
+     * snippet of it is used instead.
+     * </p>
+     *
+     * @param comment the specified comment
+     * @param users the authors of comments, &lt;userId, user&gt;
+     */
+    private void organizeComment(final JSONObject comment, final Map<String, JSONObject> users) {
+        final JSONObject author = users.get(comment.optString(Comment.COMMENT_AUTHOR_ID));
+
+        comment.put(Comment.COMMENT_CREATE_TIME, new Date(comment.optLong(Comment.COMMENT_CREATE_TIME)));
+        comment.put(Comment.COMMENT_T_AUTHOR_NAME, null == author ? "" : author.optString(User.USER_NAME));
+        comment.put(Comment.COMMENT_T_AUTHOR_THUMBNAIL_URL, thumbnailQueryService.getAvatarURLByUser(author, "140"));
+
+        if (Comment.COMMENT_STATUS_C_INVALID == comment.optInt(Comment.COMMENT_STATUS)
+            || null == author || UserExt.USER_STATUS_C_INVALID == author.optInt(UserExt.USER_STATUS)) {
+            comment.put(Comment.COMMENT_CONTENT, langPropsService.get("commentContentBlockLabel"));
+        } else {
+            comment.put(Comment.COMMENT_CONTENT, Markdowns.toSnippet(comment.optString(Comment.COMMENT_CONTENT), SNIPPET_LENGTH));
+        }
+    }
 }
@@ -15,6 +15,7 @@
  */
 package org.b3log.symphony.service;
 
+import java.util.Map;
 import javax.inject.Inject;
 import org.b3log.latke.logging.Level;
 import org.b3log.latke.logging.Logger;
@@ -22,6 +23,8 @@ import org.b3log.latke.repository.RepositoryException;
 import org.b3log.latke.repository.Transaction;
 import org.b3log.latke.service.ServiceException;
 import org.b3log.latke.service.annotation.Service;
+import org.b3log.symphony.cache.StatisticCounter;
+import org.b3log.symphony.model.Option;
 import org.b3log.symphony.repository.OptionRepository;
 import org.json.JSONObject;
 
@@ -29,7 +32,7 @@ import org.json.JSONObject;
  * Option management service.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.0.0.0, Apr 9, 2015
+ * @version 1.2.0.0, Jun 8, 2015
  * @since 1.1.0
  */
 @Service
@@ -46,6 +49,94 @@ public class OptionMgmtService {
     @Inject
     private OptionRepository optionRepository;
 
+    /**
+     * Option query service.
+     */
+    @Inject
+    private OptionQueryService optionQueryService;
+
+    /**
+     * Statistic counter.
+     */
+    @Inject
+    private StatisticCounter statisticCounter;
+
+    /**
+     * Flushes the increments of statistic counted by {@link StatisticCounter} into repository in one transaction.
+     *
+     * @return the count of updated statistic options
+     * @throws ServiceException service exception
+     */
+    public int flushStatistic() throws ServiceException {
+        final Map<String, Long> deltas = statisticCounter.drain();
+        if (deltas.isEmpty()) {
+            return 0;
+        }
+
+        final Transaction transaction = optionRepository.beginTransaction();
+
+        try {
+            for (final Map.Entry<String, Long> entry : deltas.entrySet()) {
+                final String optionId = entry.getKey();
+                final JSONObject option = optionRepository.get(optionId);
+
+                final long value = option.optLong(Option.OPTION_VALUE);
+                option.put(Option.OPTION_VALUE, String.valueOf(value + entry.getValue()));
+
+                optionRepository.update(optionId, option);
+            }
+
+            transaction.commit();
+
+            return deltas.size();
+        } catch (final RepositoryException e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+
+            statisticCounter.restore(deltas);
+
+            LOGGER.log(Level.ERROR, "Flushes statistic failed", e);
+            throw new ServiceException(e);
+        }
+    }
+
+    /**
+     * Updates the max online visitor count with the peak online visitor count since the latest update.
+     *
+     * @return the max online visitor count
+     * @throws ServiceException service exception
+     */
+    public int updateMaxOnlineVisitorCount() throws ServiceException {
+        final int peak = optionQueryService.drainPeakOnlineVisitorCount();
+
+        final Transaction transaction = optionRepository.beginTransaction();
+
+        try {
+            final JSONObject maxOnlineVisitorCntOption = optionRepository.get(Option.ID_C_STATISTIC_MAX_ONLINE_VISITOR_COUNT);
+            final int maxOnlineVisitorCnt = maxOnlineVisitorCntOption.optInt(Option.OPTION_VALUE);
+            if (maxOnlineVisitorCnt >= peak) {
+                transaction.rollback();
+
+                return maxOnlineVisitorCnt;
+            }
+
+            maxOnlineVisitorCntOption.put(Option.OPTION_VALUE, String.valueOf(peak));
+            optionRepository.update(Option.ID_C_STATISTIC_MAX_ONLINE_VISITOR_COUNT, maxOnlineVisitorCntOption);
+
+            transaction.commit();
+
+            return peak;
+        } catch (final RepositoryException e) {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+
+            LOGGER.log(Level.ERROR, "Updates the max online visitor count failed", e);
+            throw new ServiceException(e);
+        }
+    }
+
     /**
      * Updates the specified option by the given option id.
      *
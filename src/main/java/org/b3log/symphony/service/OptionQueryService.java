@@ -15,10 +15,8 @@
  */
 package org.b3log.symphony.service;
 
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
 import org.b3log.latke.Keys;
@@ -28,12 +26,13 @@ import org.b3log.latke.repository.FilterOperator;
 import org.b3log.latke.repository.PropertyFilter;
 import org.b3log.latke.repository.Query;
 import org.b3log.latke.repository.RepositoryException;
-import org.b3log.latke.repository.Transaction;
 import org.b3log.latke.service.LangPropsService;
 import org.b3log.latke.service.ServiceException;
 import org.b3log.latke.service.annotation.Service;
 import org.b3log.latke.util.CollectionUtils;
 import org.b3log.latke.util.Requests;
+import org.b3log.symphony.cache.SlidingWindowCounter;
+import org.b3log.symphony.cache.StatisticCounter;
 import org.b3log.symphony.model.Option;
 import org.b3log.symphony.repository.OptionRepository;
 import org.json.JSONArray;
@@ -47,7 +46,7 @@ import org.json.JSONObject;
  * </p>
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.1.0.4, Apr 9, 2015
+ * @version 1.2.1.4, Jun 8, 2015
  * @since 0.2.0
  */
 @Service
@@ -65,92 +64,80 @@ public class OptionQueryService {
     private OptionRepository optionRepository;
 
     /**
-     * Online visitor cache.
-     *
-     * <p>
-     * &lt;ip, recentTime&gt;
-     * </p>
+     * Statistic counter.
      */
-    private static final Map<String, Long> ONLINE_VISITORS = new HashMap<String, Long>();
+    @Inject
+    private StatisticCounter statisticCounter;
 
     /**
      * Online visitor expiration in 5 minutes.
      */
-    private static final int ONLINE_VISITOR_EXPIRATION = 300000;
+    private static final int ONLINE_VISITOR_EXPIRATION_MINUTES = 5;
+
+    /**
+     * Online visitors, counted by ip.
+     */
+    private static final SlidingWindowCounter ONLINE_VISITORS = new SlidingWindowCounter(ONLINE_VISITOR_EXPIRATION_MINUTES);
+
+    /**
+     * Peak online visitor count since the latest {@link #drainPeakOnlineVisitorCount() draining}.
+     */
+    private static final AtomicInteger PEAK_ONLINE_VISITOR_CNT = new AtomicInteger();
+
     /**
      * Language service.
      */
     @Inject
     private LangPropsService langPropsService;
+
     /**
      * Gets the online visitor count.
      *
+     * <p>
+     * The count is approximate, and the max online visitor count will be persisted by
+     * {@link OptionMgmtService#updateMaxOnlineVisitorCount()} in background.
+     * </p>
+     *
      * @return online visitor count
      */
     public int getOnlineVisitorCount() {
-        removeExpiredOnlineVisitor();
-
-        final int ret = ONLINE_VISITORS.size();
-
-        try {
-            final JSONObject maxOnlineMemberCntRecord = optionRepository.get(Option.ID_C_STATISTIC_MAX_ONLINE_VISITOR_COUNT);
-            final int maxOnlineVisitorCnt = maxOnlineMemberCntRecord.optInt(Option.OPTION_VALUE);
-
-            if (maxOnlineVisitorCnt < ret) {
-                // Updates the max online visitor count
-
-                final Transaction transaction = optionRepository.beginTransaction();
+        final int ret = ONLINE_VISITORS.count();
 
-                try {
-                    maxOnlineMemberCntRecord.put(Option.OPTION_VALUE, String.valueOf(ret));
-                    optionRepository.update(maxOnlineMemberCntRecord.optString(Keys.OBJECT_ID), maxOnlineMemberCntRecord);
-
-                    transaction.commit();
-                } catch (final RepositoryException e) {
-                    if (transaction.isActive()) {
-                        transaction.rollback();
-                    }
-
-                    LOGGER.log(Level.ERROR, "Updates the max online visitor count failed", e);
-                }
-            }
-        } catch (final RepositoryException ex) {
-            LOGGER.log(Level.ERROR, "Gets online visitor count failed", ex);
+        int peak = PEAK_ONLINE_VISITOR_CNT.get();
+        while (peak < ret && !PEAK_ONLINE_VISITOR_CNT.compareAndSet(peak, ret)) {
+            peak = PEAK_ONLINE_VISITOR_CNT.get();
         }
 
         return ret;
     }
 
     /**
-     * Refreshes online visitor count for the specified request.
+     * Gets the peak online visitor count since the latest invocation of this method, and resets it.
      *
-     * @param request the specified request
+     * @return peak online visitor count
      */
-    public static void onlineVisitorCount(final HttpServletRequest request) {
-        ONLINE_VISITORS.put(Requests.getRemoteAddr(request), System.currentTimeMillis());
-        LOGGER.log(Level.TRACE, "Current online visitor count [{0}]", ONLINE_VISITORS.size());
+    public int drainPeakOnlineVisitorCount() {
+        getOnlineVisitorCount();
+
+        return PEAK_ONLINE_VISITOR_CNT.getAndSet(0);
     }
 
     /**
-     * Removes the expired online visitor.
+     * Refreshes online visitor count for the specified request.
+     *
+     * @param request the specified request
      */
-    private static void removeExpiredOnlineVisitor() {
-        final long currentTimeMillis = System.currentTimeMillis();
-
-        final Iterator<Map.Entry<String, Long>> iterator = ONLINE_VISITORS.entrySet().iterator();
-        while (iterator.hasNext()) {
-            final Map.Entry<String, Long> onlineVisitor = iterator.next();
-
-            if (currentTimeMillis > (onlineVisitor.getValue() + ONLINE_VISITOR_EXPIRATION)) {
-                iterator.remove();
-                LOGGER.log(Level.TRACE, "Removed online visitor[ip={0}]", onlineVisitor.getKey());
-            }
-        }
+    public static void onlineVisitorCount(final HttpServletRequest request) {
+        ONLINE_VISITORS.add(Requests.getRemoteAddr(request));
     }
 
     /**
      * Gets the statistic.
      *
+     * <p>
+     * The unflushed increments of {@link StatisticCounter} are included, so the counts are near real time.
+     * </p>
+     *
      * @return statistic
      * @throws ServiceException service exception
      */
@@ -165,7 +152,9 @@ public class OptionQueryService {
 
             for (int i = 0; i < options.length(); i++) {
                 final JSONObject option = options.optJSONObject(i);
-                ret.put(option.optString(Keys.OBJECT_ID), option.optInt(Option.OPTION_VALUE));
+                final String optionId = option.optString(Keys.OBJECT_ID);
+
+                ret.put(optionId, option.optInt(Option.OPTION_VALUE) + statisticCounter.get(optionId));
             }
 
             return ret;
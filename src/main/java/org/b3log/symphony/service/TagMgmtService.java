@@ -25,6 +25,8 @@ import org.b3log.latke.repository.RepositoryException;
 import org.b3log.latke.repository.Transaction;
 import org.b3log.latke.service.ServiceException;
 import org.b3log.latke.service.annotation.Service;
+import org.b3log.symphony.cache.PageCache;
+import org.b3log.symphony.cache.TagCache;
 import org.b3log.symphony.model.Common;
 import org.b3log.symphony.model.Tag;
 import org.b3log.symphony.repository.TagRepository;
@@ -35,7 +37,7 @@ import org.json.JSONObject;
  * Tag management service.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.1.0.0, May 31, 2015
+ * @version 1.1.1.2, Jun 8, 2015
  * @since 1.1.0
  */
 @Service
@@ -58,6 +60,18 @@ public class TagMgmtService {
     @Inject
     private TagTagRepository tagTagRepository;
 
+    /**
+     * Tag cache.
+     */
+    @Inject
+    private TagCache tagCache;
+
+    /**
+     * Page cache.
+     */
+    @Inject
+    private PageCache pageCache;
+
     /**
      * Updates the specified tag by the given tag id.
      *
@@ -69,9 +83,17 @@ public class TagMgmtService {
         final Transaction transaction = tagRepository.beginTransaction();
 
         try {
+            final JSONObject oldTag = tagRepository.get(tagId);
+
             tagRepository.update(tagId, tag);
 
             transaction.commit();
+
+            tagCache.removeTag(tagId);
+            if (null != oldTag) { // The pages of the old title if renamed
+                pageCache.removeTags(oldTag.optString(Tag.TAG_TITLE));
+            }
+            pageCache.removeTags(tag.optString(Tag.TAG_TITLE));
         } catch (final RepositoryException e) {
             if (transaction.isActive()) {
                 transaction.rollback();
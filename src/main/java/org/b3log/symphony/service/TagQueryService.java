@@ -40,6 +40,7 @@ import org.b3log.latke.service.ServiceException;
 import org.b3log.latke.service.annotation.Service;
 import org.b3log.latke.util.CollectionUtils;
 import org.b3log.latke.util.Paginator;
+import org.b3log.symphony.cache.RandomSampler;
 import org.b3log.symphony.model.Common;
 import org.b3log.symphony.model.Tag;
 import org.b3log.symphony.repository.TagRepository;
@@ -53,7 +54,7 @@ import org.json.JSONObject;
  * Tag query service.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.3.0.4, May 31, 2015
+ * @version 1.3.1.4, Jun 8, 2015
  * @since 0.2.0
  */
 @Service
@@ -70,6 +71,12 @@ public class TagQueryService {
     @Inject
     private TagRepository tagRepository;
 
+    /**
+     * Random sampler.
+     */
+    @Inject
+    private RandomSampler randomSampler;
+
     /**
      * User-Tag repository.
      */
@@ -153,18 +160,25 @@ public class TagQueryService {
     /**
      * Gets the tags the specified fetch size.
      *
+     * <p>
+     * The tags (icon-bearing) are picked randomly by {@link RandomSampler}.
+     * </p>
+     *
      * @param fetchSize the specified fetch size
      * @return tags, returns an empty list if not found
      * @throws ServiceException service exception
      */
     public List<JSONObject> getTags(final int fetchSize) throws ServiceException {
-        final Query query = new Query().addSort(" RAND() " /* MySQL navtive dialect here*/, SortDirection.ASCENDING).
-                setFilter(new PropertyFilter(Tag.TAG_ICON_PATH, FilterOperator.NOT_EQUAL, "")).
-                setPageCount(1).setPageSize(fetchSize);
-
         try {
-            final JSONObject result = tagRepository.get(query);
-            return CollectionUtils.jsonArrayToList(result.optJSONArray(Keys.RESULTS));
+            final List<JSONObject> ret = new ArrayList<JSONObject>();
+            for (final String tagId : randomSampler.sampleTagIds(fetchSize)) {
+                final JSONObject tag = tagRepository.get(tagId);
+                if (null != tag) {
+                    ret.add(tag);
+                }
+            }
+
+            return ret;
         } catch (final RepositoryException e) {
             LOGGER.log(Level.ERROR, "Gets tags failed", e);
             throw new ServiceException(e);
@@ -22,6 +22,8 @@ import org.b3log.latke.model.User;
 import org.b3log.latke.repository.RepositoryException;
 import org.b3log.latke.service.annotation.Service;
 import org.b3log.latke.util.MD5;
+import org.b3log.latke.util.Strings;
+import org.b3log.symphony.cache.LRUCache;
 import org.b3log.symphony.model.UserExt;
 import org.b3log.symphony.repository.UserRepository;
 import org.b3log.symphony.util.Symphonys;
@@ -31,7 +33,7 @@ import org.json.JSONObject;
  * Thumbnail utilities.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.0.0.0, May 13, 2015
+ * @version 1.2.0.1, Jun 8, 2015
  * @since 0.3.0
  */
 @Service
@@ -47,6 +49,15 @@ public class ThumbnailQueryService {
      */
     public static final String GRAVATAR = "http://gravatar.duoshuo.com/avatar/";
 
+    /**
+     * Avatar URL cache, &lt;email (lower-cased), avatarURL&gt;.
+     *
+     * <p>
+     * The avatar URL does not depend on the requested size currently, so the size is not a part of the key.
+     * </p>
+     */
+    private static final LRUCache<String, String> AVATAR_URL_CACHE = new LRUCache<String, String>(Symphonys.getInt("avatarURLCacheCnt"));
+
     /**
      * User repository.
      */
@@ -56,36 +67,119 @@ public class ThumbnailQueryService {
     /**
      * Gets the avatar URL for the specified email with the specified size.
      *
-     * @param email the specified email
+     * <p>
+     * The resolved avatar URL will be cached.
+     * </p>
+     *
+     * @param email the specified email, may be {@code null}
      * @param size the specified size
-     * @return the avatar URL
+     * @return the avatar URL, returns the default thumbnail URL if the specified email is {@code null} or empty
      */
     public String getAvatarURL(final String email, final String size) {
-        String ret = Symphonys.get("defaultThumbnailURL");
+        if (Strings.isEmptyOrNull(email)) {
+            return Symphonys.get("defaultThumbnailURL");
+        }
+
+        final String cached = AVATAR_URL_CACHE.get(email.toLowerCase().trim());
+        if (null != cached) {
+            return cached;
+        }
 
         try {
             final JSONObject user = userRepository.getByEmail(email);
             if (null == user) {
+                final String ret = Symphonys.get("defaultThumbnailURL");
+                AVATAR_URL_CACHE.put(email.toLowerCase().trim(), ret);
+
                 return ret;
             }
 
-            final int avatarType = user.optInt(UserExt.USER_AVATAR_TYPE);
-
-            if (UserExt.USER_AVATAR_TYPE_C_GRAVATAR == avatarType) {
-                final String userEmail = user.optString(User.USER_EMAIL);
-                final String thumbnailURL = getGravatarURL(userEmail, "140");
-
-                ret = thumbnailURL;
-            } else if (UserExt.USER_AVATAR_TYPE_C_EXTERNAL_LINK == avatarType) {
-                ret = user.optString(UserExt.USER_AVATAR_URL);
-            }
+            return getAvatarURLByUser(user, size);
         } catch (final RepositoryException e) {
             LOGGER.log(Level.WARN, "Gets thumbnail error", e);
+
+            return Symphonys.get("defaultThumbnailURL");
+        }
+    }
+
+    /**
+     * Gets the avatar URL for the specified user with the specified size.
+     *
+     * <p>
+     * Uses this method instead of {@link #getAvatarURL(java.lang.String, java.lang.String)} if the user has been
+     * loaded already.
+     * </p>
+     *
+     * @param user the specified user, may be {@code null}
+     * @param size the specified size
+     * @return the avatar URL
+     */
+    public String getAvatarURLByUser(final JSONObject user, final String size) {
+        if (null == user) {
+            return Symphonys.get("defaultThumbnailURL");
+        }
+
+        final String userEmail = user.optString(User.USER_EMAIL);
+        if (Strings.isEmptyOrNull(userEmail)) {
+            return Symphonys.get("defaultThumbnailURL");
+        }
+
+        final String key = userEmail.toLowerCase().trim();
+        String ret = AVATAR_URL_CACHE.get(key);
+        if (null != ret) {
+            return ret;
         }
 
+        final int avatarType = user.optInt(UserExt.USER_AVATAR_TYPE);
+
+        if (UserExt.USER_AVATAR_TYPE_C_GRAVATAR == avatarType) {
+            ret = getGravatarURL(userEmail, "140");
+        } else if (UserExt.USER_AVATAR_TYPE_C_EXTERNAL_LINK == avatarType) {
+            ret = user.optString(UserExt.USER_AVATAR_URL);
+        } else {
+            ret = Symphonys.get("defaultThumbnailURL");
+        }
+
+        AVATAR_URL_CACHE.put(key, ret);
+
         return ret;
     }
 
+    /**
+     * Removes the cached avatar URL for the specified email.
+     *
+     * <p>
+     * Invokes this method once avatar or email of a user has been changed.
+     * </p>
+     *
+     * @param email the specified email, does nothing if it is {@code null} or empty
+     */
+    public void removeAvatarURL(final String email) {
+        if (Strings.isEmptyOrNull(email)) {
+            return;
+        }
+
+        AVATAR_URL_CACHE.remove(email.toLowerCase().trim());
+    }
+
+    /**
+     * Gets the hit count of avatar URL cache.
+     *
+     * @return hit count
+     */
+    public long getAvatarURLCacheHitCount() {
+        return AVATAR_URL_CACHE.getHitCount();
+    }
+
+    /**
+     * Gets the miss count of avatar URL cache.
+     *
+     * @return miss count
+     */
+    public long getAvatarURLCacheMissCount() {
+        return AVATAR_URL_CACHE.getMissCount();
+    }
+
     /**
      * Gets the Gravatar URL for the specified email with the specified size.
      *
@@ -15,6 +15,7 @@
  */
 package org.b3log.symphony.service;
 
+import java.util.concurrent.atomic.AtomicLong;
 import javax.inject.Inject;
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
@@ -28,19 +29,25 @@ import org.b3log.latke.repository.FilterOperator;
 import org.b3log.latke.repository.PropertyFilter;
 import org.b3log.latke.repository.Query;
 import org.b3log.latke.repository.RepositoryException;
+import org.b3log.latke.repository.SortDirection;
 import org.b3log.latke.repository.Transaction;
 import org.b3log.latke.service.LangPropsService;
 import org.b3log.latke.service.ServiceException;
 import org.b3log.latke.service.annotation.Service;
 import org.b3log.latke.util.Sessions;
 import org.b3log.latke.util.Strings;
+import org.b3log.symphony.cache.FragmentCache;
+import org.b3log.symphony.cache.LatestCommentRing;
+import org.b3log.symphony.cache.PageCache;
+import org.b3log.symphony.cache.StatisticCounter;
+import org.b3log.symphony.cache.UserCache;
+import org.b3log.symphony.cache.UserNameCache;
 import org.b3log.symphony.model.Article;
 import org.b3log.symphony.model.Comment;
 import org.b3log.symphony.model.Option;
 import org.b3log.symphony.model.UserExt;
 import org.b3log.symphony.repository.ArticleRepository;
 import org.b3log.symphony.repository.CommentRepository;
-import org.b3log.symphony.repository.OptionRepository;
 import org.b3log.symphony.repository.UserRepository;
 import org.json.JSONArray;
 import org.json.JSONObject;
@@ -49,7 +56,7 @@ import org.json.JSONObject;
  * User management service.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.2.2.1, May 13, 2015
+ * @version 1.2.8.3, Jun 8, 2015
  * @since 0.2.0
  */
 @Service
@@ -60,6 +67,16 @@ public class UserMgmtService {
      */
     private static final Logger LOGGER = Logger.getLogger(UserMgmtService.class.getName());
 
+    /**
+     * The latest assigned user number, {@code -1} means not seeded yet.
+     *
+     * <p>
+     * Seeded from the max persisted user number on the first registration, then increased for each registration, so
+     * user numbers never depend on the member count statistic which is flushed asynchronously.
+     * </p>
+     */
+    private static final AtomicLong LATEST_USER_NO = new AtomicLong(-1);
+
     /**
      * User repository.
      */
@@ -79,16 +96,52 @@ public class UserMgmtService {
     private ArticleRepository articleRepository;
 
     /**
-     * Option repository.
+     * Language service.
      */
     @Inject
-    private OptionRepository optionRepository;
+    private LangPropsService langPropsService;
 
     /**
-     * Language service.
+     * User name cache.
      */
     @Inject
-    private LangPropsService langPropsService;
+    private UserNameCache userNameCache;
+
+    /**
+     * User cache.
+     */
+    @Inject
+    private UserCache userCache;
+
+    /**
+     * Statistic counter.
+     */
+    @Inject
+    private StatisticCounter statisticCounter;
+
+    /**
+     * Latest comment ring.
+     */
+    @Inject
+    private LatestCommentRing latestCommentRing;
+
+    /**
+     * Page cache.
+     */
+    @Inject
+    private PageCache pageCache;
+
+    /**
+     * Fragment cache.
+     */
+    @Inject
+    private FragmentCache fragmentCache;
+
+    /**
+     * Thumbnail query service.
+     */
+    @Inject
+    private ThumbnailQueryService thumbnailQueryService;
 
     /**
      * Tries to login with cookie.
@@ -176,6 +229,8 @@ public class UserMgmtService {
             userRepository.update(userId, user);
 
             transaction.commit();
+
+            userCache.removeUser(userId);
         } catch (final RepositoryException e) {
             LOGGER.log(Level.ERROR, "Updates user online status failed", e);
 
@@ -224,6 +279,11 @@ public class UserMgmtService {
 
             userRepository.update(oldUserId, oldUser);
             transaction.commit();
+
+            userCache.removeUser(oldUserId);
+            thumbnailQueryService.removeAvatarURL(oldUser.optString(User.USER_EMAIL));
+            latestCommentRing.expireCommenter(oldUserId);
+            pageCache.removeMember(oldUser.optString(User.USER_NAME));
         } catch (final RepositoryException e) {
             if (transaction.isActive()) {
                 transaction.rollback();
@@ -269,6 +329,8 @@ public class UserMgmtService {
 
             userRepository.update(oldUserId, oldUser);
             transaction.commit();
+
+            userCache.removeUser(oldUserId);
         } catch (final RepositoryException e) {
             if (transaction.isActive()) {
                 transaction.rollback();
@@ -308,6 +370,8 @@ public class UserMgmtService {
 
             userRepository.update(oldUserId, oldUser);
             transaction.commit();
+
+            userCache.removeUser(oldUserId);
         } catch (final RepositoryException e) {
             if (transaction.isActive()) {
                 transaction.rollback();
@@ -381,19 +445,18 @@ public class UserMgmtService {
             user.put(UserExt.USER_LATEST_CMT_TIME, 0L);
             user.put(UserExt.USER_LATEST_LOGIN_TIME, 0L);
 
-            final JSONObject memberCntOption = optionRepository.get(Option.ID_C_STATISTIC_MEMBER_COUNT);
-            int memberCount = memberCntOption.optInt(Option.OPTION_VALUE);
-            ++memberCount;
-            user.put(UserExt.USER_NO, memberCount);
+            user.put(UserExt.USER_NO, nextUserNo());
 
             userRepository.add(user);
 
-            // Updates stat. (member count +1)
-            memberCntOption.put(Option.OPTION_VALUE, String.valueOf(memberCount));
-            optionRepository.update(Option.ID_C_STATISTIC_MEMBER_COUNT, memberCntOption);
-
             transaction.commit();
 
+            statisticCounter.inc(Option.ID_C_STATISTIC_MEMBER_COUNT); // Updates stat. (member count +1)
+
+            userNameCache.add(userName);
+            thumbnailQueryService.removeAvatarURL(userEmail);
+            fragmentCache.remove(FragmentCache.STATISTIC); // Member count changed
+
             return user.optString(Keys.OBJECT_ID);
         } catch (final RepositoryException e) {
             if (transaction.isActive()) {
@@ -405,6 +468,26 @@ public class UserMgmtService {
         }
     }
 
+    /**
+     * Gets the next user number.
+     *
+     * @return next user number
+     * @throws RepositoryException repository exception
+     */
+    private long nextUserNo() throws RepositoryException {
+        synchronized (LATEST_USER_NO) {
+            if (0 > LATEST_USER_NO.get()) {
+                final Query query = new Query().addSort(UserExt.USER_NO, SortDirection.DESCENDING)
+                        .setCurrentPageNum(1).setPageSize(1).setPageCount(1);
+                final JSONArray users = userRepository.get(query).optJSONArray(Keys.RESULTS);
+
+                LATEST_USER_NO.set(0 == users.length() ? 0 : users.optJSONObject(0).optLong(UserExt.USER_NO));
+            }
+
+            return LATEST_USER_NO.incrementAndGet();
+        }
+    }
+
     /**
      * Removes a user specified by the given user id.
      *
@@ -415,9 +498,20 @@ public class UserMgmtService {
         final Transaction transaction = userRepository.beginTransaction();
 
         try {
+            final JSONObject oldUser = userRepository.get(userId);
+
             userRepository.remove(userId);
 
             transaction.commit();
+
+            userCache.removeUser(userId);
+            latestCommentRing.expireCommenter(userId);
+
+            if (null != oldUser) {
+                userNameCache.remove(oldUser.optString(User.USER_NAME));
+                pageCache.removeMember(oldUser.optString(User.USER_NAME));
+                thumbnailQueryService.removeAvatarURL(oldUser.optString(User.USER_EMAIL));
+            }
         } catch (final RepositoryException e) {
             if (transaction.isActive()) {
                 transaction.rollback();
@@ -439,9 +533,18 @@ public class UserMgmtService {
         final Transaction transaction = userRepository.beginTransaction();
 
         try {
+            final JSONObject oldUser = userRepository.get(userId);
+
             userRepository.update(userId, user);
 
             transaction.commit();
+
+            userCache.removeUser(userId);
+            latestCommentRing.expireCommenter(userId); // Status may be changed
+            removeMemberPages(oldUser, user);
+
+            renameInCache(oldUser, user);
+            removeAvatarURLs(oldUser, user);
         } catch (final RepositoryException e) {
             if (transaction.isActive()) {
                 transaction.rollback();
@@ -491,10 +594,18 @@ public class UserMgmtService {
                 articleRepository.update(article.optString(Keys.OBJECT_ID), article);
             }
 
+            final JSONObject oldUser = userRepository.get(userId);
+
             // Update the user
             userRepository.update(userId, user);
 
             transaction.commit();
+
+            userCache.removeUser(userId);
+            latestCommentRing.expireCommenter(userId);
+            removeMemberPages(oldUser, user);
+
+            removeAvatarURLs(oldUser, user);
         } catch (final RepositoryException e) {
             if (transaction.isActive()) {
                 transaction.rollback();
@@ -522,10 +633,18 @@ public class UserMgmtService {
                 throw new ServiceException(langPropsService.get("duplicatedUserNameLabel") + " [" + newUserName + "]");
             }
 
+            final JSONObject oldUser = userRepository.get(userId);
+
             // Update the user
             userRepository.update(userId, user);
 
             transaction.commit();
+
+            userCache.removeUser(userId);
+            latestCommentRing.expireCommenter(userId);
+            removeMemberPages(oldUser, user);
+
+            renameInCache(oldUser, user);
         } catch (final RepositoryException e) {
             if (transaction.isActive()) {
                 transaction.rollback();
@@ -535,4 +654,51 @@ public class UserMgmtService {
             throw new ServiceException(e);
         }
     }
+
+    /**
+     * Replaces the name of the specified old user with the name of the specified new user in user name cache.
+     *
+     * @param oldUser the specified old user, may be {@code null}
+     * @param newUser the specified new user
+     */
+    private void renameInCache(final JSONObject oldUser, final JSONObject newUser) {
+        final String newUserName = newUser.optString(User.USER_NAME);
+        if (Strings.isEmptyOrNull(newUserName)) {
+            return;
+        }
+
+        if (null != oldUser) {
+            userNameCache.remove(oldUser.optString(User.USER_NAME));
+        }
+
+        userNameCache.add(newUserName);
+    }
+
+    /**
+     * Removes cached member pages of the specified old user and new user.
+     *
+     * @param oldUser the specified old user, may be {@code null}
+     * @param newUser the specified new user
+     */
+    private void removeMemberPages(final JSONObject oldUser, final JSONObject newUser) {
+        if (null != oldUser) {
+            pageCache.removeMember(oldUser.optString(User.USER_NAME));
+        }
+
+        pageCache.removeMember(newUser.optString(User.USER_NAME));
+    }
+
+    /**
+     * Removes cached avatar URLs of the specified old user and new user.
+     *
+     * @param oldUser the specified old user, may be {@code null}
+     * @param newUser the specified new user
+     */
+    private void removeAvatarURLs(final JSONObject oldUser, final JSONObject newUser) {
+        if (null != oldUser) {
+            thumbnailQueryService.removeAvatarURL(oldUser.optString(User.USER_EMAIL));
+        }
+
+        thumbnailQueryService.removeAvatarURL(newUser.optString(User.USER_EMAIL));
+    }
 }
@@ -15,14 +15,12 @@
  */
 package org.b3log.symphony.service;
 
-import java.util.Arrays;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
-import org.apache.commons.lang.StringUtils;
 import org.b3log.latke.Keys;
 import org.b3log.latke.ioc.LatkeBeanManager;
 import org.b3log.latke.ioc.Lifecycle;
@@ -41,8 +39,8 @@ import org.b3log.latke.user.GeneralUser;
 import org.b3log.latke.user.UserService;
 import org.b3log.latke.user.UserServiceFactory;
 import org.b3log.latke.util.Paginator;
+import org.b3log.symphony.cache.UserNameCache;
 import org.b3log.symphony.model.UserExt;
-import org.b3log.symphony.processor.advice.validate.UserRegisterValidation;
 import org.b3log.symphony.repository.UserRepository;
 import org.b3log.symphony.util.Filler;
 import org.json.JSONArray;
@@ -52,7 +50,7 @@ import org.json.JSONObject;
  * User query service.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.0.0.4, Oct 11, 2013
+ * @version 1.1.0.5, Jun 8, 2015
  * @since 0.2.0
  */
 @Service
@@ -74,6 +72,12 @@ public class UserQueryService {
     @Inject
     private UserRepository userRepository;
 
+    /**
+     * User name cache.
+     */
+    @Inject
+    private UserNameCache userNameCache;
+
     /**
      * Gets the current user.
      *
@@ -137,12 +141,17 @@ public class UserQueryService {
      * Gets user names from the specified text.
      *
      * <p>
-     * A user name is between &#64; and a punctuation, a blank or a line break
-     * (\n). For example, the specified text is
-     * <pre>&#64;88250 It is a nice day. &#64;Vanessa, we are on the way.</pre>
+     * A user name is between &#64; and a blank or a line break (\n). For example, the specified text is
+     * <pre>&#64;88250 It is a nice day. &#64;Vanessa we are on the way.</pre>
      * There are two user names in the text, 88250 and Vanessa.
      * </p>
      *
+     * <p>
+     * The text will be scanned only once and user names are resolved by
+     * {@link UserNameCache#getMentionEnd(java.lang.String, int)} without repository accessing, the same as the
+     * &#64;username linking of {@link org.b3log.symphony.util.ContentRenderer}.
+     * </p>
+     *
      * @param text the specified text
      * @return user names, returns an empty set if not found
      * @throws ServiceException service exception
@@ -152,47 +161,22 @@ public class UserQueryService {
 
         int idx = text.indexOf('@');
 
-        if (-1 == idx) {
-            return ret;
-        }
-
-        String copy = text.trim();
-        copy = copy.replaceAll("\\n", " ");
-        String[] userNames = StringUtils.substringsBetween(copy, "@", " ");
-        String tail = StringUtils.substringAfterLast(copy, "@");
-
-        if (tail.contains(" ")) {
-            tail = null;
-        }
-
-        if (null != tail) {
-            if (null == userNames) {
-                userNames = new String[1];
-                userNames[0] = tail;
-            } else {
-                userNames = Arrays.copyOf(userNames, userNames.length + 1);
-                userNames[userNames.length - 1] = tail;
-            }
-        }
-
-        if (null == userNames) {
-            return ret;
-        }
+        try {
+            while (-1 != idx) {
+                final int end = userNameCache.getMentionEnd(text, idx);
+                if (-1 == end) {
+                    idx = text.indexOf('@', idx + 1);
 
-        for (int i = 0; i < userNames.length; i++) {
-            final String maybeUserName = userNames[i];
+                    continue;
+                }
 
-            if (!UserRegisterValidation.invalidUserName(maybeUserName)) { // A string match the user name pattern
-                if (null != getUserByName(maybeUserName)) { // Found a user
-                    ret.add(maybeUserName);
+                ret.add(text.substring(idx + 1, end));
 
-                    copy = copy.replace("@" + maybeUserName, "");
-                    idx = copy.indexOf('@');
-                    if (-1 == idx) {
-                        return ret;
-                    }
-                }
+                idx = text.indexOf('@', end);
             }
+        } catch (final RepositoryException e) {
+            LOGGER.log(Level.ERROR, "Gets user names from text failed", e);
+            throw new ServiceException(e);
         }
 
         return ret;
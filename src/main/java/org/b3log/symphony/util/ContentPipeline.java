@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2012-2015, b3log.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.symphony.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Content rendering pipeline.
+ *
+ * <p>
+ * A pipeline consists of two kinds of stages:
+ * <ul>
+ * <li>{@link TokenStage token stages}, e.g. &#64;username linking and emotion expanding, all token stages run together
+ * in one scan of the content, each stage is triggered by its trigger character</li>
+ * <li>{@link TextStage text stages}, e.g. markdown and sanitizing, run one after another on the output of the token
+ * scan</li>
+ * </ul>
+ * </p>
+ *
+ * <p>
+ * A pipeline should be assembled once and then could be shared across threads.
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Jun 8, 2015
+ * @since 1.3.0
+ */
+public final class ContentPipeline {
+
+    /**
+     * Token stages.
+     */
+    private final List<TokenStage> tokenStages = new ArrayList<TokenStage>();
+
+    /**
+     * Trigger characters of token stages.
+     */
+    private char[] triggers = new char[0];
+
+    /**
+     * Text stages.
+     */
+    private final List<TextStage> textStages = new ArrayList<TextStage>();
+
+    /**
+     * Adds the specified token stage.
+     *
+     * @param stage the specified token stage
+     * @return this pipeline
+     */
+    public ContentPipeline add(final TokenStage stage) {
+        tokenStages.add(stage);
+
+        final char[] newTriggers = new char[triggers.length + 1];
+        System.arraycopy(triggers, 0, newTriggers, 0, triggers.length);
+        newTriggers[triggers.length] = stage.getTrigger();
+        triggers = newTriggers;
+
+        return this;
+    }
+
+    /**
+     * Adds the specified text stage.
+     *
+     * @param stage the specified text stage
+     * @return this pipeline
+     */
+    public ContentPipeline add(final TextStage stage) {
+        textStages.add(stage);
+
+        return this;
+    }
+
+    /**
+     * Renders the specified content.
+     *
+     * @param content the specified content
+     * @param baseURI the specified base URI, the relative path value of href will starts with this URL
+     * @return rendered content, returns "" if the specified content is {@code null} or ""
+     */
+    public String render(final String content, final String baseURI) {
+        if (null == content || content.isEmpty()) {
+            return "";
+        }
+
+        String ret = scan(content);
+
+        for (final TextStage stage : textStages) {
+            ret = stage.process(ret, baseURI);
+
+            if (null == ret) {
+                return "";
+            }
+        }
+
+        return ret;
+    }
+
+    /**
+     * Scans the specified content once with all token stages.
+     *
+     * @param content the specified content
+     * @return processed content
+     */
+    private String scan(final String content) {
+        if (tokenStages.isEmpty()) {
+            return content;
+        }
+
+        final int length = content.length();
+        StringBuilder output = null;
+        int copied = 0; // Content before this index has been copied into output
+
+        for (int i = 0; i < length; i++) {
+            final int stageIndex = indexOfTrigger(content.charAt(i));
+            if (-1 == stageIndex) {
+                continue;
+            }
+
+            if (null == output) {
+                output = new StringBuilder(length + length / 2);
+            }
+
+            output.append(content, copied, i);
+            copied = i;
+
+            final int end = tokenStages.get(stageIndex).process(content, i, output);
+            if (end > i) {
+                copied = end;
+                i = end - 1;
+            }
+        }
+
+        if (null == output) {
+            return content;
+        }
+
+        output.append(content, copied, length);
+
+        return output.toString();
+    }
+
+    /**
+     * Gets the index of the token stage triggered by the specified character.
+     *
+     * @param c the specified character
+     * @return index of the token stage, returns {@code -1} if not found
+     */
+    private int indexOfTrigger(final char c) {
+        for (int i = 0; i < triggers.length; i++) {
+            if (c == triggers[i]) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Token stage, processes a token starts with the trigger character.
+     */
+    public interface TokenStage {
+
+        /**
+         * Gets the trigger character.
+         *
+         * @return trigger character
+         */
+        char getTrigger();
+
+        /**
+         * Processes the token starts at the specified index of the specified content.
+         *
+         * @param content the specified content
+         * @param index the specified index, the character at this index is the trigger character
+         * @param output the specified output, appends the processed token to it if the token has been accepted
+         * @return the end index (exclusive) of the accepted token, returns the specified index if not accepted (nothing
+         * should be appended to the specified output in this case)
+         */
+        int process(final String content, final int index, final StringBuilder output);
+    }
+
+    /**
+     * Text stage, processes the whole text.
+     */
+    public interface TextStage {
+
+        /**
+         * Processes the specified content.
+         *
+         * @param content the specified content
+         * @param baseURI the specified base URI
+         * @return processed content
+         */
+        String process(final String content, final String baseURI);
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2012-2015, b3log.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.symphony.util;
+
+import javax.inject.Inject;
+import org.b3log.latke.Latkes;
+import org.b3log.latke.logging.Level;
+import org.b3log.latke.logging.Logger;
+import org.b3log.latke.repository.RepositoryException;
+import org.b3log.latke.service.annotation.Service;
+import org.b3log.symphony.cache.UserNameCache;
+
+/**
+ * Content renderer.
+ *
+ * <p>
+ * Renders article content, comment content and markdown preview with the same {@link ContentPipeline pipeline}:
+ * <ol>
+ * <li>Generates &#64;username home URL and emotion images (in one scan)</li>
+ * <li>Markdowns</li>
+ * <li>Generates secured content</li>
+ * </ol>
+ * </p>
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.1.0.0, Jun 8, 2015
+ * @since 1.3.0
+ */
+@Service
+public class ContentRenderer {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOGGER = Logger.getLogger(ContentRenderer.class.getName());
+
+    /**
+     * User name cache.
+     */
+    @Inject
+    private UserNameCache userNameCache;
+
+    /**
+     * Pipeline.
+     */
+    private volatile ContentPipeline pipeline;
+
+    /**
+     * Renders the specified content.
+     *
+     * @param content the specified content
+     * @param baseURI the specified base URI, the relative path value of href will starts with this URL
+     * @return rendered content, returns "" if the specified content is {@code null} or ""
+     */
+    public String render(final String content, final String baseURI) {
+        if (null == pipeline) {
+            pipeline = new ContentPipeline().add(new MentionStage(userNameCache)).add(Emotions.STAGE).
+                    add(Markdowns.TO_HTML_STAGE).add(Markdowns.CLEAN_STAGE);
+        }
+
+        return pipeline.render(content, baseURI);
+    }
+
+    /**
+     * &#64;username token stage, generates user home URL for the user name which is between &#64; and a blank or a line
+     * break, see {@link UserNameCache#getMentionEnd(java.lang.String, int)}.
+     */
+    public static final class MentionStage implements ContentPipeline.TokenStage {
+
+        /**
+         * User name cache.
+         */
+        private final UserNameCache userNameCache;
+
+        /**
+         * Constructs a mention stage with the specified user name cache.
+         *
+         * @param userNameCache the specified user name cache
+         */
+        public MentionStage(final UserNameCache userNameCache) {
+            this.userNameCache = userNameCache;
+        }
+
+        @Override
+        public char getTrigger() {
+            return '@';
+        }
+
+        @Override
+        public int process(final String content, final int index, final StringBuilder output) {
+            final int end;
+            try {
+                end = userNameCache.getMentionEnd(content, index);
+            } catch (final RepositoryException e) {
+                LOGGER.log(Level.ERROR, "Generates @username home URL failed", e);
+
+                return index;
+            }
+
+            if (-1 == end) {
+                return index;
+            }
+
+            final String userName = content.substring(index + 1, end);
+            output.append("@<a href='").append(Latkes.getStaticServePath()).append("/member/").append(userName).append("'>").
+                    append(userName).append("</a>");
+
+            return end;
+        }
+    }
+}
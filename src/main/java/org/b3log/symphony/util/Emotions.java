@@ -21,7 +21,7 @@ import org.b3log.latke.Latkes;
  * Emotions utilities.
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.0.0.0, Nov 26, 2012
+ * @version 1.1.0.0, Jun 8, 2015
  * @since 0.2.0
  */
 public final class Emotions {
@@ -36,6 +36,16 @@ public final class Emotions {
      */
     private static final int TEN = 10;
 
+    /**
+     * Length of an emotion token, {@literal [em00]}.
+     */
+    private static final int TOKEN_LENGTH = 6;
+
+    /**
+     * Length of the prefix of an emotion token, {@literal [em}.
+     */
+    private static final int TOKEN_PREFIX_LENGTH = 3;
+
     /**
      * Clears the emotions ({@literal [em00]}) with specified content.
      *
@@ -46,6 +56,41 @@ public final class Emotions {
         return content.replaceAll("\\[em\\d+]", "");
     }
 
+    /**
+     * Emotion token stage, converts {@literal [em00]} into {@literal <img src='em00.png'/>}.
+     */
+    public static final ContentPipeline.TokenStage STAGE = new ContentPipeline.TokenStage() {
+
+        @Override
+        public char getTrigger() {
+            return '[';
+        }
+
+        @Override
+        public int process(final String content, final int index, final StringBuilder output) {
+            final int end = index + TOKEN_LENGTH;
+            if (end > content.length() || !content.startsWith("[em", index) || ']' != content.charAt(end - 1)) {
+                return index;
+            }
+
+            final char tens = content.charAt(index + TOKEN_PREFIX_LENGTH);
+            final char ones = content.charAt(index + TOKEN_PREFIX_LENGTH + 1);
+            if (!Character.isDigit(tens) || !Character.isDigit(ones) || (tens - '0') * TEN + (ones - '0') >= EMOTION_CNT) {
+                return index;
+            }
+
+            output.append("<img src='").append(Latkes.getStaticServePath()).append("/images/emotions/ease/em").
+                    append(tens).append(ones).append(".png' />");
+
+            return end;
+        }
+    };
+
+    /**
+     * Pipeline only converts emotions.
+     */
+    private static final ContentPipeline PIPELINE = new ContentPipeline().add(STAGE);
+
     /**
      * Converts the specified content with {@literal [em00]} into content with {@literal <img src='em00.png'/>}.
      *
@@ -53,21 +98,7 @@ public final class Emotions {
      * @return converted content
      */
     public static String convert(final String content) {
-        String ret = content;
-
-        String emotionName;
-        for (int i = 0; i < EMOTION_CNT; i++) {
-            if (i < TEN) {
-                emotionName = "em0" + i;
-            } else {
-                emotionName = "em" + i;
-            }
-
-            ret = ret.replace('[' + emotionName + ']',
-                              "<img src='" + Latkes.getStaticServePath() + "/images/emotions/ease/" + emotionName + ".png" + "' />");
-        }
-
-        return ret;
+        return PIPELINE.render(content, "");
     }
 
     /**
@@ -34,6 +34,7 @@ import org.b3log.latke.user.UserService;
 import org.b3log.latke.user.UserServiceFactory;
 import org.b3log.latke.util.Sessions;
 import org.b3log.symphony.SymphonyServletListener;
+import org.b3log.symphony.cache.FragmentCache;
 import org.b3log.symphony.model.Common;
 import org.b3log.symphony.model.Notification;
 import org.b3log.symphony.model.Option;
@@ -50,8 +51,14 @@ import org.json.JSONObject;
 /**
  * Filler utilities.
  *
+ * <p>
+ * Data shared by all users (trend tags, statistic, online visitor count and language labels) is cached in
+ * {@link FragmentCache}, latest comments are served from {@link org.b3log.symphony.cache.LatestCommentRing}, random
+ * articles and side tags are sampled in memory per request, and {@link #fillPersonalNav} is computed per request.
+ * </p>
+ *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.1.0.10, May 12, 2015
+ * @version 1.2.2.10, Jun 8, 2015
  * @since 0.2.0
  */
 @Service
@@ -97,6 +104,12 @@ public class Filler {
     @Inject
     private OptionQueryService optionQueryService;
 
+    /**
+     * Fragment cache.
+     */
+    @Inject
+    private FragmentCache fragmentCache;
+
     /**
      * User management service.
      */
@@ -300,8 +313,15 @@ public class Filler {
      *
      * @param dataModel the specified data model
      */
+    @SuppressWarnings("unchecked")
     private void fillLangs(final Map<String, Object> dataModel) {
-        dataModel.putAll(langPropsService.getAll(Latkes.getLocale()));
+        Map<String, String> langs = (Map<String, String>) fragmentCache.get(FragmentCache.LANGS);
+        if (null == langs) {
+            langs = langPropsService.getAll(Latkes.getLocale());
+            fragmentCache.put(FragmentCache.LANGS, langs);
+        }
+
+        dataModel.putAll(langs);
     }
 
     /**
@@ -311,7 +331,13 @@ public class Filler {
      * @throws Exception exception
      */
     private void fillTrendTags(final Map<String, Object> dataModel) throws Exception {
-        dataModel.put(Common.NAV_TREND_TAGS, tagQueryService.getTrendTags(Symphonys.getInt("trendTagsCnt")));
+        Object trendTags = fragmentCache.get(FragmentCache.TREND_TAGS);
+        if (null == trendTags) {
+            trendTags = tagQueryService.getTrendTags(Symphonys.getInt("trendTagsCnt"));
+            fragmentCache.put(FragmentCache.TREND_TAGS, trendTags);
+        }
+
+        dataModel.put(Common.NAV_TREND_TAGS, trendTags);
     }
 
     /**
@@ -322,9 +348,19 @@ public class Filler {
      */
     private void fillSysInfo(final Map<String, Object> dataModel) throws Exception {
         dataModel.put(Common.VERSION, SymphonyServletListener.VERSION);
-        dataModel.put(Common.ONLINE_VISITOR_CNT, optionQueryService.getOnlineVisitorCount());
 
-        final JSONObject statistic = optionQueryService.getStatistic();
+        Object onlineVisitorCnt = fragmentCache.get(FragmentCache.ONLINE_VISITOR_CNT);
+        if (null == onlineVisitorCnt) {
+            onlineVisitorCnt = optionQueryService.getOnlineVisitorCount();
+            fragmentCache.put(FragmentCache.ONLINE_VISITOR_CNT, onlineVisitorCnt);
+        }
+        dataModel.put(Common.ONLINE_VISITOR_CNT, onlineVisitorCnt);
+
+        Object statistic = fragmentCache.get(FragmentCache.STATISTIC);
+        if (null == statistic) {
+            statistic = optionQueryService.getStatistic();
+            fragmentCache.put(FragmentCache.STATISTIC, statistic);
+        }
         dataModel.put(Option.CATEGORY_C_STATISTIC, statistic);
     }
 }
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2012-2015, b3log.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.symphony.util;
+
+import java.io.IOException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.b3log.symphony.cache.PageCache;
+
+/**
+ * HTTP cache (conditional GET) utilities.
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.1, Jun 8, 2015
+ * @since 1.3.0
+ */
+public final class HttpCaches {
+
+    /**
+     * Determines whether the content of the specified request has not been modified against the specified validator.
+     *
+     * <p>
+     * If-None-Match takes precedence over If-Modified-Since if both are present.
+     * </p>
+     *
+     * @param request the specified request
+     * @param validator the specified validator
+     * @return {@code true} if not modified, returns {@code false} otherwise
+     */
+    public static boolean isNotModified(final HttpServletRequest request, final PageCache.Validator validator) {
+        final String ifNoneMatch = request.getHeader("If-None-Match");
+        if (null != ifNoneMatch) {
+            return ifNoneMatch.contains(validator.getETag());
+        }
+
+        try {
+            final long ifModifiedSince = request.getDateHeader("If-Modified-Since");
+
+            return -1 != ifModifiedSince && ifModifiedSince >= validator.getLastModified();
+        } catch (final IllegalArgumentException e) { // Malformed date
+            return false;
+        }
+    }
+
+    /**
+     * Sets the specified validator to the specified response, and answers "304 Not Modified" if the content of the
+     * specified request has not been modified.
+     *
+     * <p>
+     * Clients are asked to revalidate every time (no-cache), so a logged in user will never see a page cached for an
+     * anonymous visitor.
+     * </p>
+     *
+     * <p>
+     * The "304 Not Modified" response will be committed, so a request processor could return directly without a
+     * renderer (the dispatcher treats an uncommitted response without a renderer as "404 Not Found").
+     * </p>
+     *
+     * @param request the specified request
+     * @param response the specified response
+     * @param validator the specified validator
+     * @return {@code true} if answered "304 Not Modified", returns {@code false} otherwise
+     * @throws IOException io exception
+     */
+    public static boolean notModified(final HttpServletRequest request, final HttpServletResponse response,
+                                      final PageCache.Validator validator) throws IOException {
+        response.setHeader("ETag", validator.getETag());
+        response.setDateHeader("Last-Modified", validator.getLastModified());
+        response.setHeader("Cache-Control", "no-cache");
+
+        if (!isNotModified(request, validator)) {
+            return false;
+        }
+
+        response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        response.flushBuffer();
+
+        return true;
+    }
+
+    /**
+     * Private constructor.
+     */
+    private HttpCaches() {
+    }
+}
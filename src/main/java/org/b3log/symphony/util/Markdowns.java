@@ -23,7 +23,7 @@ import org.b3log.latke.util.Strings;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
-import org.jsoup.parser.Parser;
+import org.jsoup.safety.Cleaner;
 import org.jsoup.safety.Whitelist;
 import org.jsoup.select.Elements;
 import org.tautua.markdownpapers.Markdown;
@@ -37,7 +37,7 @@ import org.tautua.markdownpapers.parser.ParseException;
  * </p>
  *
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.2.0.7, Apr 20, 2015
+ * @version 1.4.0.0, Jun 8, 2015
  * @since 0.2.0
  */
 public final class Markdowns {
@@ -47,9 +47,42 @@ public final class Markdowns {
      */
     private static final Logger LOGGER = Logger.getLogger(Markdowns.class.getName());
 
+    /**
+     * Markdown text stage, see {@link #toHTML(java.lang.String)}.
+     */
+    public static final ContentPipeline.TextStage TO_HTML_STAGE = new ContentPipeline.TextStage() {
+
+        @Override
+        public String process(final String content, final String baseURI) {
+            return toHTML(content);
+        }
+    };
+
+    /**
+     * Sanitizing text stage, see {@link #clean(java.lang.String, java.lang.String)}.
+     */
+    public static final ContentPipeline.TextStage CLEAN_STAGE = new ContentPipeline.TextStage() {
+
+        @Override
+        public String process(final String content, final String baseURI) {
+            return clean(content, baseURI);
+        }
+    };
+
+    /**
+     * Whitelist for cleaning.
+     */
+    private static final Whitelist WHITELIST = Whitelist.relaxed().
+            addAttributes(":all", "id", "target", "class", "style").
+            addTags("span", "hr").addAttributes("iframe", "src", "width", "height");
+
     /**
      * Gets the safe HTML content of the specified content.
      *
+     * <p>
+     * The content will be parsed only once, disallowed iframes are removed from the cleaned document directly.
+     * </p>
+     *
      * @param content the specified content
      * @param baseURI the specified base URI, the relative path value of href will starts with this URL
      * @return safe HTML content
@@ -58,12 +91,11 @@ public final class Markdowns {
         final Document.OutputSettings outputSettings = new Document.OutputSettings();
         outputSettings.prettyPrint(false);
 
-        final String tmp = Jsoup.clean(content, baseURI, Whitelist.relaxed().
-                                       addAttributes(":all", "id", "target", "class", "style").
-                                       addTags("span", "hr").addAttributes("iframe", "src", "width", "height"), outputSettings);
-        final Document doc = Jsoup.parse(tmp, baseURI, Parser.xmlParser());
-        final Elements iframes = doc.getElementsByTag("iframe");
+        final Document dirty = Jsoup.parseBodyFragment(content, baseURI);
+        final Document doc = new Cleaner(WHITELIST).clean(dirty);
+        doc.outputSettings(outputSettings);
 
+        final Elements iframes = doc.getElementsByTag("iframe");
         for (final Element iframe : iframes) {
             final String src = iframe.attr("src");
             if (!src.startsWith("https://wide.b3log.org")) {
@@ -71,7 +103,7 @@ public final class Markdowns {
             }
         }
 
-        return doc.html();
+        return doc.body().html();
     }
 
     /**
@@ -100,6 +132,32 @@ public final class Markdowns {
         return writer.toString();
     }
 
+    /**
+     * Gets the escaped plain text snippet of the specified markdown text without converting it to HTML.
+     *
+     * <p>
+     * Tags in the text are stripped, whitespaces are collapsed, and the text longer than the specified max length will
+     * be abbreviated.
+     * </p>
+     *
+     * @param markdownText the specified markdown text
+     * @param maxLength the specified max length
+     * @return snippet, safe to be put into HTML, returns an empty string if the specified markdown text is "" or
+     * {@code null}
+     */
+    public static String toSnippet(final String markdownText, final int maxLength) {
+        if (Strings.isEmptyOrNull(markdownText)) {
+            return "";
+        }
+
+        String ret = Jsoup.parseBodyFragment(markdownText).text();
+        if (ret.length() > maxLength) {
+            ret = ret.substring(0, maxLength) + "....";
+        }
+
+        return ret.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
     /**
      * Private constructor.
      */
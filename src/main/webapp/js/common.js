@@ -18,7 +18,7 @@
  *
  * @author <a href="http://vanessa.b3log.org">Liyuan Li</a>
  * @author <a href="http://88250.b3log.org">Liang Ding</a>
- * @version 1.3.2.6, May 12, 2015
+ * @version 1.4.0.0, Jun 8, 2015
  */
 
 /**
@@ -35,17 +35,58 @@ var Util = {
             type: "GET",
             cache: false,
             success: function (result, textStatus) {
-                var count = result.unreadNotificationCount;
-                if (0 !== count) {
-                    $("#aNotifications").removeClass("no-msg").addClass("msg").text(count);
-                    document.title = "(" + count + ") " + Label.symphonyLabel + " - " + Label.visionLabel;
-                } else {
-                    $("#aNotifications").removeClass("msg").addClass("no-msg").text(count);
-                    document.title = Label.symphonyLabel + " - " + Label.visionLabel;
+                Util._renderUnreadNotificationCount(result.unreadNotificationCount);
+            }
+        });
+    },
+    /**
+     * @description 长轮询当前登录用户的未读提醒计数，计数变化时服务端立即返回.
+     * @param {Number} version 上次轮询返回的版本，首次轮询为 -1
+     * @param {Number} count 上次轮询返回的未读计数，首次轮询为 -1
+     */
+    pollUnreadNotificationCount: function (version, count) {
+        $.ajax({
+            url: "/notification/unread/poll?v=" + version + (count >= 0 ? "&c=" + count : ""),
+            type: "GET",
+            cache: false,
+            timeout: 60000,
+            success: function (result, textStatus) {
+                if (!result.sc || result.busy) {
+                    if (result.sc) {
+                        Util._renderUnreadNotificationCount(result.unreadNotificationCount);
+                    }
+
+                    setTimeout(function () {
+                        Util.pollUnreadNotificationCount(-1, -1);
+                    }, 30000);
+
+                    return;
                 }
+
+                Util._renderUnreadNotificationCount(result.unreadNotificationCount);
+                Util.pollUnreadNotificationCount(result.v, result.unreadNotificationCount);
+            },
+            error: function () {
+                // 出错（如服务器重启）时退避后重新开始
+                setTimeout(function () {
+                    Util.pollUnreadNotificationCount(-1, -1);
+                }, 30000);
             }
         });
     },
+    /**
+     * @description 显示未读提醒计数.
+     * @param {Number} count 未读提醒计数
+     */
+    _renderUnreadNotificationCount: function (count) {
+        if (0 !== count) {
+            $("#aNotifications").removeClass("no-msg").addClass("msg").text(count);
+            document.title = "(" + count + ") " + Label.symphonyLabel + " - " + Label.visionLabel;
+        } else {
+            $("#aNotifications").removeClass("msg").addClass("no-msg").text(count);
+            document.title = Label.symphonyLabel + " - " + Label.visionLabel;
+        }
+    },
     /**
      * @description 关注
      * @param {BOM} it 触发事件的元素
@@ -200,10 +241,8 @@ var Util = {
         });
 
         if (Cookie.readCookie("b3log-latke")) { // 如果登录了
-            // 定时获取并设置未读提醒计数
-            setInterval(function () {
-                Util.setUnreadNotificationCount();
-            }, 30000);
+            // 长轮询获取并设置未读提醒计数
+            Util.pollUnreadNotificationCount(-1, -1);
         }
     },
     /**
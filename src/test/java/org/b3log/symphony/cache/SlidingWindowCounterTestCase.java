@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2012-2015, b3log.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.symphony.cache;
+
+import junit.framework.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Sliding window counter test case.
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.0.0.0, Jun 8, 2015
+ * @since 1.3.0
+ */
+public class SlidingWindowCounterTestCase {
+
+    /**
+     * Tests {@link SlidingWindowCounter#count()}.
+     */
+    @Test
+    public void count() {
+        final SlidingWindowCounter counter = new SlidingWindowCounter(5);
+        Assert.assertEquals(0, counter.count());
+
+        counter.add("127.0.0.1");
+        counter.add("127.0.0.1");
+        Assert.assertEquals(1, counter.count());
+
+        for (int i = 0; i < 1000; i++) {
+            counter.add("192.168." + i / 256 + "." + i % 256);
+        }
+
+        final int count = counter.count();
+        Assert.assertTrue("Count [" + count + "]", count > 900 && count < 1100);
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2012-2015, b3log.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.b3log.symphony.util;
+
+import junit.framework.Assert;
+import org.b3log.symphony.cache.UserNameCache;
+import org.testng.annotations.Test;
+
+/**
+ * Content pipeline test case.
+ *
+ * @author <a href="http://88250.b3log.org">Liang Ding</a>
+ * @version 1.1.0.0, Jun 8, 2015
+ * @since 1.3.0
+ */
+public class ContentPipelineTestCase {
+
+    /**
+     * Tests {@link ContentPipeline#render(java.lang.String, java.lang.String)}.
+     */
+    @Test
+    public void render() {
+        final ContentPipeline pipeline = new ContentPipeline().add(new ContentPipeline.TokenStage() {
+
+            @Override
+            public char getTrigger() {
+                return '#';
+            }
+
+            @Override
+            public int process(final String content, final int index, final StringBuilder output) {
+                if (!content.startsWith("#b3log", index)) {
+                    return index;
+                }
+
+                output.append("<b>b3log</b>");
+
+                return index + "#b3log".length();
+            }
+        }).add(new ContentPipeline.TextStage() {
+
+            @Override
+            public String process(final String content, final String baseURI) {
+                return "<p>" + content + "</p>";
+            }
+        });
+
+        Assert.assertEquals("<p>plain</p>", pipeline.render("plain", ""));
+        Assert.assertEquals("<p>#<b>b3log</b> and #solo</p>", pipeline.render("##b3log and #solo", ""));
+        Assert.assertEquals("", pipeline.render(null, ""));
+    }
+
+    /**
+     * Tests {@link Emotions#STAGE}.
+     */
+    @Test
+    public void emotion() {
+        final ContentPipeline pipeline = new ContentPipeline().add(Emotions.STAGE);
+
+        String html = pipeline.render("nice [em00] day [em14]", "");
+        Assert.assertTrue(html.startsWith("nice <img src='"));
+        Assert.assertTrue(html.contains("/images/emotions/ease/em00.png' /> day <img src='"));
+        Assert.assertTrue(html.endsWith("/images/emotions/ease/em14.png' />"));
+
+        Assert.assertEquals("[em15] [emx0] [em0 [[em", pipeline.render("[em15] [emx0] [em0 [[em", ""));
+
+        html = pipeline.render("[[em01]", "");
+        Assert.assertTrue(html.startsWith("[<img src='"));
+    }
+
+    /**
+     * Tests {@link ContentRenderer.MentionStage}.
+     */
+    @Test
+    public void mention() {
+        final UserNameCache userNameCache = new UserNameCache() {
+
+            @Override
+            public boolean contains(final String name) {
+                return "88250".equalsIgnoreCase(name) || "vanessa".equalsIgnoreCase(name);
+            }
+        };
+        final ContentPipeline pipeline = new ContentPipeline().add(new ContentRenderer.MentionStage(userNameCache));
+
+        final String html = pipeline.render("@88250 hi @Vanessa\n@nobody @ @88250, @@88250", "");
+        Assert.assertTrue(html.startsWith("@<a href='"));
+        Assert.assertTrue(html.contains("/member/88250'>88250</a> hi @<a href='"));
+        Assert.assertTrue(html.contains("/member/Vanessa'>Vanessa</a>\n@nobody @ @88250, @@<a href='"));
+        Assert.assertTrue(html.endsWith("/member/88250'>88250</a>"));
+
+        Assert.assertEquals("@nobody mail@b3log", pipeline.render("@nobody mail@b3log", ""));
+    }
+
+    /**
+     * Tests {@link Markdowns#TO_HTML_STAGE} and {@link Markdowns#CLEAN_STAGE}, the markdown preview renders with them.
+     */
+    @Test
+    public void markdownClean() {
+        final ContentPipeline pipeline = new ContentPipeline().add(Markdowns.TO_HTML_STAGE).add(Markdowns.CLEAN_STAGE);
+
+        String html = pipeline.render("**b3log** <script>alert('XSS')</script>", "");
+        Assert.assertTrue(html.contains("<strong>b3log</strong>"));
+        Assert.assertFalse(html.contains("<script"));
+
+        html = pipeline.render("<a href='data:text/html;base64,PHNjcmlwdD5hbGVydCgnWFNTJyk8L3NjcmlwdD4K'>a link</a>", "");
+        Assert.assertFalse(html.contains("href"));
+    }
+}